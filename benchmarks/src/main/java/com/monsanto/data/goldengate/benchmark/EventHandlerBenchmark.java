@@ -0,0 +1,126 @@
+package com.monsanto.data.goldengate.benchmark;
+
+import com.goldengate.atg.datasource.DataSourceListener;
+import com.goldengate.atg.datasource.DsConfiguration;
+import com.goldengate.atg.datasource.DsEvent;
+import com.goldengate.atg.datasource.DsOperation;
+import com.goldengate.atg.datasource.DsTransaction;
+import com.goldengate.atg.datasource.GGDataSource;
+import com.goldengate.atg.datasource.adapt.Op;
+import com.goldengate.atg.datasource.adapt.Tx;
+import com.goldengate.atg.datasource.meta.DsMetaData;
+import com.goldengate.atg.datasource.meta.TableMetaData;
+import com.goldengate.atg.datasource.meta.TableName;
+import com.google.common.collect.Lists;
+import com.monsanto.data.goldengate.EventHandler;
+import com.monsanto.data.goldengate.MessageEncoder;
+import com.monsanto.data.goldengate.MessageProducer;
+import com.monsanto.data.goldengate.TxFactory;
+import com.monsanto.data.goldengate.config.Conf;
+import com.monsanto.data.goldengate.encoder.EncoderType;
+import com.monsanto.data.goldengate.encoder.MessageEncoderFactory;
+import com.monsanto.data.goldengate.kafka.KafkaMessageProducer;
+import com.monsanto.data.goldengate.table.TableDescriptorCache;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives a whole transaction through the handler callbacks, from {@code operationAdded} to
+ * {@code transactionCommit}, with a real encoder and producer in front of a {@link MockProducer}.
+ * In op mode each operation is sent from {@code operationAdded}; in tx mode they are sent at commit.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventHandlerBenchmark {
+    @Param({"op", "tx"})
+    public String mode;
+
+    @Param({"1", "100"})
+    public int operationsPerTransaction;
+
+    @Param({"8", "200"})
+    public int columns;
+
+    private MockProducer mockProducer;
+    private EventHandler eventHandler;
+    private DsEvent event;
+    private DsTransaction transaction;
+    private List<DsOperation> operations;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Conf configuration = SyntheticOperations.configuration(EncoderType.JSON);
+        final TableName tableName = SyntheticOperations.tableName();
+
+        List<Op> ops = Lists.newArrayList();
+        final Map<DsOperation, Op> opsByOperation = new IdentityHashMap<>();
+        operations = Lists.newArrayList();
+        for (int i = 0; i < operationsPerTransaction; i++) {
+            Op op = SyntheticOperations.operation(tableName, DsOperation.OpType.DO_INSERT, columns, 16, i);
+            DsOperation operation = Fakes.fake(DsOperation.class, new Fakes.Answers() {
+                @Override
+                public Object answer(String method, Object[] arguments) {
+                    return "getTableName".equals(method) ? tableName : null;
+                }
+            });
+            ops.add(op);
+            operations.add(operation);
+            opsByOperation.put(operation, op);
+        }
+        final Tx tx = SyntheticOperations.transaction(ops, "1.2.3");
+
+        TxFactory txFactory = new TxFactory() {
+            @Override
+            public Tx createAdapterTx(DsTransaction transaction, DsMetaData metaData, DsConfiguration configuration) {
+                return tx;
+            }
+
+            @Override
+            public Op createAdapterOp(DsOperation operation, TableMetaData tableMetaData, DsConfiguration configuration) {
+                return opsByOperation.get(operation);
+            }
+        };
+
+        mockProducer = new MockProducer(true);
+        MessageProducer messageProducer = new KafkaMessageProducer(mockProducer, configuration.kafka());
+        final boolean operationMode = "op".equals(mode);
+
+        TableDescriptorCache tableDescriptors = new TableDescriptorCache(configuration);
+        MessageEncoder messageEncoder = MessageEncoderFactory.create(configuration, tableDescriptors);
+        messageEncoder.metaDataChanged(SyntheticOperations.metaData(tableName, columns));
+
+        eventHandler = new EventHandler(configuration, messageEncoder, messageProducer, tableDescriptors, txFactory) {
+            @Override
+            public boolean isOperationMode() {
+                return operationMode;
+            }
+        };
+        eventHandler.setState(DataSourceListener.State.READY);
+
+        event = Fakes.fake(DsEvent.class);
+        transaction = Fakes.fake(DsTransaction.class);
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearHistory() {
+        mockProducer.clear();
+    }
+
+    @Benchmark
+    public GGDataSource.Status transaction() {
+        eventHandler.transactionBegin(event, transaction);
+        for (DsOperation operation : operations) {
+            eventHandler.operationAdded(event, transaction, operation);
+        }
+        return eventHandler.transactionCommit(event, transaction);
+    }
+}
@@ -0,0 +1,192 @@
+package com.monsanto.data.goldengate.benchmark;
+
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.agent.ByteBuddyAgent;
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.description.modifier.Visibility;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import net.bytebuddy.dynamic.loading.ClassReloadingStrategy;
+import net.bytebuddy.implementation.MethodDelegation;
+import net.bytebuddy.implementation.bind.annotation.AllArguments;
+import net.bytebuddy.implementation.bind.annotation.FieldValue;
+import net.bytebuddy.implementation.bind.annotation.Origin;
+import net.bytebuddy.implementation.bind.annotation.RuntimeType;
+import net.bytebuddy.implementation.bind.annotation.This;
+import net.bytebuddy.implementation.bytecode.assign.Assigner;
+import org.objenesis.Objenesis;
+import org.objenesis.ObjenesisStd;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import static net.bytebuddy.matcher.ElementMatchers.*;
+
+/**
+ * Stand-ins for GoldenGate adapter objects. The GoldenGate types need a live extract to construct
+ * and {@code Op} is final, so a mocking framework would be the usual answer, but mock dispatch
+ * records every call and captures a stack trace for it, which costs far more than the encoding
+ * being measured. Fakes are instantiated without running a constructor and answer each call with
+ * a single {@link Answers} dispatch: non-final types through a generated subclass, final types
+ * through an advice that is woven into the class once and skips the original body for fakes.
+ */
+public final class Fakes {
+    private static final String ANSWERS_FIELD = "fakeAnswers";
+    private static final Object NULL = new Object();
+    private static final Objenesis objenesis = new ObjenesisStd(true);
+    private static final Map<Class<?>, Class<?>> fakeTypes = new HashMap<>();
+    private static final Map<Object, Answers> answersByFinalFake = Collections.synchronizedMap(new IdentityHashMap<Object, Answers>());
+
+    /**
+     * Answers the calls made on a fake. Answers must be of the method's return type; calls on
+     * fakes of non-final types that are answered with {@code null} fall back to the type's default.
+     */
+    public interface Answers {
+        Object answer(String method, Object[] arguments);
+    }
+
+    private static final Answers NO_ANSWERS = new Answers() {
+        @Override
+        public Object answer(String method, Object[] arguments) {
+            return null;
+        }
+    };
+
+    private Fakes() {
+    }
+
+    public static <T> T fake(Class<T> type) {
+        return fake(type, NO_ANSWERS);
+    }
+
+    public static synchronized <T> T fake(Class<T> type, Answers answers) {
+        Class<?> fakeType = fakeTypes.get(type);
+
+        if (fakeType == null) {
+            fakeType = Modifier.isFinal(type.getModifiers()) ? weave(type) : subclass(type);
+            fakeTypes.put(type, fakeType);
+        }
+
+        T fake = type.cast(objenesis.newInstance(fakeType));
+        if (fakeType == type) {
+            answersByFinalFake.put(fake, answers);
+        } else {
+            setAnswers(fake, answers);
+        }
+        return fake;
+    }
+
+    private static Class<?> subclass(Class<?> type) {
+        return new ByteBuddy()
+                .subclass(type)
+                .defineField(ANSWERS_FIELD, Answers.class, Visibility.PUBLIC)
+                .method(not(isDeclaredBy(Object.class)).or(named("toString")))
+                .intercept(MethodDelegation.to(SubclassDispatcher.class))
+                .make()
+                .load(type.getClassLoader(), ClassLoadingStrategy.Default.INJECTION)
+                .getLoaded();
+    }
+
+    private static Class<?> weave(Class<?> type) {
+        ByteBuddyAgent.install();
+        new ByteBuddy()
+                .redefine(type)
+                .visit(Advice.to(FinalTypeAdvice.class).on(isMethod()
+                        .and(isPublic())
+                        .and(not(isStatic()))
+                        .and(not(returns(void.class)))))
+                .make()
+                .load(type.getClassLoader(), ClassReloadingStrategy.fromInstalledAgent());
+        return type;
+    }
+
+    private static void setAnswers(Object fake, Answers answers) {
+        try {
+            fake.getClass().getField(ANSWERS_FIELD).set(fake, answers);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            throw new IllegalStateException("Unable to set the answers of a fake " + fake.getClass(), e);
+        }
+    }
+
+    private static Object answer(Object fake, Answers answers, String method, Object[] arguments) {
+        switch (method) {
+            case "hashCode":
+                return System.identityHashCode(fake);
+            case "equals":
+                return fake == arguments[0];
+            default:
+                return answers.answer(method, arguments);
+        }
+    }
+
+    /**
+     * Called from the advice woven into final types; returns null when {@code self} is not a fake,
+     * letting the original method run.
+     */
+    public static Object answerFinal(Object self, String method, Object[] arguments) {
+        Answers answers = answersByFinalFake.get(self);
+
+        if (answers == null) {
+            return null;
+        }
+        Object answer = answer(self, answers, method, arguments);
+        return answer == null ? NULL : answer;
+    }
+
+    public static Object unwrap(Object answer) {
+        return answer == NULL ? null : answer;
+    }
+
+    public static class SubclassDispatcher {
+        @RuntimeType
+        public static Object dispatch(@This Object fake, @FieldValue(ANSWERS_FIELD) Answers answers,
+                                      @Origin Method method, @AllArguments Object[] arguments) {
+            Object answer = answer(fake, answers, method.getName(), arguments);
+
+            if (answer == null && method.getReturnType().isPrimitive()) {
+                return defaultValue(method.getReturnType());
+            }
+            return answer;
+        }
+
+        private static Object defaultValue(Class<?> type) {
+            if (type == boolean.class) {
+                return false;
+            } else if (type == char.class) {
+                return '\0';
+            } else if (type == long.class) {
+                return 0L;
+            } else if (type == float.class) {
+                return 0f;
+            } else if (type == double.class) {
+                return 0d;
+            } else if (type == short.class) {
+                return (short) 0;
+            } else if (type == byte.class) {
+                return (byte) 0;
+            } else if (type == void.class) {
+                return null;
+            }
+            return 0;
+        }
+    }
+
+    public static class FinalTypeAdvice {
+        @Advice.OnMethodEnter(skipOn = Advice.OnNonDefaultValue.class)
+        public static Object enter(@Advice.This Object self, @Advice.Origin("#m") String method,
+                                   @Advice.AllArguments Object[] arguments) {
+            return Fakes.answerFinal(self, method, arguments);
+        }
+
+        @Advice.OnMethodExit
+        public static void exit(@Advice.Enter Object answer,
+                                @Advice.Return(readOnly = false, typing = Assigner.Typing.DYNAMIC) Object returned) {
+            if (answer != null) {
+                returned = Fakes.unwrap(answer);
+            }
+        }
+    }
+}
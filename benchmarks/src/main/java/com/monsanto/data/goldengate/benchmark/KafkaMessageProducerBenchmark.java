@@ -0,0 +1,62 @@
+package com.monsanto.data.goldengate.benchmark;
+
+import com.monsanto.data.goldengate.config.KafkaConfiguration;
+import com.monsanto.data.goldengate.kafka.KafkaMessageProducer;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends a pre-encoded message through {@link KafkaMessageProducer} to an auto-completing
+ * {@link MockProducer}, isolating the adapter's own send path from the network.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KafkaMessageProducerBenchmark {
+    @Param({"false", "true"})
+    public boolean async;
+
+    @Param({"256", "4096"})
+    public int messageSize;
+
+    private MockProducer mockProducer;
+    private KafkaMessageProducer messageProducer;
+    private byte[] key;
+    private byte[] message;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        KafkaConfiguration configuration = KafkaConfiguration.builder("localhost:9092", SyntheticOperations.TOPIC)
+                .async(async)
+                .build();
+        mockProducer = new MockProducer(true);
+        messageProducer = new KafkaMessageProducer(mockProducer, configuration);
+        key = "1234567890".getBytes();
+        message = new byte[messageSize];
+    }
+
+    /**
+     * MockProducer keeps every record it has seen; drop them so the history does not dominate the heap.
+     */
+    @TearDown(Level.Iteration)
+    public void clearHistory() {
+        messageProducer.flush();
+        mockProducer.clear();
+    }
+
+    @Benchmark
+    public void produce() {
+        messageProducer.produce(SyntheticOperations.TOPIC, key, message);
+    }
+
+    @Benchmark
+    public void produceAndFlush() {
+        messageProducer.produce(SyntheticOperations.TOPIC, key, message);
+        messageProducer.flush();
+    }
+}
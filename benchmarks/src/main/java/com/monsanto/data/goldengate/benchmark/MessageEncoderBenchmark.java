@@ -0,0 +1,59 @@
+package com.monsanto.data.goldengate.benchmark;
+
+import com.goldengate.atg.datasource.DsOperation;
+import com.goldengate.atg.datasource.adapt.Op;
+import com.goldengate.atg.datasource.adapt.Tx;
+import com.goldengate.atg.datasource.meta.TableName;
+import com.monsanto.data.goldengate.MessageEncoder;
+import com.monsanto.data.goldengate.encoder.EncoderType;
+import com.monsanto.data.goldengate.encoder.MessageEncoderFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes a single synthetic operation per invocation. Narrow rows are 8 columns of 16 characters,
+ * wide rows 200 columns of 64 characters.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageEncoderBenchmark {
+    @Param({"JSON", "AVRO", "SMILE", "CBOR"})
+    public String encoder;
+
+    @Param({"narrow", "wide"})
+    public String row;
+
+    @Param({"DO_INSERT", "DO_UPDATE"})
+    public DsOperation.OpType opType;
+
+    private MessageEncoder messageEncoder;
+    private Tx tx;
+    private Op op;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        boolean wide = "wide".equals(row);
+        int columns = wide ? 200 : 8;
+        TableName tableName = SyntheticOperations.tableName();
+
+        messageEncoder = MessageEncoderFactory.create(SyntheticOperations.configuration(EncoderType.valueOf(encoder)));
+        messageEncoder.metaDataChanged(SyntheticOperations.metaData(tableName, columns));
+        op = SyntheticOperations.operation(tableName, opType, columns, wide ? 64 : 16, 1L);
+        tx = SyntheticOperations.transaction(op);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return messageEncoder.encode(tx, op);
+    }
+
+    @Benchmark
+    public byte[] encodeKey() {
+        return messageEncoder.encodeKey(op);
+    }
+}
@@ -0,0 +1,296 @@
+package com.monsanto.data.goldengate.benchmark;
+
+import com.goldengate.atg.datasource.DsColumn;
+import com.goldengate.atg.datasource.DsOperation;
+import com.goldengate.atg.datasource.DsToken;
+import com.goldengate.atg.datasource.TxState;
+import com.goldengate.atg.datasource.adapt.Col;
+import com.goldengate.atg.datasource.adapt.Op;
+import com.goldengate.atg.datasource.adapt.Tx;
+import com.goldengate.atg.datasource.meta.ColumnMetaData;
+import com.goldengate.atg.datasource.meta.DsMetaData;
+import com.goldengate.atg.datasource.meta.TableMetaData;
+import com.goldengate.atg.datasource.meta.TableName;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.monsanto.data.goldengate.GoldenGateConstants;
+import com.monsanto.data.goldengate.config.Conf;
+import com.monsanto.data.goldengate.config.KafkaConfiguration;
+import com.monsanto.data.goldengate.config.MetricsConfiguration;
+import com.monsanto.data.goldengate.config.TableConfiguration;
+import com.monsanto.data.goldengate.encoder.EncoderType;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds synthetic GoldenGate operations for the benchmarks from {@link Fakes}. Every table has the
+ * same layout: columns {@code COLUMN_0..n} of fixed-width values, keyed on the first column, with
+ * two configured tokens.
+ */
+final class SyntheticOperations {
+    static final String SCHEMA = "BENCH";
+    static final String TABLE = "ORDERS";
+    static final String TOPIC = "benchmark";
+    static final String TIMESTAMP = "2015-10-26 12:00:00.000000";
+    static final List<String> TOKEN_NAMES = Arrays.asList("TKN-CSN", "TKN-USER");
+
+    private SyntheticOperations() {
+    }
+
+    static Conf configuration(EncoderType encoderType) {
+        KafkaConfiguration kafka = KafkaConfiguration.builder("localhost:9092", TOPIC)
+                .keyByPrimaryKey(true)
+                .build();
+        return Conf.builder(encoderType, kafka)
+                .metrics(new MetricsConfiguration(false, "benchmark", 60L))
+                .addTableConfiguration(new TableConfiguration(SCHEMA, TABLE, TOKEN_NAMES))
+                .build();
+    }
+
+    static TableName tableName() {
+        return Fakes.fake(TableName.class, new Fakes.Answers() {
+            @Override
+            public Object answer(String method, Object[] arguments) {
+                switch (method) {
+                    case "getSchemaName":
+                        return SCHEMA;
+                    case "getShortName":
+                        return TABLE;
+                    case "getFullName":
+                    case "getOriginalName":
+                    case "toString":
+                        return SCHEMA + "." + TABLE;
+                    default:
+                        return null;
+                }
+            }
+        });
+    }
+
+    static DsMetaData metaData(final TableName tableName, final int columnCount) {
+        final List<ColumnMetaData> columns = Lists.newArrayListWithCapacity(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            columns.add(columnMetaData(i));
+        }
+
+        final TableMetaData tableMetaData = Fakes.fake(TableMetaData.class, new Fakes.Answers() {
+            @Override
+            public Object answer(String method, Object[] arguments) {
+                switch (method) {
+                    case "getNumColumns":
+                        return columnCount;
+                    case "getColumnMetaData":
+                        return columns.get((Integer) arguments[0]);
+                    default:
+                        return null;
+                }
+            }
+        });
+
+        return Fakes.fake(DsMetaData.class, new Fakes.Answers() {
+            @Override
+            public Object answer(String method, Object[] arguments) {
+                if ("getTableMetaData".equals(method) && arguments[0] == tableName) {
+                    return tableMetaData;
+                }
+                return null;
+            }
+        });
+    }
+
+    static Op operation(final TableName tableName, final DsOperation.OpType opType, int columnCount, int valueLength, final long seqno) {
+        final List<Col> columns = Lists.newArrayListWithCapacity(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            columns.add(column(columnName(i), value(i, valueLength), opType));
+        }
+        final DsOperation data = operationData(tableName, opType);
+
+        return Fakes.fake(Op.class, new Fakes.Answers() {
+            @Override
+            public Object answer(String method, Object[] arguments) {
+                switch (method) {
+                    case "getTableName":
+                        return tableName;
+                    case "getOperationType":
+                    case "getOpType":
+                        return opType;
+                    case "getTimestamp":
+                        return TIMESTAMP;
+                    case "getSeqno":
+                        return seqno;
+                    case "getRba":
+                        return seqno * 1024;
+                    case "getPosition":
+                        return seqno + ":" + seqno * 1024;
+                    case "getTxState":
+                        return TxState.WHOLE;
+                    case "getEnv":
+                        return environment((String) arguments[0], (String) arguments[1], seqno);
+                    case "getData":
+                        return data;
+                    case "iterator":
+                        return columns.iterator();
+                    case "getNumColumns":
+                        return columns.size();
+                    case "getColumn":
+                        return columns.get((Integer) arguments[0]);
+                    case "toString":
+                        return "Op(" + seqno + ")";
+                    default:
+                        return null;
+                }
+            }
+        });
+    }
+
+    static Tx transaction(final List<Op> ops, final String tranId) {
+        return Fakes.fake(Tx.class, new Fakes.Answers() {
+            @Override
+            public Object answer(String method, Object[] arguments) {
+                switch (method) {
+                    case "getTranID":
+                        return tranId;
+                    case "getTotalOps":
+                    case "getSize":
+                        return ops.size();
+                    case "getTimestamp":
+                        return TIMESTAMP;
+                    case "iterator":
+                        return ops.iterator();
+                    case "toString":
+                        return "Tx(" + tranId + ")";
+                    default:
+                        return null;
+                }
+            }
+        });
+    }
+
+    static Tx transaction(Op op) {
+        return transaction(Collections.singletonList(op), "1.2.3");
+    }
+
+    private static String environment(String group, String name, long seqno) {
+        if (GoldenGateConstants.ENV_TRANSACTION.equals(group) && GoldenGateConstants.ENV_USERNAME.equals(name)) {
+            return "BENCH_USER";
+        } else if (GoldenGateConstants.ENV_GGENVIRONMENT.equals(group) && GoldenGateConstants.ENV_HOSTNAME.equals(name)) {
+            return "benchhost";
+        } else if (GoldenGateConstants.ENV_TRANSACTION.equals(group) && GoldenGateConstants.ENV_TRANSACTIONID.equals(name)) {
+            return "1.2." + seqno;
+        }
+        return null;
+    }
+
+    private static DsOperation operationData(final TableName tableName, final DsOperation.OpType opType) {
+        final Map<String, DsToken> tokens = tokens();
+
+        return Fakes.fake(DsOperation.class, new Fakes.Answers() {
+            @Override
+            public Object answer(String method, Object[] arguments) {
+                switch (method) {
+                    case "getTableName":
+                        return tableName;
+                    case "getOperationType":
+                        return opType;
+                    case "getTokens":
+                        return tokens;
+                    default:
+                        return null;
+                }
+            }
+        });
+    }
+
+    private static Col column(final String name, final String value, final DsOperation.OpType opType) {
+        final DsColumn after = Fakes.fake(DsColumn.class, new Fakes.Answers() {
+            @Override
+            public Object answer(String method, Object[] arguments) {
+                switch (method) {
+                    case "isValueNull":
+                        return opType.isDelete();
+                    case "getValue":
+                        return opType.isDelete() ? null : value;
+                    default:
+                        return null;
+                }
+            }
+        });
+
+        return Fakes.fake(Col.class, new Fakes.Answers() {
+            @Override
+            public Object answer(String method, Object[] arguments) {
+                switch (method) {
+                    case "getName":
+                        return name;
+                    case "getAfter":
+                        return after;
+                    case "hasAfterValue":
+                        return !opType.isDelete();
+                    case "hasBeforeValue":
+                        return !opType.isInsert();
+                    case "getAfterValue":
+                        return opType.isDelete() ? null : value;
+                    case "getBeforeValue":
+                        return opType.isInsert() ? null : value;
+                    case "getValue":
+                        return value;
+                    case "isChanged":
+                        return false;
+                    default:
+                        return null;
+                }
+            }
+        });
+    }
+
+    private static ColumnMetaData columnMetaData(final int column) {
+        return Fakes.fake(ColumnMetaData.class, new Fakes.Answers() {
+            @Override
+            public Object answer(String method, Object[] arguments) {
+                switch (method) {
+                    case "getColumnName":
+                        return columnName(column);
+                    case "isKeyCol":
+                        return column == 0;
+                    default:
+                        return null;
+                }
+            }
+        });
+    }
+
+    private static Map<String, DsToken> tokens() {
+        ImmutableMap.Builder<String, DsToken> tokens = ImmutableMap.builder();
+        for (final String tokenName : TOKEN_NAMES) {
+            tokens.put(tokenName, Fakes.fake(DsToken.class, new Fakes.Answers() {
+                @Override
+                public Object answer(String method, Object[] arguments) {
+                    switch (method) {
+                        case "isSet":
+                            return true;
+                        case "toString":
+                            return tokenName.toLowerCase();
+                        default:
+                            return null;
+                    }
+                }
+            }));
+        }
+        return tokens.build();
+    }
+
+    private static String columnName(int column) {
+        return "COLUMN_" + column;
+    }
+
+    private static String value(int column, int length) {
+        StringBuilder value = new StringBuilder(length);
+        while (value.length() < length) {
+            value.append((char) ('A' + (column + value.length()) % 26));
+        }
+        return value.toString();
+    }
+}
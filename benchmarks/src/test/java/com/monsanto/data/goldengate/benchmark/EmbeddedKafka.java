@@ -0,0 +1,147 @@
+package com.monsanto.data.goldengate.benchmark;
+
+import kafka.server.KafkaConfig;
+import kafka.server.KafkaServerStartable;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.zookeeper.server.NIOServerCnxnFactory;
+import org.apache.zookeeper.server.ZooKeeperServer;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A single Kafka broker and its ZooKeeper, running in this JVM on free localhost ports with their
+ * data in a temporary directory that is deleted on {@link #stop()}. Topics are created on first use
+ * with the given number of partitions.
+ */
+final class EmbeddedKafka {
+    private final File directory;
+    private final int partitions;
+    private ZooKeeperServer zooKeeper;
+    private NIOServerCnxnFactory zooKeeperConnections;
+    private KafkaServerStartable broker;
+    private String brokerList;
+
+    EmbeddedKafka(int partitions) throws IOException {
+        this.directory = Files.createTempDirectory("embedded-kafka").toFile();
+        this.partitions = partitions;
+    }
+
+    void start() throws IOException, InterruptedException {
+        zooKeeper = new ZooKeeperServer(new File(directory, "zookeeper"), new File(directory, "zookeeper"), 500);
+        zooKeeperConnections = new NIOServerCnxnFactory();
+        zooKeeperConnections.configure(new InetSocketAddress("localhost", 0), 100);
+        zooKeeperConnections.startup(zooKeeper);
+
+        int port = freePort();
+        Properties properties = new Properties();
+        properties.put("broker.id", "0");
+        properties.put("host.name", "localhost");
+        properties.put("port", String.valueOf(port));
+        properties.put("zookeeper.connect", "localhost:" + zooKeeperConnections.getLocalPort());
+        properties.put("log.dir", new File(directory, "kafka").getPath());
+        properties.put("num.partitions", String.valueOf(partitions));
+        properties.put("auto.create.topics.enable", "true");
+        properties.put("offsets.topic.replication.factor", "1");
+        broker = new KafkaServerStartable(new KafkaConfig(properties));
+        broker.startup();
+        brokerList = "localhost:" + port;
+    }
+
+    String getBrokerList() {
+        return brokerList;
+    }
+
+    /**
+     * Creates the topic by sending a record to it, retrying until its partitions have a leader.
+     */
+    void createTopic(String topic) throws ExecutionException, InterruptedException {
+        Properties properties = new Properties();
+        properties.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, brokerList);
+        properties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, "org.apache.kafka.common.serialization.ByteArraySerializer");
+        properties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, "org.apache.kafka.common.serialization.ByteArraySerializer");
+        properties.put(ProducerConfig.RETRIES_CONFIG, "50");
+        properties.put(ProducerConfig.RETRY_BACKOFF_MS_CONFIG, "100");
+
+        try (KafkaProducer<byte[], byte[]> producer = new KafkaProducer<>(properties)) {
+            for (int partition = 0; partition < partitions; partition++) {
+                producer.send(new ProducerRecord<>(topic, partition, (byte[]) null, new byte[0])).get();
+            }
+        }
+    }
+
+    /**
+     * Bytes the broker has received for the topic, from its BytesInPerSec meter.
+     */
+    long bytesIn(String topic) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("\"kafka.server\":type=\"BrokerTopicMetrics\",name=\"" + topic + "-BytesInPerSec\"");
+            if (!server.isRegistered(name)) {
+                name = new ObjectName("kafka.server:type=BrokerTopicMetrics,name=BytesInPerSec,topic=" + topic);
+            }
+            return ((Number) server.getAttribute(name, "Count")).longValue();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Bytes of the topic's log segments on disk.
+     */
+    long logBytes(String topic) {
+        long bytes = 0;
+        for (int partition = 0; partition < partitions; partition++) {
+            File[] files = new File(new File(directory, "kafka"), topic + "-" + partition).listFiles();
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                if (file.getName().endsWith(".log")) {
+                    bytes += file.length();
+                }
+            }
+        }
+        return bytes;
+    }
+
+    void stop() {
+        if (broker != null) {
+            broker.shutdown();
+            broker.awaitShutdown();
+        }
+        if (zooKeeperConnections != null) {
+            zooKeeperConnections.shutdown();
+        }
+        if (zooKeeper != null) {
+            zooKeeper.shutdown();
+        }
+        delete(directory);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,322 @@
+package com.monsanto.data.goldengate.benchmark;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.UniformReservoir;
+import com.goldengate.atg.datasource.DataSourceListener;
+import com.goldengate.atg.datasource.DsConfiguration;
+import com.goldengate.atg.datasource.DsEvent;
+import com.goldengate.atg.datasource.DsOperation;
+import com.goldengate.atg.datasource.DsTransaction;
+import com.goldengate.atg.datasource.GGDataSource;
+import com.goldengate.atg.datasource.adapt.Op;
+import com.goldengate.atg.datasource.adapt.Tx;
+import com.goldengate.atg.datasource.meta.DsMetaData;
+import com.goldengate.atg.datasource.meta.TableMetaData;
+import com.goldengate.atg.datasource.meta.TableName;
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.monsanto.data.goldengate.EventHandler;
+import com.monsanto.data.goldengate.MessageEncoder;
+import com.monsanto.data.goldengate.MessageProducer;
+import com.monsanto.data.goldengate.SendCallback;
+import com.monsanto.data.goldengate.TxFactory;
+import com.monsanto.data.goldengate.config.Conf;
+import com.monsanto.data.goldengate.config.KafkaConfiguration;
+import com.monsanto.data.goldengate.config.MetricsConfiguration;
+import com.monsanto.data.goldengate.config.TableConfiguration;
+import com.monsanto.data.goldengate.encoder.EncoderType;
+import com.monsanto.data.goldengate.encoder.MessageEncoderFactory;
+import com.monsanto.data.goldengate.kafka.KafkaProducerFactory;
+import com.monsanto.data.goldengate.table.TableDescriptorCache;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Drives {@link EventHandler} with synthetic operations against a Kafka broker running in this JVM,
+ * for every combination of table width, transaction size and compression codec, and reports
+ * sustained throughput, ack latency percentiles, GC time and the bytes the broker received. Each run
+ * is measured after a warm-up of a tenth of its operations; the topic's log bytes include the warm-up.
+ *
+ * Run with {@code mvn -Psoak verify} after installing the adapter. The runs are sized with system
+ * properties: {@code soak.operations} per run (default 1000000), comma-separated
+ * {@code soak.columns}, {@code soak.transaction-sizes} and {@code soak.compressions} ({@code none}
+ * for no compression), {@code soak.mode} ({@code op} or {@code tx}), {@code soak.async} and
+ * {@code soak.partitions}.
+ */
+@RunWith(Parameterized.class)
+public class EventHandlerSoak_IT {
+    private static final int OPERATIONS = Integer.getInteger("soak.operations", 1000000);
+    private static final String MODE = System.getProperty("soak.mode", "tx");
+    private static final boolean ASYNC = Boolean.parseBoolean(System.getProperty("soak.async", "true"));
+    private static final int PARTITIONS = Integer.getInteger("soak.partitions", 4);
+    private static final int VALUE_LENGTH = 16;
+
+    private static final List<String> results = new ArrayList<>();
+    private static EmbeddedKafka kafka;
+
+    private final int columns;
+    private final int transactionSize;
+    private final String compression;
+
+    public EventHandlerSoak_IT(int columns, int transactionSize, String compression) {
+        this.columns = columns;
+        this.transactionSize = transactionSize;
+        this.compression = compression;
+    }
+
+    @Parameterized.Parameters(name = "columns={0}, transactionSize={1}, compression={2}")
+    public static Collection<Object[]> parameters() {
+        List<Object[]> parameters = new ArrayList<>();
+        for (String columns : System.getProperty("soak.columns", "8,200").split(",")) {
+            for (String transactionSize : System.getProperty("soak.transaction-sizes", "1,100").split(",")) {
+                for (String compression : System.getProperty("soak.compressions", "none,snappy").split(",")) {
+                    parameters.add(new Object[]{Integer.parseInt(columns.trim()), Integer.parseInt(transactionSize.trim()), compression.trim()});
+                }
+            }
+        }
+        return parameters;
+    }
+
+    @BeforeClass
+    public static void startKafka() throws Exception {
+        kafka = new EmbeddedKafka(PARTITIONS);
+        kafka.start();
+    }
+
+    @AfterClass
+    public static void stopKafka() {
+        kafka.stop();
+
+        System.out.println();
+        System.out.println(String.format("%-8s %-8s %-8s %12s %10s %10s %10s %10s %8s %14s %14s",
+                "columns", "tx size", "codec", "ops/s", "ack p50", "ack p99", "ack p999", "commit p99", "gc ms", "broker bytes", "log bytes"));
+        for (String result : results) {
+            System.out.println(result);
+        }
+    }
+
+    @Test
+    public void sustainsThroughput() throws Exception {
+        String topic = "soak-" + columns + "-" + transactionSize + "-" + compression;
+        kafka.createTopic(topic);
+
+        Conf configuration = configuration(topic);
+        AckLatencyProducer messageProducer = new AckLatencyProducer(KafkaProducerFactory.create(configuration));
+        Driver driver = new Driver(configuration, messageProducer);
+
+        try {
+            driver.run(Math.max(OPERATIONS / 10 / transactionSize, 1));
+            messageProducer.reset();
+            long bytesBefore = kafka.bytesIn(topic);
+            long gcBefore = gcMillis();
+            long start = System.nanoTime();
+
+            int transactions = Math.max(OPERATIONS / transactionSize, 1);
+            driver.run(transactions);
+
+            long elapsedNanos = System.nanoTime() - start;
+            long gc = gcMillis() - gcBefore;
+            long operations = (long) transactions * transactionSize;
+            Snapshot ack = messageProducer.latencies.getSnapshot();
+            Snapshot commit = driver.commitLatencies.getSnapshot();
+
+            assertThat(messageProducer.sent.get(), equalTo(operations));
+            assertThat(messageProducer.awaitAcknowledged(), equalTo(operations));
+
+            results.add(String.format("%-8d %-8d %-8s %12.0f %8.2fms %8.2fms %8.2fms %8.2fms %8d %14d %14d",
+                    columns, transactionSize, compression,
+                    operations / (elapsedNanos / 1e9),
+                    millis(ack.getMedian()), millis(ack.get99thPercentile()), millis(ack.get999thPercentile()),
+                    millis(commit.get99thPercentile()),
+                    gc, kafka.bytesIn(topic) - bytesBefore, kafka.logBytes(topic)));
+        } finally {
+            messageProducer.terminate();
+        }
+    }
+
+    private Conf configuration(String topic) {
+        Optional<String> codec = "none".equals(compression) ? Optional.<String>absent() : Optional.of(compression);
+        KafkaConfiguration kafkaConfiguration = KafkaConfiguration.builder(kafka.getBrokerList(), topic)
+                .compression(codec)
+                .async(ASYNC)
+                .keyByPrimaryKey(true)
+                .build();
+        return Conf.builder(EncoderType.JSON, kafkaConfiguration)
+                .metrics(new MetricsConfiguration(false, "soak", 60L))
+                .addTableConfiguration(new TableConfiguration(SyntheticOperations.SCHEMA, SyntheticOperations.TABLE,
+                        SyntheticOperations.TOKEN_NAMES))
+                .build();
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(collector.getCollectionTime(), 0);
+        }
+        return millis;
+    }
+
+    private static double millis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Feeds transactions of the same synthetic operations through the handler callbacks, recording
+     * how long each commit, which waits for the acks, takes.
+     */
+    private class Driver {
+        private final EventHandler eventHandler;
+        private final DsEvent event = Fakes.fake(DsEvent.class);
+        private final DsTransaction transaction = Fakes.fake(DsTransaction.class);
+        private final List<DsOperation> operations = Lists.newArrayList();
+        private final Histogram commitLatencies = new Histogram(new UniformReservoir());
+
+        private Driver(Conf configuration, MessageProducer messageProducer) {
+            final TableName tableName = SyntheticOperations.tableName();
+            List<Op> ops = Lists.newArrayList();
+            final Map<DsOperation, Op> opsByOperation = new IdentityHashMap<>();
+
+            for (int i = 0; i < transactionSize; i++) {
+                Op op = SyntheticOperations.operation(tableName, DsOperation.OpType.DO_INSERT, columns, VALUE_LENGTH, i);
+                DsOperation operation = Fakes.fake(DsOperation.class, new Fakes.Answers() {
+                    @Override
+                    public Object answer(String method, Object[] arguments) {
+                        return "getTableName".equals(method) ? tableName : null;
+                    }
+                });
+                ops.add(op);
+                operations.add(operation);
+                opsByOperation.put(operation, op);
+            }
+            final Tx tx = SyntheticOperations.transaction(ops, "1.2.3");
+
+            TxFactory txFactory = new TxFactory() {
+                @Override
+                public Tx createAdapterTx(DsTransaction transaction, DsMetaData metaData, DsConfiguration configuration) {
+                    return tx;
+                }
+
+                @Override
+                public Op createAdapterOp(DsOperation operation, TableMetaData tableMetaData, DsConfiguration configuration) {
+                    return opsByOperation.get(operation);
+                }
+            };
+
+            TableDescriptorCache tableDescriptors = new TableDescriptorCache(configuration);
+            MessageEncoder messageEncoder = MessageEncoderFactory.create(configuration, tableDescriptors);
+            messageEncoder.metaDataChanged(SyntheticOperations.metaData(tableName, columns));
+
+            final boolean operationMode = "op".equals(MODE);
+            eventHandler = new EventHandler(configuration, messageEncoder, messageProducer, tableDescriptors, txFactory) {
+                @Override
+                public boolean isOperationMode() {
+                    return operationMode;
+                }
+            };
+            eventHandler.setState(DataSourceListener.State.READY);
+        }
+
+        private void run(int transactions) {
+            for (int i = 0; i < transactions; i++) {
+                eventHandler.transactionBegin(event, transaction);
+                for (DsOperation operation : operations) {
+                    eventHandler.operationAdded(event, transaction, operation);
+                }
+
+                long start = System.nanoTime();
+                GGDataSource.Status status = eventHandler.transactionCommit(event, transaction);
+                commitLatencies.update(System.nanoTime() - start);
+                assertThat(status, equalTo(GGDataSource.Status.OK));
+            }
+        }
+    }
+
+    /**
+     * Measures the time from handing each record to the producer to its acknowledgement.
+     */
+    private static class AckLatencyProducer implements MessageProducer {
+        private final MessageProducer producer;
+        private final AtomicLong sent = new AtomicLong();
+        private final AtomicLong acknowledged = new AtomicLong();
+        private volatile Histogram latencies = new Histogram(new UniformReservoir());
+
+        private AckLatencyProducer(MessageProducer producer) {
+            this.producer = producer;
+        }
+
+        @Override
+        public void produce(String topic, byte[] key, byte[] bytes) {
+            produce(topic, key, bytes, null);
+        }
+
+        @Override
+        public void produce(String topic, byte[] key, byte[] bytes, final SendCallback callback) {
+            final long start = System.nanoTime();
+            final Histogram histogram = latencies;
+            sent.incrementAndGet();
+
+            producer.produce(topic, key, bytes, new SendCallback() {
+                @Override
+                public void onAcknowledged() {
+                    histogram.update(System.nanoTime() - start);
+                    acknowledged.incrementAndGet();
+                    if (callback != null) {
+                        callback.onAcknowledged();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void flush() {
+            producer.flush();
+        }
+
+        @Override
+        public void terminate() {
+            producer.terminate();
+        }
+
+        @Override
+        public void registerMetrics(MetricRegistry metrics) {
+            producer.registerMetrics(metrics);
+        }
+
+        /**
+         * The number of acknowledged records once every sent record is, or after a few seconds; callbacks
+         * may still be running when the flush returns.
+         */
+        private long awaitAcknowledged() throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000L;
+            while (acknowledged.get() < sent.get() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            return acknowledged.get();
+        }
+
+        private void reset() {
+            flush();
+            latencies = new Histogram(new UniformReservoir());
+            sent.set(0);
+            acknowledged.set(0);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.monsanto.data.goldengate;
+
+import com.goldengate.atg.datasource.adapt.Op;
+import com.goldengate.atg.datasource.adapt.Tx;
+
+import java.util.List;
+
+/**
+ * A message encoder that can also write transaction envelopes.
+ */
+public interface EnvelopeEncoder extends MessageEncoder {
+
+    /**
+     * Encodes a chunk of a transaction's operations as one envelope carrying the
+     * transaction metadata once. Chunks are numbered from 0 to chunkCount - 1.
+     */
+    byte[] encodeTransaction(Tx tx, List<Op> ops, int chunk, int chunkCount);
+
+}
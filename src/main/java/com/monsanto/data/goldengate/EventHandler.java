@@ -1,5 +1,6 @@
 package com.monsanto.data.goldengate;
 
+import com.codahale.metrics.JmxReporter;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.ScheduledReporter;
@@ -8,18 +9,32 @@ import com.goldengate.atg.datasource.*;
 import com.goldengate.atg.datasource.adapt.Op;
 import com.goldengate.atg.datasource.adapt.Tx;
 import com.goldengate.atg.datasource.meta.DsMetaData;
-import com.goldengate.atg.datasource.meta.TableMetaData;
+import com.goldengate.atg.datasource.meta.TableName;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.monsanto.data.goldengate.checkpoint.SendCheckpoint;
 import com.monsanto.data.goldengate.config.Conf;
+import com.monsanto.data.goldengate.config.TableConfiguration;
 import com.monsanto.data.goldengate.config.factory.ConfigurationFactory;
+import com.monsanto.data.goldengate.config.factory.ConfigurationWatcher;
 import com.monsanto.data.goldengate.config.factory.TypesafeConfigFactory;
 import com.monsanto.data.goldengate.encoder.MessageEncoderFactory;
 import com.monsanto.data.goldengate.kafka.KafkaProducerFactory;
 import com.monsanto.data.goldengate.metrics.MetricsReporterFactory;
+import com.monsanto.data.goldengate.metrics.OperationTrace;
+import com.monsanto.data.goldengate.metrics.OperationTracer;
+import com.monsanto.data.goldengate.metrics.ReplicationLag;
+import com.monsanto.data.goldengate.metrics.TableMetrics;
+import com.monsanto.data.goldengate.pipeline.OperationPipeline;
+import com.monsanto.data.goldengate.table.TableDescriptor;
+import com.monsanto.data.goldengate.table.TableDescriptorCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static com.goldengate.atg.datasource.GGDataSource.Status;
@@ -31,17 +46,28 @@ public class EventHandler extends AbstractHandler {
     private AtomicLong numTxs = new AtomicLong(0);
 
     private ConfigurationFactory configurationFactory = new TypesafeConfigFactory();
-    private Conf configuration;
-    private MessageEncoder messageEncoder;
+    private volatile Snapshot snapshot;
     private MessageProducer messageProducer;
+    private OperationPipeline operationPipeline;
+    private SendCheckpoint checkpoint;
+    private ConfigurationWatcher configurationWatcher;
+    private OperationTracer operationTracer;
 
     private MetricRegistry metrics = new MetricRegistry();
     private Timer operationProcessingTimer = metrics.timer("operationProcessingTime");
     private Timer messageEncodingTimer = metrics.timer("encodingTime");
     private Timer messageSendingTimer = metrics.timer("sendingTime");
+    private Timer messageAcknowledgementTimer = metrics.timer("acknowledgementTime");
     private Meter operationProcessingErrorMeter = metrics.meter("processingErrors");
+    private Meter filteredOperationMeter = metrics.meter("filteredOperations");
+    private Meter skippedOperationMeter = metrics.meter("skippedOperations");
+    private ReplicationLag replicationLag = new ReplicationLag(metrics);
+    private TableMetrics tableMetrics = new TableMetrics(metrics);
     private TxFactory txFactory;
+    private DsTransaction currentTransaction;
+    private Tx currentTx;
     private ScheduledReporter metricsReporter;
+    private JmxReporter jmxReporter;
 
     private String configurationPath;
 
@@ -51,9 +77,15 @@ public class EventHandler extends AbstractHandler {
     }
 
     @VisibleForTesting
-    public EventHandler(Conf configuration, MessageEncoder messageEncoder, MessageProducer messageProducer, TxFactory txFactory) {
-        this.configuration = configuration;
-        this.messageEncoder = messageEncoder;
+    public EventHandler(Conf configuration, MessageEncoder messageEncoder, MessageProducer messageProducer,
+                        TableDescriptorCache tableDescriptors, TxFactory txFactory) {
+        this(configuration, messageEncoder, null, messageProducer, tableDescriptors, txFactory);
+    }
+
+    @VisibleForTesting
+    public EventHandler(Conf configuration, MessageEncoder messageEncoder, EnvelopeEncoder envelopeEncoder, MessageProducer messageProducer,
+                        TableDescriptorCache tableDescriptors, TxFactory txFactory) {
+        this.snapshot = new Snapshot(configuration, messageEncoder, envelopeEncoder, tableDescriptors);
         this.messageProducer = messageProducer;
         this.txFactory = txFactory;
     }
@@ -62,19 +94,67 @@ public class EventHandler extends AbstractHandler {
     public void init(DsConfiguration conf, DsMetaData metaData) {
         super.init(conf, metaData);
         log.info("Initializing handler: Mode =" + getMode());
-        configuration = configurationFactory.load(configurationPath);
-        messageProducer = KafkaProducerFactory.create(configuration.kafka());
-        messageEncoder = MessageEncoderFactory.create(configuration);
+        Conf configuration = configurationFactory.load(configurationPath);
+        messageProducer = KafkaProducerFactory.create(configuration);
+        TableDescriptorCache tableDescriptors = new TableDescriptorCache(configuration);
+        MessageEncoder messageEncoder = MessageEncoderFactory.create(configuration, tableDescriptors);
+        messageEncoder.metaDataChanged(metaData);
         txFactory = new TxFactory();
 
+        if (configuration.checkpoint().isEnabled()) {
+            checkpoint = new SendCheckpoint(configuration.checkpoint());
+        }
+        if (configuration.trace().isEnabled()) {
+            operationTracer = new OperationTracer(configuration.trace());
+        }
+
+        EnvelopeEncoder envelopeEncoder = null;
+        if (configuration.envelope().isEnabled() && isOperationMode()) {
+            log.warn("Transaction envelopes are only written in tx mode; operations will be sent individually");
+        } else if (configuration.envelope().isEnabled()) {
+            envelopeEncoder = MessageEncoderFactory.createEnvelopeEncoder(configuration, tableDescriptors);
+            warnOfTableTopics(configuration);
+        }
+        snapshot = new Snapshot(configuration, messageEncoder, envelopeEncoder, tableDescriptors);
+
+        if (configuration.pipeline().isEnabled()) {
+            operationPipeline = createOperationPipeline(configuration, tableDescriptors);
+            operationPipeline.start();
+        }
+
+        messageProducer.registerMetrics(metrics);
+        replicationLag.setMaxAgeMillis(TimeUnit.SECONDS.toMillis(configuration.metrics().getReportFrequencyInSeconds()));
         if (configuration.metrics().isEnabled()) {
             metricsReporter = MetricsReporterFactory.createReporter(configuration.metrics(), metrics);
         }
+        if (configuration.metrics().isJmxEnabled()) {
+            jmxReporter = MetricsReporterFactory.createJmxReporter(configuration.metrics(), metrics);
+        }
+
+        if (configuration.reload().isEnabled()) {
+            configurationWatcher = new ConfigurationWatcher(configurationFactory, configurationPath, configuration);
+            configurationWatcher.start();
+        }
+    }
+
+    private OperationPipeline createOperationPipeline(Conf configuration, TableDescriptorCache tableDescriptors) {
+        return new OperationPipeline(configuration.pipeline(), createPipelineEncoders(configuration, tableDescriptors), messageProducer,
+                tableDescriptors, txFactory, metrics, replicationLag, tableMetrics, Optional.fromNullable(operationTracer));
+    }
+
+    private List<MessageEncoder> createPipelineEncoders(Conf configuration, TableDescriptorCache tableDescriptors) {
+        List<MessageEncoder> encoders = Lists.newArrayList();
+
+        for (int i = 0; i < configuration.pipeline().getEncoderThreads(); i++) {
+            encoders.add(MessageEncoderFactory.create(configuration, tableDescriptors));
+        }
+        return encoders;
     }
 
     @Override
     public Status transactionBegin(DsEvent e, DsTransaction transaction) {
         super.transactionBegin(e, transaction);
+        currentTransaction = null;
 
         if (log.isDebugEnabled()) {
             log.debug("Received begin tx event, numTx="
@@ -94,12 +174,24 @@ public class EventHandler extends AbstractHandler {
         super.operationAdded(e, transaction, operation);
         numOps.incrementAndGet();
 
-        final Tx tx = new Tx(transaction, getMetaData(), getConfig());
-        final TableMetaData tMeta = getMetaData().getTableMetaData(operation.getTableName());
-        final Op op = new Op(operation, tMeta, getConfig());
+        if (!isReplicated(operation.getTableName())) {
+            filteredOperationMeter.mark();
+            return Status.OK;
+        }
+
+        if (isOperationMode() && operationPipeline != null && checkpoint == null) {
+            return publishOperation(transaction, operation);
+        }
+
+        final Tx tx = adapterTx(transaction);
+        final TableDescriptor descriptor = snapshot.tableDescriptors.descriptorFor(operation.getTableName());
+        final Op op = txFactory.createAdapterOp(operation, descriptor.getTableMetaData(), getConfig());
 
         operation.getTokens();
         if (isOperationMode()) {
+            if (isDelivered(op)) {
+                return Status.OK;
+            }
 
             if (log.isDebugEnabled()) {
                 log.debug(" Received operation: table='"
@@ -111,7 +203,7 @@ public class EventHandler extends AbstractHandler {
 
             }
 
-            Status operationStatus = processOperation(tx, op);
+            Status operationStatus = operationPipeline == null ? processOperation(tx, op) : publishOperation(tx, op);
 
             if (Status.ABEND.equals(operationStatus)) {
                 overallStatus = Status.ABEND;
@@ -124,6 +216,7 @@ public class EventHandler extends AbstractHandler {
     public Status transactionCommit(DsEvent e, DsTransaction transaction) {
         Status overallStatus = Status.OK;
         super.transactionCommit(e, transaction);
+        currentTransaction = null;
 
         Tx tx = txFactory.createAdapterTx(transaction, getMetaData(), getConfig());
         numTxs.incrementAndGet();
@@ -136,9 +229,15 @@ public class EventHandler extends AbstractHandler {
                     + ", ts=" + tx.getTimestamp() + ")");
         }
 
-        if (!isOperationMode()) {
+        Snapshot snapshot = this.snapshot;
+        if (!isOperationMode() && snapshot.configuration.envelope().isEnabled()) {
+            overallStatus = processTransactionEnvelopes(snapshot, tx);
+        } else if (!isOperationMode()) {
             for (Op op : tx) {
-                Status operationStatus = processOperation(tx, op);
+                if (!isReplicated(op.getTableName()) || isDelivered(op)) {
+                    continue;
+                }
+                Status operationStatus = operationPipeline == null ? processOperation(tx, op) : publishOperation(tx, op);
 
                 if (Status.ABEND.equals(operationStatus)) {
                     overallStatus = Status.ABEND;
@@ -146,15 +245,178 @@ public class EventHandler extends AbstractHandler {
             }
         }
 
+        if (operationPipeline != null && Status.OK.equals(overallStatus)) {
+            overallStatus = awaitPipelineDrained(tx);
+        }
+
+        if (Status.OK.equals(overallStatus)) {
+            overallStatus = awaitAcknowledgements(tx);
+        }
+
+        if (checkpoint != null && Status.OK.equals(overallStatus)) {
+            overallStatus = commitCheckpoint(tx);
+        }
+
+        if (configurationWatcher != null && Status.OK.equals(overallStatus)) {
+            applyReloadedConfiguration();
+        }
+
         return overallStatus;
     }
 
+    /**
+     * Switches to the configuration reloaded since the last transaction, if any. Runs once everything
+     * sent so far has been acknowledged, so no transaction is encoded with a mix of the two. Encoders
+     * are only replaced when the encoding changed, and only descriptors of reconfigured tables rebuilt.
+     */
+    private void applyReloadedConfiguration() {
+        Optional<Conf> reloaded = configurationWatcher.poll();
+        if (!reloaded.isPresent()) {
+            return;
+        }
+
+        try {
+            Snapshot current = snapshot;
+            TableDescriptorCache tableDescriptors = current.tableDescriptors;
+            MessageEncoder encoder = current.messageEncoder;
+            EnvelopeEncoder envelopeEncoder = current.envelopeEncoder;
+            if (isEncodingChanged(current.configuration, reloaded.get())) {
+                encoder = MessageEncoderFactory.create(reloaded.get(), tableDescriptors);
+                if (envelopeEncoder != null) {
+                    envelopeEncoder = MessageEncoderFactory.createEnvelopeEncoder(reloaded.get(), tableDescriptors);
+                }
+                if (operationPipeline != null) {
+                    operationPipeline.encodersChanged(createPipelineEncoders(reloaded.get(), tableDescriptors));
+                }
+            }
+
+            int rebuilt = tableDescriptors.reconfigure(reloaded.get());
+            snapshot = new Snapshot(reloaded.get(), encoder, envelopeEncoder, tableDescriptors);
+            if (envelopeEncoder != null) {
+                warnOfTableTopics(reloaded.get());
+            }
+            log.info("Applied reloaded configuration; rebuilding the descriptors of " + rebuilt + " tables");
+        } catch (RuntimeException re) {
+            log.error("Unable to apply reloaded configuration; keeping the current configuration", re);
+        }
+    }
+
+    /**
+     * Envelopes span tables and all go to the default topic, so tables routed to topics of their
+     * own receive nothing there.
+     */
+    private void warnOfTableTopics(Conf configuration) {
+        for (TableConfiguration tableConfiguration : configuration.getTableConfigurations()) {
+            if (tableConfiguration.getTopic().isPresent()) {
+                log.warn("Transaction envelopes are sent to " + configuration.kafka().getTopicName() + "; ignoring topic "
+                        + tableConfiguration.getTopic().get() + " of table " + tableConfiguration.getSchema() + "." + tableConfiguration.getName());
+            }
+        }
+    }
+
+    private boolean isEncodingChanged(Conf configuration, Conf reloaded) {
+        return !reloaded.encoderType().equals(configuration.encoderType())
+                || reloaded.hasTableEncoderTypes() != configuration.hasTableEncoderTypes();
+    }
+
+    private boolean isReplicated(TableName tableName) {
+        return snapshot.tableDescriptors.descriptorFor(tableName).isReplicated();
+    }
+
+    /**
+     * True when the operation was acknowledged before a restart, according to the checkpoint.
+     */
+    private boolean isDelivered(Op op) {
+        if (checkpoint != null && checkpoint.isDelivered(op)) {
+            skippedOperationMeter.mark();
+            return true;
+        }
+        return false;
+    }
+
+    private void sent(Op op) {
+        if (checkpoint != null) {
+            checkpoint.sent(op);
+        }
+    }
+
+    private Status commitCheckpoint(Tx tx) {
+        try {
+            checkpoint.commit();
+            return Status.OK;
+        } catch (RuntimeException re) {
+            log.error("Error checkpointing transaction: " + tx.getTranID(), re);
+            return Status.ABEND;
+        }
+    }
+
+    /**
+     * The adapter view of the transaction an operation belongs to, built once per transaction
+     * rather than for each of its operations.
+     */
+    private Tx adapterTx(DsTransaction transaction) {
+        if (transaction != currentTransaction) {
+            currentTx = txFactory.createAdapterTx(transaction, getMetaData(), getConfig());
+            currentTransaction = transaction;
+        }
+        return currentTx;
+    }
+
+    private Status publishOperation(DsTransaction transaction, DsOperation operation) {
+        try {
+            operationPipeline.publish(transaction, operation, getMetaData(), getConfig());
+            return Status.OK;
+        } catch (RuntimeException re) {
+            log.error("Operation pipeline failed; not accepting operation on table " + operation.getTableName(), re);
+            return Status.ABEND;
+        }
+    }
+
+    private Status publishOperation(Tx tx, Op op) {
+        try {
+            operationPipeline.publish(tx, op);
+            sent(op);
+            return Status.OK;
+        } catch (RuntimeException re) {
+            log.error("Operation pipeline failed; not accepting operation: " + op, re);
+            return Status.ABEND;
+        }
+    }
+
+    private Status awaitPipelineDrained(Tx tx) {
+        try {
+            operationPipeline.awaitDrained();
+            return Status.OK;
+        } catch (RuntimeException re) {
+            log.error("Error processing operations of transaction: " + tx.getTranID(), re);
+            return Status.ABEND;
+        }
+    }
+
+    private Status awaitAcknowledgements(Tx tx) {
+        Timer.Context timer = messageAcknowledgementTimer.time();
+        Status status = Status.OK;
+
+        try {
+            messageProducer.flush();
+        } catch (RuntimeException re) {
+            operationProcessingErrorMeter.mark();
+            log.error("Error awaiting acknowledgements for transaction: " + tx.getTranID(), re);
+            status = Status.ABEND;
+        }
+
+        timer.stop();
+        return status;
+    }
+
     private Status processOperation(Tx tx, Op op) {
+        Snapshot snapshot = this.snapshot;
         Timer.Context timer = operationProcessingTimer.time();
         Status status = Status.OK;
 
         try {
-            encodeAndSend(tx,op);
+            encodeAndSend(snapshot, tx, op);
+            sent(op);
         } catch (RuntimeException re) {
             operationProcessingErrorMeter.mark();
             log.error("Error processing operation: " + op.toString(), re);
@@ -165,11 +427,50 @@ public class EventHandler extends AbstractHandler {
         return status;
     }
 
+    private Status processTransactionEnvelopes(Snapshot snapshot, Tx tx) {
+        List<Op> ops = Lists.newArrayList();
+        for (Op op : tx) {
+            if (isReplicated(op.getTableName()) && !isDelivered(op)) {
+                ops.add(op);
+            }
+        }
+        List<List<Op>> chunks = Lists.partition(ops, snapshot.configuration.envelope().getMaxOperations());
+        byte[] messageKey = tx.getTranID() == null ? null : tx.getTranID().getBytes(StandardCharsets.UTF_8);
+
+        for (int chunk = 0; chunk < chunks.size(); chunk++) {
+            Timer.Context timer = operationProcessingTimer.time();
+
+            try {
+                Timer.Context encodingTimer = messageEncodingTimer.time();
+                byte[] encodedMessage = snapshot.envelopeEncoder.encodeTransaction(tx, chunks.get(chunk), chunk, chunks.size());
+                encodingTimer.stop();
+
+                sendMessage(snapshot.configuration.kafka().getTopicName(), messageKey, encodedMessage, null);
+                for (Op op : chunks.get(chunk)) {
+                    tableMetrics.recordOperation(op);
+                    sent(op);
+                }
+            } catch (RuntimeException re) {
+                operationProcessingErrorMeter.mark();
+                log.error("Error processing chunk " + chunk + " of transaction: " + tx.getTranID(), re);
+                return Status.ABEND;
+            } finally {
+                timer.stop();
+            }
+        }
+        return Status.OK;
+    }
+
     @Override
     public Status metaDataChanged(DsEvent e, DsMetaData meta) {
         log.debug("Received metadata event: " + e
                 + "; current tables: "
                 + meta.getTableNames().size());
+        if (operationPipeline != null) {
+            operationPipeline.metaDataChanged(meta);
+        }
+        snapshot.messageEncoder.metaDataChanged(meta);
+        messageProducer.registerMetrics(metrics);
         return super.metaDataChanged(e, meta);
     }
 
@@ -184,30 +485,59 @@ public class EventHandler extends AbstractHandler {
     @Override
     public void destroy() {
         log.debug("destroy()... " + reportStatus());
-        if (configuration.metricsEnabled()) {
+        if (snapshot.configuration.metricsEnabled()) {
             metricsReporter.stop();
         }
+        if (jmxReporter != null) {
+            jmxReporter.stop();
+        }
+        if (configurationWatcher != null) {
+            configurationWatcher.close();
+        }
 
+        if (operationPipeline != null) {
+            operationPipeline.close();
+        }
         messageProducer.terminate();
+        if (checkpoint != null) {
+            checkpoint.close();
+        }
         super.destroy();
     }
 
-    private void encodeAndSend(Tx tx, Op op) {
+    private void encodeAndSend(Snapshot snapshot, Tx tx, Op op) {
         if (log.isDebugEnabled()) {
             log.debug("Processing of transaction " + tx + " and operation " + op);
         }
 
-        byte[] encodedMessage = encodeMessage(tx, op);
-        sendMessage(encodedMessage);
+        OperationTrace trace = operationTracer == null ? null : operationTracer.start();
+        byte[] encodedMessage = encodeMessage(snapshot.messageEncoder, tx, op);
+        if (encodedMessage == null) {
+            log.debug("Nothing to send for operation " + op);
+            return;
+        }
+
+        byte[] messageKey = snapshot.messageEncoder.encodeKey(op);
+        tableMetrics.recordMessage(op, encodedMessage);
+        SendCallback callback = replicationLag.callbackFor(op);
+        if (trace != null) {
+            trace.encoded(op, encodedMessage);
+            callback = trace.callback(callback);
+        }
+
+        sendMessage(snapshot.tableDescriptors.descriptorFor(op.getTableName()).getTopic(), messageKey, encodedMessage, callback);
+        if (trace != null) {
+            trace.sent();
+        }
 
         if (log.isDebugEnabled()) {
             log.debug("Completed processing of transaction " + tx + " and operation " + op);
         }
     }
 
-    private void sendMessage(byte[] encodedMessage)  {
+    private void sendMessage(String topic, byte[] messageKey, byte[] encodedMessage, SendCallback callback)  {
         Timer.Context sendMessageTimer = messageSendingTimer.time();
-        messageProducer.produce(encodedMessage);
+        messageProducer.produce(topic, messageKey, encodedMessage, callback);
         sendMessageTimer.stop();
 
         if (log.isDebugEnabled()) {
@@ -215,12 +545,12 @@ public class EventHandler extends AbstractHandler {
         }
     }
 
-    private byte[] encodeMessage(Tx tx, Op op) {
+    private byte[] encodeMessage(MessageEncoder messageEncoder, Tx tx, Op op) {
         Timer.Context encodingTimer = messageEncodingTimer.time();
         byte[] encodedMessage = messageEncoder.encode(tx, op);
         encodingTimer.stop();
 
-        if (log.isTraceEnabled()) {
+        if (log.isTraceEnabled() && encodedMessage != null) {
             log.trace("Result of message encoding is = " + new String(encodedMessage));
         }
 
@@ -230,4 +560,25 @@ public class EventHandler extends AbstractHandler {
     public void setConfigurationPath(String configurationPath) {
         this.configurationPath = configurationPath;
     }
+
+    /**
+     * The configuration together with the encoders and descriptor cache built for it. A reload
+     * publishes a new snapshot through the single volatile field, so the hot path never sees the
+     * configuration of one and the encoder of another. The descriptor cache is carried over from one
+     * snapshot to the next and only drops the descriptors of reconfigured tables.
+     */
+    private static final class Snapshot {
+        private final Conf configuration;
+        private final MessageEncoder messageEncoder;
+        private final EnvelopeEncoder envelopeEncoder;
+        private final TableDescriptorCache tableDescriptors;
+
+        private Snapshot(Conf configuration, MessageEncoder messageEncoder, EnvelopeEncoder envelopeEncoder,
+                         TableDescriptorCache tableDescriptors) {
+            this.configuration = configuration;
+            this.messageEncoder = messageEncoder;
+            this.envelopeEncoder = envelopeEncoder;
+            this.tableDescriptors = tableDescriptors;
+        }
+    }
 }
@@ -2,9 +2,21 @@ package com.monsanto.data.goldengate;
 
 import com.goldengate.atg.datasource.adapt.Op;
 import com.goldengate.atg.datasource.adapt.Tx;
+import com.goldengate.atg.datasource.meta.DsMetaData;
 
 public interface MessageEncoder {
 
+    /**
+     * Encodes an operation as one message, or returns null when there is nothing to send for it:
+     * an update that changes no column of a table configured for compact updates.
+     */
     byte[] encode(Tx tx, Op op);
 
+    /**
+     * Returns the Kafka record key for the operation, or null when its table is not keyed.
+     */
+    byte[] encodeKey(Op op);
+
+    void metaDataChanged(DsMetaData metaData);
+
 }
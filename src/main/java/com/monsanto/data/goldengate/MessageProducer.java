@@ -1,9 +1,29 @@
 package com.monsanto.data.goldengate;
 
+import com.codahale.metrics.MetricRegistry;
+
 public interface MessageProducer {
 
-    void produce(byte[] bytes);
+    void produce(String topic, byte[] key, byte[] bytes);
+
+    /**
+     * Sends like {@link #produce(String, byte[], byte[])} and notifies the callback, if not null, once
+     * the message has been acknowledged. The callback may run on the producer's I/O thread.
+     */
+    void produce(String topic, byte[] key, byte[] bytes, SendCallback callback);
+
+    /**
+     * Blocks until every message handed to {@link #produce(String, byte[], byte[])} has been acknowledged,
+     * throwing if any of them failed.
+     */
+    void flush();
 
     void terminate();
 
+    /**
+     * Registers the producer's own metrics with the registry. May be called again to pick up
+     * metrics the producer has added since; metrics that are already registered are kept.
+     */
+    void registerMetrics(MetricRegistry metrics);
+
 }
@@ -0,0 +1,10 @@
+package com.monsanto.data.goldengate;
+
+/**
+ * Notified once the message it was sent with has been acknowledged by Kafka.
+ */
+public interface SendCallback {
+
+    void onAcknowledged();
+
+}
@@ -0,0 +1,10 @@
+package com.monsanto.data.goldengate;
+
+/**
+ * A SendCallback that is also notified when Kafka fails the message it was sent with.
+ */
+public interface SendFailureCallback extends SendCallback {
+
+    void onFailed(Exception e);
+
+}
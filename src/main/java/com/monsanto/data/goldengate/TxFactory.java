@@ -1,12 +1,19 @@
 package com.monsanto.data.goldengate;
 
 import com.goldengate.atg.datasource.DsConfiguration;
+import com.goldengate.atg.datasource.DsOperation;
 import com.goldengate.atg.datasource.DsTransaction;
+import com.goldengate.atg.datasource.adapt.Op;
 import com.goldengate.atg.datasource.adapt.Tx;
 import com.goldengate.atg.datasource.meta.DsMetaData;
+import com.goldengate.atg.datasource.meta.TableMetaData;
 
 public class TxFactory {
     public Tx createAdapterTx(DsTransaction transaction, DsMetaData metaData, DsConfiguration configuration) {
         return new Tx(transaction, metaData, configuration);
     }
+
+    public Op createAdapterOp(DsOperation operation, TableMetaData tableMetaData, DsConfiguration configuration) {
+        return new Op(operation, tableMetaData, configuration);
+    }
 }
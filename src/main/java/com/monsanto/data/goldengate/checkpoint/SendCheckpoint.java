@@ -0,0 +1,175 @@
+package com.monsanto.data.goldengate.checkpoint;
+
+import com.goldengate.atg.datasource.adapt.Op;
+import com.google.common.annotations.VisibleForTesting;
+import com.monsanto.data.goldengate.config.CheckpointConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Remembers the trail position of the last operation Kafka has acknowledged, so that operations
+ * GoldenGate replays after a restart are skipped instead of being sent again.
+ *
+ * Positions of operations handed to the producer are noted with {@link #sent(Op)} and become
+ * acknowledged with {@link #commit()} once the producer has been flushed. The acknowledged position is
+ * written to the checkpoint file, at most once per sync interval and on {@link #close()}, by writing
+ * and syncing a temporary file, renaming it over the checkpoint and syncing the directory so that the
+ * rename itself survives a crash. Operations acknowledged since the last write are sent again after a
+ * crash. After a restart, operations up to the position read from the file are reported as delivered
+ * until the first operation past it; trail positions only grow, so from then on nothing is checked.
+ */
+public class SendCheckpoint {
+    private static final Logger log = LoggerFactory.getLogger(SendCheckpoint.class);
+
+    private final File file;
+    private final long syncIntervalMillis;
+
+    private boolean recovering;
+    private long recoveredSeqno;
+    private long recoveredRba;
+
+    private boolean pending;
+    private long sentSeqno;
+    private long sentRba;
+
+    private boolean dirty;
+    private long acknowledgedSeqno;
+    private long acknowledgedRba;
+    private long lastWriteMillis;
+
+    public SendCheckpoint(CheckpointConfiguration configuration) {
+        this(new File(configuration.getFile()), configuration.getSyncIntervalMillis());
+    }
+
+    @VisibleForTesting
+    SendCheckpoint(File file, long syncIntervalMillis) {
+        this.file = file;
+        this.syncIntervalMillis = syncIntervalMillis;
+        read();
+    }
+
+    /**
+     * True when the operation is at or before the checkpoint read at startup, and was therefore already
+     * acknowledged before the restart.
+     */
+    public boolean isDelivered(Op op) {
+        if (!recovering) {
+            return false;
+        }
+        if (compare(op.getSeqno(), op.getRba(), recoveredSeqno, recoveredRba) <= 0) {
+            return true;
+        }
+
+        log.info("Reached checkpoint position " + recoveredSeqno + ":" + recoveredRba + "; sending from " + op.getPosition());
+        recovering = false;
+        return false;
+    }
+
+    /**
+     * Notes that the operation has been handed to the producer.
+     */
+    public void sent(Op op) {
+        sentSeqno = op.getSeqno();
+        sentRba = op.getRba();
+        pending = true;
+    }
+
+    /**
+     * Marks everything sent so far as acknowledged, writing the checkpoint file when the sync interval
+     * has passed since it was last written.
+     */
+    public void commit() {
+        if (!pending) {
+            return;
+        }
+        acknowledgedSeqno = sentSeqno;
+        acknowledgedRba = sentRba;
+        pending = false;
+        dirty = true;
+
+        if (System.currentTimeMillis() - lastWriteMillis >= syncIntervalMillis) {
+            write();
+        }
+    }
+
+    public void close() {
+        if (dirty) {
+            write();
+        }
+    }
+
+    private void read() {
+        if (!file.exists()) {
+            log.info("No checkpoint file " + file + "; sending every operation");
+            return;
+        }
+
+        try {
+            String[] position = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim().split(":");
+            recoveredSeqno = Long.parseLong(position[0]);
+            recoveredRba = Long.parseLong(position[1]);
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalStateException("Unable to read checkpoint file " + file, e);
+        }
+        acknowledgedSeqno = recoveredSeqno;
+        acknowledgedRba = recoveredRba;
+        recovering = true;
+        log.info("Skipping operations up to position " + recoveredSeqno + ":" + recoveredRba + " read from " + file);
+    }
+
+    private void write() {
+        File temporary = new File(file.getPath() + ".tmp");
+        byte[] position = (acknowledgedSeqno + ":" + acknowledgedRba + "\n").getBytes(StandardCharsets.UTF_8);
+
+        try {
+            File directory = file.getAbsoluteFile().getParentFile();
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Unable to create checkpoint directory " + directory);
+            }
+            try (RandomAccessFile out = new RandomAccessFile(temporary, "rw")) {
+                out.setLength(0);
+                out.write(position);
+                out.getFD().sync();
+            }
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(directory);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write checkpoint file " + file, e);
+        }
+        dirty = false;
+        lastWriteMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Syncs the directory entry of the renamed file. Platforms that cannot open a directory, such as Windows,
+     * do not need this and are skipped.
+     */
+    private static void syncDirectory(File directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+        } catch (IOException e) {
+            log.debug("Unable to open checkpoint directory " + directory + " to sync it", e);
+            return;
+        }
+        try (FileChannel directoryChannel = channel) {
+            directoryChannel.force(true);
+        }
+    }
+
+    private static int compare(long seqno, long rba, long otherSeqno, long otherRba) {
+        if (seqno != otherSeqno) {
+            return seqno < otherSeqno ? -1 : 1;
+        }
+        return rba < otherRba ? -1 : (rba == otherRba ? 0 : 1);
+    }
+}
@@ -0,0 +1,42 @@
+package com.monsanto.data.goldengate.config;
+
+import com.typesafe.config.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+public class CheckpointConfiguration {
+    private final Logger log = LoggerFactory.getLogger(CheckpointConfiguration.class);
+    private final Boolean enabled;
+    private final String file;
+    private final Long syncIntervalMillis;
+
+    public CheckpointConfiguration(Boolean enabled, String file, Long syncIntervalMillis) {
+        log.info("CheckpointConfiguration Constructor: enabled="+enabled+", file="+file+", syncIntervalMillis="+syncIntervalMillis);
+        this.enabled = enabled;
+        this.file = file;
+        this.syncIntervalMillis = syncIntervalMillis;
+    }
+
+    public Boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public Long getSyncIntervalMillis() {
+        return syncIntervalMillis;
+    }
+
+    public static CheckpointConfiguration disabled() {
+        return new CheckpointConfiguration(false, "dirchk/kafka-handler.cpk", 1000L);
+    }
+
+    public static CheckpointConfiguration fromConfig(Config config) {
+        return new CheckpointConfiguration(config.getBoolean("enabled"), config.getString("file"),
+                config.getDuration("sync-interval", TimeUnit.MILLISECONDS));
+    }
+}
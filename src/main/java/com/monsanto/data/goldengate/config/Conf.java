@@ -1,28 +1,96 @@
 package com.monsanto.data.goldengate.config;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.monsanto.data.goldengate.encoder.EncoderType;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+/**
+ * The adapter's configuration. Instances are immutable once built, so a reloaded configuration is a
+ * new instance that can be swapped in whole.
+ */
 public class Conf {
     private final EncoderType encoderType;
     private final KafkaConfiguration kafkaConfiguration;
     private final MetricsConfiguration metricsConfiguration;
+    private final EnvelopeConfiguration envelopeConfiguration;
+    private final PipelineConfiguration pipelineConfiguration;
+    private final FilterConfiguration filterConfiguration;
+    private final boolean typedValues;
+    private final SpillConfiguration spillConfiguration;
+    private final CheckpointConfiguration checkpointConfiguration;
+    private final ReloadConfiguration reloadConfiguration;
+    private final TraceConfiguration traceConfiguration;
     private final Map<String, Map<String, TableConfiguration>> tableConfigsByName = Maps.newHashMap();
-    private final Map<String, TableConfiguration> tableNameToConfigMap = Maps.newHashMap();
+    private final List<TableConfiguration> wildcardTableConfigs = Lists.newArrayList();
+    private final Set<String> stickyPartitionedTopics = Sets.newHashSet();
+    private final boolean tableEncoderTypes;
 
     public Conf(EncoderType encoderType, KafkaConfiguration kafkaConfiguration, MetricsConfiguration metricsConfiguration) {
-        this.encoderType = encoderType;
-        this.kafkaConfiguration = kafkaConfiguration;
-        this.metricsConfiguration = metricsConfiguration;
+        this(builder(encoderType, kafkaConfiguration).metrics(metricsConfiguration));
+    }
+
+    private Conf(Builder builder) {
+        this.encoderType = builder.encoderType;
+        this.kafkaConfiguration = builder.kafkaConfiguration;
+        this.metricsConfiguration = builder.metricsConfiguration;
+        this.envelopeConfiguration = builder.envelopeConfiguration;
+        this.pipelineConfiguration = builder.pipelineConfiguration;
+        this.filterConfiguration = builder.filterConfiguration;
+        this.typedValues = builder.typedValues;
+        this.spillConfiguration = builder.spillConfiguration;
+        this.checkpointConfiguration = builder.checkpointConfiguration;
+        this.reloadConfiguration = builder.reloadConfiguration;
+        this.traceConfiguration = builder.traceConfiguration;
+
+        boolean tableEncoderTypes = false;
+        for (TableConfiguration tableConfiguration : builder.tableConfigurations) {
+            tableEncoderTypes |= tableConfiguration.getEncoderType().isPresent();
+            indexTableConfiguration(tableConfiguration);
+        }
+        this.tableEncoderTypes = tableEncoderTypes;
+    }
+
+    /**
+     * A builder with every optional section disabled.
+     */
+    public static Builder builder(EncoderType encoderType, KafkaConfiguration kafkaConfiguration) {
+        return new Builder(encoderType, kafkaConfiguration);
+    }
+
+    /**
+     * A builder starting from this configuration's sections; tables are not copied.
+     */
+    public Builder toBuilder() {
+        return builder(encoderType, kafkaConfiguration)
+                .metrics(metricsConfiguration)
+                .envelope(envelopeConfiguration)
+                .pipeline(pipelineConfiguration)
+                .filter(filterConfiguration)
+                .typedValues(typedValues)
+                .spill(spillConfiguration)
+                .checkpoint(checkpointConfiguration)
+                .reload(reloadConfiguration)
+                .trace(traceConfiguration);
     }
 
     public EncoderType encoderType() {
         return encoderType;
     }
 
+    /**
+     * When true, column values are written with the type of their column rather than as strings.
+     */
+    public boolean isTypedValues() {
+        return typedValues;
+    }
+
     public KafkaConfiguration kafka() {
         return kafkaConfiguration;
     }
@@ -35,18 +103,198 @@ public class Conf {
         return metricsConfiguration;
     }
 
-    public void addTableConfiguration(TableConfiguration tableConfiguration) {
+    public EnvelopeConfiguration envelope() {
+        return envelopeConfiguration;
+    }
+
+    public PipelineConfiguration pipeline() {
+        return pipelineConfiguration;
+    }
+
+    public FilterConfiguration filter() {
+        return filterConfiguration;
+    }
+
+    public SpillConfiguration spill() {
+        return spillConfiguration;
+    }
+
+    public CheckpointConfiguration checkpoint() {
+        return checkpointConfiguration;
+    }
+
+    public ReloadConfiguration reload() {
+        return reloadConfiguration;
+    }
+
+    public TraceConfiguration trace() {
+        return traceConfiguration;
+    }
+
+    /**
+     * True when some table configuration overrides the encoder type.
+     */
+    public boolean hasTableEncoderTypes() {
+        return tableEncoderTypes;
+    }
+
+    /**
+     * Topics of the tables configured for sticky partitioning.
+     */
+    public Set<String> stickyPartitionedTopics() {
+        return Collections.unmodifiableSet(stickyPartitionedTopics);
+    }
+
+    private void indexTableConfiguration(TableConfiguration tableConfiguration) {
+        if (tableConfiguration.isStickyPartitioning()) {
+            stickyPartitionedTopics.add(tableConfiguration.getTopic().or(kafkaConfiguration.getTopicName()));
+        }
+
+        if (tableConfiguration.isWildcard()) {
+            wildcardTableConfigs.add(tableConfiguration);
+            return;
+        }
+
+        String schemaName = tableConfiguration.getSchema().toUpperCase();
+        Map<String, TableConfiguration> tableNameToConfigMap = tableConfigsByName.get(schemaName);
+        if (tableNameToConfigMap == null) {
+            tableNameToConfigMap = Maps.newHashMap();
+            tableConfigsByName.put(schemaName, tableNameToConfigMap);
+        }
         tableNameToConfigMap.put(tableConfiguration.getName().toUpperCase(), tableConfiguration);
-        tableConfigsByName.put(tableConfiguration.getSchema().toUpperCase(),tableNameToConfigMap);
     }
 
+    /**
+     * Every table configuration, named tables first and wildcards in declaration order.
+     */
+    public List<TableConfiguration> getTableConfigurations() {
+        List<TableConfiguration> tableConfigurations = Lists.newArrayList();
+
+        for (Map<String, TableConfiguration> tableNameToConfigMap : tableConfigsByName.values()) {
+            tableConfigurations.addAll(tableNameToConfigMap.values());
+        }
+        tableConfigurations.addAll(wildcardTableConfigs);
+        return tableConfigurations;
+    }
+
+    /**
+     * A copy of this configuration with the encoding, filter and tables of the reloaded one. The other
+     * sections are only read at startup, so they are kept.
+     */
+    public Conf reloadedWith(Conf reloaded) {
+        Builder builder = toBuilder()
+                .encoderType(reloaded.encoderType)
+                .filter(reloaded.filterConfiguration)
+                .typedValues(reloaded.typedValues);
+
+        for (TableConfiguration tableConfiguration : reloaded.getTableConfigurations()) {
+            builder.addTableConfiguration(tableConfiguration);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the configuration of the named table, falling back to the first wildcard
+     * configuration, in declaration order, that matches it.
+     */
     public Optional<TableConfiguration> getTableConfiguration(String schemaName, String tableName) {
-        Optional opt = Optional.fromNullable(tableConfigsByName.get(schemaName.toUpperCase()));
-        if (opt.isPresent()) {
-            return Optional.fromNullable(tableConfigsByName.get(schemaName.toUpperCase()).get(tableName.toUpperCase()));
-        } else {
-            return Optional.absent();
+        Map<String, TableConfiguration> tableNameToConfigMap = tableConfigsByName.get(schemaName.toUpperCase());
+        if (tableNameToConfigMap != null && tableNameToConfigMap.containsKey(tableName.toUpperCase())) {
+            return Optional.of(tableNameToConfigMap.get(tableName.toUpperCase()));
         }
+
+        for (TableConfiguration wildcardTableConfig : wildcardTableConfigs) {
+            if (wildcardTableConfig.matches(schemaName, tableName)) {
+                return Optional.of(wildcardTableConfig);
+            }
+        }
+        return Optional.absent();
     }
 
+    public static class Builder {
+        private EncoderType encoderType;
+        private KafkaConfiguration kafkaConfiguration;
+        private MetricsConfiguration metricsConfiguration;
+        private EnvelopeConfiguration envelopeConfiguration = EnvelopeConfiguration.disabled();
+        private PipelineConfiguration pipelineConfiguration = PipelineConfiguration.disabled();
+        private FilterConfiguration filterConfiguration = FilterConfiguration.none();
+        private boolean typedValues;
+        private SpillConfiguration spillConfiguration = SpillConfiguration.disabled();
+        private CheckpointConfiguration checkpointConfiguration = CheckpointConfiguration.disabled();
+        private ReloadConfiguration reloadConfiguration = ReloadConfiguration.disabled();
+        private TraceConfiguration traceConfiguration = TraceConfiguration.disabled();
+        private final List<TableConfiguration> tableConfigurations = Lists.newArrayList();
+
+        private Builder(EncoderType encoderType, KafkaConfiguration kafkaConfiguration) {
+            this.encoderType = encoderType;
+            this.kafkaConfiguration = kafkaConfiguration;
+        }
+
+        public Builder encoderType(EncoderType encoderType) {
+            this.encoderType = encoderType;
+            return this;
+        }
+
+        public Builder kafka(KafkaConfiguration kafkaConfiguration) {
+            this.kafkaConfiguration = kafkaConfiguration;
+            return this;
+        }
+
+        public Builder metrics(MetricsConfiguration metricsConfiguration) {
+            this.metricsConfiguration = metricsConfiguration;
+            return this;
+        }
+
+        public Builder envelope(EnvelopeConfiguration envelopeConfiguration) {
+            this.envelopeConfiguration = envelopeConfiguration;
+            return this;
+        }
+
+        public Builder pipeline(PipelineConfiguration pipelineConfiguration) {
+            this.pipelineConfiguration = pipelineConfiguration;
+            return this;
+        }
+
+        public Builder filter(FilterConfiguration filterConfiguration) {
+            this.filterConfiguration = filterConfiguration;
+            return this;
+        }
+
+        public Builder typedValues(boolean typedValues) {
+            this.typedValues = typedValues;
+            return this;
+        }
+
+        public Builder spill(SpillConfiguration spillConfiguration) {
+            this.spillConfiguration = spillConfiguration;
+            return this;
+        }
+
+        public Builder checkpoint(CheckpointConfiguration checkpointConfiguration) {
+            this.checkpointConfiguration = checkpointConfiguration;
+            return this;
+        }
+
+        public Builder reload(ReloadConfiguration reloadConfiguration) {
+            this.reloadConfiguration = reloadConfiguration;
+            return this;
+        }
+
+        public Builder trace(TraceConfiguration traceConfiguration) {
+            this.traceConfiguration = traceConfiguration;
+            return this;
+        }
+
+        /**
+         * Adds a table configuration; wildcard configurations match in the order they are added.
+         */
+        public Builder addTableConfiguration(TableConfiguration tableConfiguration) {
+            tableConfigurations.add(tableConfiguration);
+            return this;
+        }
+
+        public Conf build() {
+            return new Conf(this);
+        }
+    }
 }
@@ -0,0 +1,36 @@
+package com.monsanto.data.goldengate.config;
+
+import com.typesafe.config.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class EnvelopeConfiguration {
+    private final Logger log = LoggerFactory.getLogger(EnvelopeConfiguration.class);
+    private final Boolean enabled;
+    private final Integer maxOperations;
+
+    public EnvelopeConfiguration(Boolean enabled, Integer maxOperations) {
+        log.info("EnvelopeConfiguration Constructor: enabled="+enabled+", maxOperations="+maxOperations);
+        if (maxOperations < 1) {
+            throw new IllegalArgumentException("max-operations must be at least 1, was " + maxOperations);
+        }
+        this.enabled = enabled;
+        this.maxOperations = maxOperations;
+    }
+
+    public Boolean isEnabled() {
+        return enabled;
+    }
+
+    public Integer getMaxOperations() {
+        return maxOperations;
+    }
+
+    public static EnvelopeConfiguration disabled() {
+        return new EnvelopeConfiguration(false, Integer.MAX_VALUE);
+    }
+
+    public static EnvelopeConfiguration fromConfig(Config config) {
+        return new EnvelopeConfiguration(config.getBoolean("enabled"), config.getInt("max-operations"));
+    }
+}
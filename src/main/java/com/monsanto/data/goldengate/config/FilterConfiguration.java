@@ -0,0 +1,57 @@
+package com.monsanto.data.goldengate.config;
+
+import com.typesafe.config.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Which tables are replicated: those matching an include pattern, or every table when there are
+ * none, unless they match an exclude pattern. Patterns are compiled once, when the configuration is loaded.
+ */
+public class FilterConfiguration {
+    private final Logger log = LoggerFactory.getLogger(FilterConfiguration.class);
+    private final List<TableNamePattern> includes;
+    private final List<TableNamePattern> excludes;
+
+    public FilterConfiguration(List<String> includes, List<String> excludes) {
+        log.info("FilterConfiguration Constructor: includes="+includes+", excludes="+excludes);
+        this.includes = compile(includes);
+        this.excludes = compile(excludes);
+    }
+
+    public boolean isReplicated(String schemaName, String tableName) {
+        if (!includes.isEmpty() && !matchesAny(includes, schemaName, tableName)) {
+            return false;
+        }
+        return !matchesAny(excludes, schemaName, tableName);
+    }
+
+    private static boolean matchesAny(List<TableNamePattern> patterns, String schemaName, String tableName) {
+        for (TableNamePattern pattern : patterns) {
+            if (pattern.matches(schemaName, tableName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<TableNamePattern> compile(List<String> qualifiedNames) {
+        List<TableNamePattern> patterns = new ArrayList<>();
+        for (String qualifiedName : qualifiedNames) {
+            patterns.add(TableNamePattern.parse(qualifiedName));
+        }
+        return patterns;
+    }
+
+    public static FilterConfiguration none() {
+        return new FilterConfiguration(Collections.<String>emptyList(), Collections.<String>emptyList());
+    }
+
+    public static FilterConfiguration fromConfig(Config config) {
+        return new FilterConfiguration(config.getStringList("include"), config.getStringList("exclude"));
+    }
+}
@@ -5,17 +5,69 @@ import com.typesafe.config.Config;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.TimeUnit;
+
 public class KafkaConfiguration {
+    private static final int DEFAULT_MAX_IN_FLIGHT = 1000;
+    private static final long DEFAULT_ACK_TIMEOUT_MILLIS = 30000L;
+    private static final long DEFAULT_DRAIN_TIMEOUT_MILLIS = 30000L;
+    private static final int DEFAULT_BATCH_SIZE = 16384;
+    private static final long DEFAULT_STICKY_LINGER_MILLIS = 100L;
+
     private final Logger log = LoggerFactory.getLogger(KafkaConfiguration.class);
     private final String brokerList;
     private final String topicName;
     private final Optional<String> compression;
+    private final Boolean async;
+    private final Integer maxInFlight;
+    private final Long ackTimeoutMillis;
+    private final Long drainTimeoutMillis;
+    private final Boolean keyByPrimaryKey;
+    private final Integer producers;
+    private final Optional<String> clientId;
+    private final Integer batchSize;
+    private final Long stickyLingerMillis;
+    private final Long memoryBudget;
 
     public KafkaConfiguration(String brokerList, String topicName, Optional<String> compression) {
-        log.info("KafkaConfiguration Constructor: brokerList="+brokerList+", topicName="+topicName+", compression="+ compression);
-        this.brokerList = brokerList;
-        this.topicName = topicName;
-        this.compression = compression;
+        this(builder(brokerList, topicName).compression(compression));
+    }
+
+    private KafkaConfiguration(Builder builder) {
+        log.info("KafkaConfiguration Constructor: brokerList="+builder.brokerList+", topicName="+builder.topicName+", compression="+ builder.compression
+                +", async="+builder.async+", maxInFlight="+builder.maxInFlight+", ackTimeoutMillis="+builder.ackTimeoutMillis
+                +", drainTimeoutMillis="+builder.drainTimeoutMillis+", keyByPrimaryKey="+builder.keyByPrimaryKey
+                +", producers="+builder.producers+", clientId="+builder.clientId+", batchSize="+builder.batchSize
+                +", stickyLingerMillis="+builder.stickyLingerMillis+", memoryBudget="+builder.memoryBudget);
+        if (builder.maxInFlight < 1) {
+            throw new IllegalArgumentException("max-in-flight must be at least 1, was " + builder.maxInFlight);
+        }
+        if (builder.producers < 1) {
+            throw new IllegalArgumentException("producers must be at least 1, was " + builder.producers);
+        }
+        if (builder.batchSize < 1) {
+            throw new IllegalArgumentException("batch-size must be at least 1, was " + builder.batchSize);
+        }
+        this.brokerList = builder.brokerList;
+        this.topicName = builder.topicName;
+        this.compression = builder.compression;
+        this.async = builder.async;
+        this.maxInFlight = builder.maxInFlight;
+        this.ackTimeoutMillis = builder.ackTimeoutMillis;
+        this.drainTimeoutMillis = builder.drainTimeoutMillis;
+        this.keyByPrimaryKey = builder.keyByPrimaryKey;
+        this.producers = builder.producers;
+        this.clientId = builder.clientId;
+        this.batchSize = builder.batchSize;
+        this.stickyLingerMillis = builder.stickyLingerMillis;
+        this.memoryBudget = builder.memoryBudget;
+    }
+
+    /**
+     * A builder for a synchronous, uncompressed producer with every other setting at its default.
+     */
+    public static Builder builder(String brokerList, String topicName) {
+        return new Builder(brokerList, topicName);
     }
 
     public String getBrokerList() {
@@ -30,6 +82,55 @@ public class KafkaConfiguration {
         return compression;
     }
 
+    public Boolean isAsync() {
+        return async;
+    }
+
+    public Integer getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public Long getAckTimeoutMillis() {
+        return ackTimeoutMillis;
+    }
+
+    public Long getDrainTimeoutMillis() {
+        return drainTimeoutMillis;
+    }
+
+    public Boolean isKeyByPrimaryKey() {
+        return keyByPrimaryKey;
+    }
+
+    public Integer getProducers() {
+        return producers;
+    }
+
+    public Optional<String> getClientId() {
+        return clientId;
+    }
+
+    /**
+     * The producer's batch.size, in bytes per partition.
+     */
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * How long a sticky partitioner keeps sending to one partition before moving on, even if its batch is not full.
+     */
+    public Long getStickyLingerMillis() {
+        return stickyLingerMillis;
+    }
+
+    /**
+     * Bytes of records that may be sent but not yet acknowledged before sending blocks; 0 means unbounded.
+     */
+    public Long getMemoryBudget() {
+        return memoryBudget;
+    }
+
     public static KafkaConfiguration fromConfig(Config config) {
 
         Optional<String> possibleCompression;
@@ -38,6 +139,105 @@ public class KafkaConfiguration {
         } else {
             possibleCompression = Optional.absent();
         }
-        return new KafkaConfiguration(config.getString("broker-list"), config.getString("topic-name"), possibleCompression);
+
+        Optional<String> possibleClientId;
+        if (config.hasPath("client-id")) {
+            possibleClientId = Optional.of(config.getString("client-id"));
+        } else {
+            possibleClientId = Optional.absent();
+        }
+        return builder(config.getString("broker-list"), config.getString("topic-name"))
+                .compression(possibleCompression)
+                .async(config.getBoolean("async"))
+                .maxInFlight(config.getInt("max-in-flight"))
+                .ackTimeoutMillis(config.getDuration("ack-timeout", TimeUnit.MILLISECONDS))
+                .drainTimeoutMillis(config.getDuration("drain-timeout", TimeUnit.MILLISECONDS))
+                .keyByPrimaryKey(config.getBoolean("key-by-primary-key"))
+                .producers(config.getInt("producers"))
+                .clientId(possibleClientId)
+                .batchSize(config.getBytes("batch-size").intValue())
+                .stickyLingerMillis(config.getDuration("sticky-linger", TimeUnit.MILLISECONDS))
+                .memoryBudget(config.getBytes("memory-budget"))
+                .build();
+    }
+
+    public static class Builder {
+        private final String brokerList;
+        private final String topicName;
+        private Optional<String> compression = Optional.absent();
+        private Boolean async = false;
+        private Integer maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+        private Long ackTimeoutMillis = DEFAULT_ACK_TIMEOUT_MILLIS;
+        private Long drainTimeoutMillis = DEFAULT_DRAIN_TIMEOUT_MILLIS;
+        private Boolean keyByPrimaryKey = false;
+        private Integer producers = 1;
+        private Optional<String> clientId = Optional.absent();
+        private Integer batchSize = DEFAULT_BATCH_SIZE;
+        private Long stickyLingerMillis = DEFAULT_STICKY_LINGER_MILLIS;
+        private Long memoryBudget = 0L;
+
+        private Builder(String brokerList, String topicName) {
+            this.brokerList = brokerList;
+            this.topicName = topicName;
+        }
+
+        public Builder compression(Optional<String> compression) {
+            this.compression = compression;
+            return this;
+        }
+
+        public Builder async(boolean async) {
+            this.async = async;
+            return this;
+        }
+
+        public Builder maxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        public Builder ackTimeoutMillis(long ackTimeoutMillis) {
+            this.ackTimeoutMillis = ackTimeoutMillis;
+            return this;
+        }
+
+        public Builder drainTimeoutMillis(long drainTimeoutMillis) {
+            this.drainTimeoutMillis = drainTimeoutMillis;
+            return this;
+        }
+
+        public Builder keyByPrimaryKey(boolean keyByPrimaryKey) {
+            this.keyByPrimaryKey = keyByPrimaryKey;
+            return this;
+        }
+
+        public Builder producers(int producers) {
+            this.producers = producers;
+            return this;
+        }
+
+        public Builder clientId(Optional<String> clientId) {
+            this.clientId = clientId;
+            return this;
+        }
+
+        public Builder batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public Builder stickyLingerMillis(long stickyLingerMillis) {
+            this.stickyLingerMillis = stickyLingerMillis;
+            return this;
+        }
+
+        public Builder memoryBudget(long memoryBudget) {
+            this.memoryBudget = memoryBudget;
+            return this;
+        }
+
+        public KafkaConfiguration build() {
+            return new KafkaConfiguration(this);
+        }
     }
 }
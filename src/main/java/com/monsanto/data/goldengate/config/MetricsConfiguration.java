@@ -11,12 +11,21 @@ public class MetricsConfiguration {
     private final Boolean enabled;
     private final String loggerName;
     private final Long reportFrequencyInSeconds;
+    private final Boolean jmxEnabled;
+    private final String jmxDomain;
 
     public MetricsConfiguration(Boolean enabled, String loggerName, Long reportFrequencyInSeconds) {
-        log.info("MetricsConfiguration Constructor: enabled="+enabled+", loggerName="+loggerName+", reportFrequencyInSeconds="+ reportFrequencyInSeconds);
+        this(enabled, loggerName, reportFrequencyInSeconds, false, loggerName);
+    }
+
+    public MetricsConfiguration(Boolean enabled, String loggerName, Long reportFrequencyInSeconds, Boolean jmxEnabled, String jmxDomain) {
+        log.info("MetricsConfiguration Constructor: enabled="+enabled+", loggerName="+loggerName+", reportFrequencyInSeconds="+ reportFrequencyInSeconds
+                +", jmxEnabled="+jmxEnabled+", jmxDomain="+jmxDomain);
         this.enabled = enabled;
         this.loggerName = loggerName;
         this.reportFrequencyInSeconds = reportFrequencyInSeconds;
+        this.jmxEnabled = jmxEnabled;
+        this.jmxDomain = jmxDomain;
     }
 
     public Boolean isEnabled() {
@@ -31,7 +40,16 @@ public class MetricsConfiguration {
         return reportFrequencyInSeconds;
     }
 
+    public Boolean isJmxEnabled() {
+        return jmxEnabled;
+    }
+
+    public String getJmxDomain() {
+        return jmxDomain;
+    }
+
     public static MetricsConfiguration fromConfig(Config config) {
-        return new MetricsConfiguration(config.getBoolean("enabled"), config.getString("logger-name"), config.getDuration("report-frequency", TimeUnit.SECONDS));
+        return new MetricsConfiguration(config.getBoolean("enabled"), config.getString("logger-name"), config.getDuration("report-frequency", TimeUnit.SECONDS),
+                config.getBoolean("jmx-enabled"), config.getString("jmx-domain"));
     }
 }
@@ -0,0 +1,45 @@
+package com.monsanto.data.goldengate.config;
+
+import com.typesafe.config.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class PipelineConfiguration {
+    private final Logger log = LoggerFactory.getLogger(PipelineConfiguration.class);
+    private final Boolean enabled;
+    private final Integer ringSize;
+    private final Integer encoderThreads;
+
+    public PipelineConfiguration(Boolean enabled, Integer ringSize, Integer encoderThreads) {
+        log.info("PipelineConfiguration Constructor: enabled="+enabled+", ringSize="+ringSize+", encoderThreads="+encoderThreads);
+        if (ringSize < 1 || Integer.bitCount(ringSize) != 1) {
+            throw new IllegalArgumentException("ring-size must be a power of two, was " + ringSize);
+        }
+        if (encoderThreads < 1) {
+            throw new IllegalArgumentException("encoder-threads must be at least 1, was " + encoderThreads);
+        }
+        this.enabled = enabled;
+        this.ringSize = ringSize;
+        this.encoderThreads = encoderThreads;
+    }
+
+    public Boolean isEnabled() {
+        return enabled;
+    }
+
+    public Integer getRingSize() {
+        return ringSize;
+    }
+
+    public Integer getEncoderThreads() {
+        return encoderThreads;
+    }
+
+    public static PipelineConfiguration disabled() {
+        return new PipelineConfiguration(false, 1, 1);
+    }
+
+    public static PipelineConfiguration fromConfig(Config config) {
+        return new PipelineConfiguration(config.getBoolean("enabled"), config.getInt("ring-size"), config.getInt("encoder-threads"));
+    }
+}
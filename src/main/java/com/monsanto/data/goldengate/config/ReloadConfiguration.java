@@ -0,0 +1,38 @@
+package com.monsanto.data.goldengate.config;
+
+import com.typesafe.config.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+public class ReloadConfiguration {
+    private final Logger log = LoggerFactory.getLogger(ReloadConfiguration.class);
+    private final Boolean enabled;
+    private final Long intervalMillis;
+
+    public ReloadConfiguration(Boolean enabled, Long intervalMillis) {
+        log.info("ReloadConfiguration Constructor: enabled="+enabled+", intervalMillis="+intervalMillis);
+        this.enabled = enabled;
+        this.intervalMillis = intervalMillis;
+    }
+
+    public Boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * How often the configuration file is checked for changes.
+     */
+    public Long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public static ReloadConfiguration disabled() {
+        return new ReloadConfiguration(false, 10000L);
+    }
+
+    public static ReloadConfiguration fromConfig(Config config) {
+        return new ReloadConfiguration(config.getBoolean("enabled"), config.getDuration("interval", TimeUnit.MILLISECONDS));
+    }
+}
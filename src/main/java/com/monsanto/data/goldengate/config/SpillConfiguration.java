@@ -0,0 +1,69 @@
+package com.monsanto.data.goldengate.config;
+
+import com.typesafe.config.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+public class SpillConfiguration {
+    private final Logger log = LoggerFactory.getLogger(SpillConfiguration.class);
+    private final Boolean enabled;
+    private final String directory;
+    private final Integer segmentSize;
+    private final Long retryBackoffMillis;
+    private final Long maxRetainedBytes;
+
+    public SpillConfiguration(Boolean enabled, String directory, Integer segmentSize, Long retryBackoffMillis) {
+        this(enabled, directory, segmentSize, retryBackoffMillis, 32L * 1024 * 1024);
+    }
+
+    public SpillConfiguration(Boolean enabled, String directory, Integer segmentSize, Long retryBackoffMillis, Long maxRetainedBytes) {
+        log.info("SpillConfiguration Constructor: enabled="+enabled+", directory="+directory+", segmentSize="+segmentSize
+                +", retryBackoffMillis="+retryBackoffMillis+", maxRetainedBytes="+maxRetainedBytes);
+        if (segmentSize < 1024) {
+            throw new IllegalArgumentException("segment-size must be at least 1K, was " + segmentSize);
+        }
+        this.enabled = enabled;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.retryBackoffMillis = retryBackoffMillis;
+        this.maxRetainedBytes = maxRetainedBytes;
+    }
+
+    public Boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public Integer getSegmentSize() {
+        return segmentSize;
+    }
+
+    public Long getRetryBackoffMillis() {
+        return retryBackoffMillis;
+    }
+
+    /**
+     * Bytes of sent but unacknowledged messages kept in memory to be spilled should their send fail.
+     */
+    public Long getMaxRetainedBytes() {
+        return maxRetainedBytes;
+    }
+
+    public static SpillConfiguration disabled() {
+        return new SpillConfiguration(false, "dirspill", 64 * 1024 * 1024, 5000L);
+    }
+
+    public static SpillConfiguration fromConfig(Config config) {
+        long segmentSize = config.getBytes("segment-size");
+        if (segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("segment-size must be less than 2G, was " + segmentSize);
+        }
+        return new SpillConfiguration(config.getBoolean("enabled"), config.getString("directory"), (int) segmentSize,
+                config.getDuration("retry-backoff", TimeUnit.MILLISECONDS), config.getBytes("max-retained"));
+    }
+}
@@ -1,22 +1,57 @@
 package com.monsanto.data.goldengate.config;
 
+import com.google.common.base.Optional;
+import com.monsanto.data.goldengate.encoder.EncoderType;
 import com.typesafe.config.Config;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
 
 public class TableConfiguration {
     private final Logger log = LoggerFactory.getLogger(TableConfiguration.class);
     private final String name;
     private final String schema;
     private final Collection<String> tokenNames;
+    private final Optional<List<String>> keyColumns;
+    private final Optional<String> topic;
+    private final Boolean compactUpdates;
+    private final Optional<List<String>> includeColumns;
+    private final List<String> excludeColumns;
+    private final Optional<EncoderType> encoderType;
+    private final Boolean stickyPartitioning;
+    private final TableNamePattern pattern;
 
     public TableConfiguration(String schema, String name, Collection<String> tokenNames) {
-        log.info("TableConfiguration Constructor: name="+name+", schema="+schema+", tokenNames="+ tokenNames);
-        this.name = name;
-        this.schema = schema;
-        this.tokenNames = tokenNames;
+        this(builder(schema, name).tokenNames(tokenNames));
+    }
+
+    private TableConfiguration(Builder builder) {
+        log.info("TableConfiguration Constructor: name="+builder.name+", schema="+builder.schema+", tokenNames="+ builder.tokenNames
+                +", keyColumns="+ builder.keyColumns+", topic="+ builder.topic+", compactUpdates="+ builder.compactUpdates
+                +", includeColumns="+ builder.includeColumns+", excludeColumns="+ builder.excludeColumns
+                +", encoderType="+ builder.encoderType+", stickyPartitioning="+ builder.stickyPartitioning);
+        this.name = builder.name;
+        this.schema = builder.schema;
+        this.tokenNames = builder.tokenNames;
+        this.keyColumns = builder.keyColumns;
+        this.topic = builder.topic;
+        this.compactUpdates = builder.compactUpdates;
+        this.includeColumns = builder.includeColumns;
+        this.excludeColumns = builder.excludeColumns;
+        this.encoderType = builder.encoderType;
+        this.stickyPartitioning = builder.stickyPartitioning;
+        this.pattern = new TableNamePattern(builder.schema, builder.name);
+    }
+
+    /**
+     * A builder for the table with no tokens and every other setting left to its global default.
+     */
+    public static Builder builder(String schema, String name) {
+        return new Builder(schema, name);
     }
 
     public String getName() {
@@ -31,7 +66,183 @@ public class TableConfiguration {
         return tokenNames;
     }
 
+    /**
+     * Columns whose values make up the Kafka record key. An empty list means the
+     * primary key columns of the table; absent means the global default applies.
+     */
+    public Optional<List<String>> getKeyColumns() {
+        return keyColumns;
+    }
+
+    public Optional<String> getTopic() {
+        return topic;
+    }
+
+    /**
+     * When true, updates are written with the primary key columns and the changed columns only,
+     * and updates that change no column are not sent.
+     */
+    public Boolean isCompactUpdates() {
+        return compactUpdates;
+    }
+
+    /**
+     * Columns written for the table; absent means every column.
+     */
+    public Optional<List<String>> getIncludeColumns() {
+        return includeColumns;
+    }
+
+    /**
+     * Columns never written for the table, applied after the included columns.
+     */
+    public List<String> getExcludeColumns() {
+        return excludeColumns;
+    }
+
+    /**
+     * The encoding of the table's messages; absent means the global encoding.type applies.
+     */
+    public Optional<EncoderType> getEncoderType() {
+        return encoderType;
+    }
+
+    /**
+     * When true, records of the table's topic without a key are sent to one partition until its batch is full.
+     */
+    public Boolean isStickyPartitioning() {
+        return stickyPartitioning;
+    }
+
+    /**
+     * True when the schema or name contains '*' or '?' wildcards, making this a default
+     * for every table it matches rather than the configuration of a single table.
+     */
+    public boolean isWildcard() {
+        return pattern.isWildcard();
+    }
+
+    public boolean matches(String schemaName, String tableName) {
+        return pattern.matches(schemaName, tableName);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        TableConfiguration that = (TableConfiguration) o;
+        return Objects.equals(name, that.name)
+                && Objects.equals(schema, that.schema)
+                && Objects.equals(tokenNames, that.tokenNames)
+                && Objects.equals(keyColumns, that.keyColumns)
+                && Objects.equals(topic, that.topic)
+                && Objects.equals(compactUpdates, that.compactUpdates)
+                && Objects.equals(includeColumns, that.includeColumns)
+                && Objects.equals(excludeColumns, that.excludeColumns)
+                && Objects.equals(encoderType, that.encoderType)
+                && Objects.equals(stickyPartitioning, that.stickyPartitioning);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, schema, tokenNames, keyColumns, topic, compactUpdates, includeColumns, excludeColumns,
+                encoderType, stickyPartitioning);
+    }
+
     public static TableConfiguration fromConfig(Config config) {
-        return new TableConfiguration(config.getString("schema"), config.getString("name"), config.getStringList("tokens"));
+        Builder builder = builder(config.getString("schema"), config.getString("name"));
+
+        if (config.hasPath("tokens")) {
+            builder.tokenNames(config.getStringList("tokens"));
+        }
+        if (config.hasPath("key-columns")) {
+            builder.keyColumns(config.getStringList("key-columns"));
+        }
+        if (config.hasPath("topic")) {
+            builder.topic(config.getString("topic"));
+        }
+        if (config.hasPath("compact-updates")) {
+            builder.compactUpdates(config.getBoolean("compact-updates"));
+        }
+        if (config.hasPath("include-columns")) {
+            builder.includeColumns(config.getStringList("include-columns"));
+        }
+        if (config.hasPath("exclude-columns")) {
+            builder.excludeColumns(config.getStringList("exclude-columns"));
+        }
+        if (config.hasPath("encoding")) {
+            builder.encoderType(EncoderType.fromString(config.getString("encoding")));
+        }
+        if (config.hasPath("sticky-partitioning")) {
+            builder.stickyPartitioning(config.getBoolean("sticky-partitioning"));
+        }
+        return builder.build();
+    }
+
+    public static class Builder {
+        private final String schema;
+        private final String name;
+        private Collection<String> tokenNames = Collections.emptyList();
+        private Optional<List<String>> keyColumns = Optional.absent();
+        private Optional<String> topic = Optional.absent();
+        private Boolean compactUpdates = false;
+        private Optional<List<String>> includeColumns = Optional.absent();
+        private List<String> excludeColumns = Collections.emptyList();
+        private Optional<EncoderType> encoderType = Optional.absent();
+        private Boolean stickyPartitioning = false;
+
+        private Builder(String schema, String name) {
+            this.schema = schema;
+            this.name = name;
+        }
+
+        public Builder tokenNames(Collection<String> tokenNames) {
+            this.tokenNames = tokenNames;
+            return this;
+        }
+
+        public Builder keyColumns(List<String> keyColumns) {
+            this.keyColumns = Optional.of(keyColumns);
+            return this;
+        }
+
+        public Builder topic(String topic) {
+            this.topic = Optional.of(topic);
+            return this;
+        }
+
+        public Builder compactUpdates(boolean compactUpdates) {
+            this.compactUpdates = compactUpdates;
+            return this;
+        }
+
+        public Builder includeColumns(List<String> includeColumns) {
+            this.includeColumns = Optional.of(includeColumns);
+            return this;
+        }
+
+        public Builder excludeColumns(List<String> excludeColumns) {
+            this.excludeColumns = excludeColumns;
+            return this;
+        }
+
+        public Builder encoderType(EncoderType encoderType) {
+            this.encoderType = Optional.of(encoderType);
+            return this;
+        }
+
+        public Builder stickyPartitioning(boolean stickyPartitioning) {
+            this.stickyPartitioning = stickyPartitioning;
+            return this;
+        }
+
+        public TableConfiguration build() {
+            return new TableConfiguration(this);
+        }
     }
 }
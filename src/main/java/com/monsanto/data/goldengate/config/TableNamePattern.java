@@ -0,0 +1,68 @@
+package com.monsanto.data.goldengate.config;
+
+import java.util.regex.Pattern;
+
+/**
+ * Matches schema and table names case-insensitively, where either may contain '*' and '?' wildcards.
+ */
+public class TableNamePattern {
+    private final String schema;
+    private final String name;
+    private final Pattern schemaPattern;
+    private final Pattern namePattern;
+
+    public TableNamePattern(String schema, String name) {
+        this.schema = schema;
+        this.name = name;
+        this.schemaPattern = compileWildcard(schema);
+        this.namePattern = compileWildcard(name);
+    }
+
+    /**
+     * Parses a pattern written as SCHEMA.TABLE.
+     */
+    public static TableNamePattern parse(String qualifiedName) {
+        int separator = qualifiedName.indexOf('.');
+        if (separator < 0) {
+            throw new IllegalArgumentException("table pattern must be written as SCHEMA.TABLE, was " + qualifiedName);
+        }
+        return new TableNamePattern(qualifiedName.substring(0, separator), qualifiedName.substring(separator + 1));
+    }
+
+    public boolean isWildcard() {
+        return schemaPattern != null || namePattern != null;
+    }
+
+    public boolean matches(String schemaName, String tableName) {
+        return matches(schemaPattern, schema, schemaName) && matches(namePattern, name, tableName);
+    }
+
+    private static boolean matches(Pattern pattern, String literal, String value) {
+        return pattern == null ? literal.equalsIgnoreCase(value) : pattern.matcher(value).matches();
+    }
+
+    private static Pattern compileWildcard(String value) {
+        if (value.indexOf('*') < 0 && value.indexOf('?') < 0) {
+            return null;
+        }
+
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (char c : value.toCharArray()) {
+            if (c == '*' || c == '?') {
+                regex.append(Pattern.quote(literal.toString())).append(c == '*' ? ".*" : ".");
+                literal.setLength(0);
+            } else {
+                literal.append(c);
+            }
+        }
+        regex.append(Pattern.quote(literal.toString()));
+
+        return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE);
+    }
+
+    @Override
+    public String toString() {
+        return schema + "." + name;
+    }
+}
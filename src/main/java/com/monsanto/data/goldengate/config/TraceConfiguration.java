@@ -0,0 +1,45 @@
+package com.monsanto.data.goldengate.config;
+
+import com.typesafe.config.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+public class TraceConfiguration {
+    private final Logger log = LoggerFactory.getLogger(TraceConfiguration.class);
+    private final Boolean enabled;
+    private final String loggerName;
+    private final Long slowThresholdMillis;
+
+    public TraceConfiguration(Boolean enabled, String loggerName, Long slowThresholdMillis) {
+        log.info("TraceConfiguration Constructor: enabled="+enabled+", loggerName="+loggerName+", slowThresholdMillis="+slowThresholdMillis);
+        this.enabled = enabled;
+        this.loggerName = loggerName;
+        this.slowThresholdMillis = slowThresholdMillis;
+    }
+
+    public Boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getLoggerName() {
+        return loggerName;
+    }
+
+    /**
+     * Operations taking at least this long from receipt to acknowledgement are traced; 0 traces every operation.
+     */
+    public Long getSlowThresholdMillis() {
+        return slowThresholdMillis;
+    }
+
+    public static TraceConfiguration disabled() {
+        return new TraceConfiguration(false, "goldengate.kafka.trace", 500L);
+    }
+
+    public static TraceConfiguration fromConfig(Config config) {
+        return new TraceConfiguration(config.getBoolean("enabled"), config.getString("logger-name"),
+                config.getDuration("slow-threshold", TimeUnit.MILLISECONDS));
+    }
+}
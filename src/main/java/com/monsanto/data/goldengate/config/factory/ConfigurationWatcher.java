@@ -0,0 +1,120 @@
+package com.monsanto.data.goldengate.config.factory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
+import com.monsanto.data.goldengate.config.Conf;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Watches the configuration file and loads it again in the background when it changes. The loaded
+ * snapshot keeps the startup configuration's sections other than encoding, filter and tables, and
+ * waits to be taken with {@link #poll()} by the thread that applies it; a later change replaces a
+ * snapshot that was not taken yet. A file that does not load is logged and otherwise ignored.
+ */
+public class ConfigurationWatcher {
+    private static final Logger log = LoggerFactory.getLogger(ConfigurationWatcher.class);
+
+    private final ConfigurationFactory configurationFactory;
+    private final File file;
+    private final Conf startupConfiguration;
+    private final long intervalMillis;
+    private final AtomicReference<Conf> reloaded = new AtomicReference<>();
+    private final Object lock = new Object();
+
+    private long lastModified;
+    private long length;
+    private volatile boolean running;
+    private Thread watcher;
+
+    public ConfigurationWatcher(ConfigurationFactory configurationFactory, String filePath, Conf startupConfiguration) {
+        this(configurationFactory, filePath, startupConfiguration, startupConfiguration.reload().getIntervalMillis());
+    }
+
+    @VisibleForTesting
+    ConfigurationWatcher(ConfigurationFactory configurationFactory, String filePath, Conf startupConfiguration, long intervalMillis) {
+        this.configurationFactory = configurationFactory;
+        this.file = new File(filePath);
+        this.startupConfiguration = startupConfiguration;
+        this.intervalMillis = intervalMillis;
+        this.lastModified = file.lastModified();
+        this.length = file.length();
+    }
+
+    public void start() {
+        log.info("Watching configuration file " + file + " every " + intervalMillis + "ms");
+        running = true;
+        watcher = new Thread(new Watcher(), "config-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * The configuration loaded since the last call, if the file has changed.
+     */
+    public Optional<Conf> poll() {
+        if (reloaded.get() == null) {
+            return Optional.absent();
+        }
+        return Optional.fromNullable(reloaded.getAndSet(null));
+    }
+
+    public void close() {
+        running = false;
+        if (watcher != null) {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+            try {
+                watcher.join(intervalMillis + 5000L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Loads the file when its modification time or length has changed since it was last loaded;
+     * true when a new configuration is waiting to be taken.
+     */
+    @VisibleForTesting
+    boolean check() {
+        long modified = file.lastModified();
+        long size = file.length();
+        if (modified == lastModified && size == length) {
+            return false;
+        }
+        lastModified = modified;
+        length = size;
+
+        try {
+            reloaded.set(startupConfiguration.reloadedWith(configurationFactory.load(file.getPath())));
+            log.info("Reloaded configuration file " + file + "; applying it at the next transaction commit");
+            return true;
+        } catch (RuntimeException re) {
+            log.error("Unable to reload configuration file " + file + "; keeping the current configuration", re);
+            return false;
+        }
+    }
+
+    private class Watcher implements Runnable {
+        @Override
+        public void run() {
+            while (running) {
+                synchronized (lock) {
+                    try {
+                        lock.wait(intervalMillis);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (running) {
+                    check();
+                }
+            }
+        }
+    }
+}
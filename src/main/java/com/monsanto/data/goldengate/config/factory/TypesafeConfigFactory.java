@@ -1,9 +1,16 @@
 package com.monsanto.data.goldengate.config.factory;
 
+import com.monsanto.data.goldengate.config.CheckpointConfiguration;
 import com.monsanto.data.goldengate.config.Conf;
+import com.monsanto.data.goldengate.config.EnvelopeConfiguration;
+import com.monsanto.data.goldengate.config.FilterConfiguration;
 import com.monsanto.data.goldengate.config.KafkaConfiguration;
 import com.monsanto.data.goldengate.config.MetricsConfiguration;
+import com.monsanto.data.goldengate.config.PipelineConfiguration;
+import com.monsanto.data.goldengate.config.ReloadConfiguration;
+import com.monsanto.data.goldengate.config.SpillConfiguration;
 import com.monsanto.data.goldengate.config.TableConfiguration;
+import com.monsanto.data.goldengate.config.TraceConfiguration;
 import com.monsanto.data.goldengate.encoder.EncoderType;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
@@ -22,18 +29,25 @@ public class TypesafeConfigFactory implements ConfigurationFactory {
         log.info("Loading Typesafe config from file="+ filePath);
         Config config = ConfigFactory.parseFile(new File(filePath)).withFallback(ConfigFactory.defaultReference());
 
-        Conf configuration = new Conf(determineEncoderType(config),
-                KafkaConfiguration.fromConfig(config.getConfig("kafka")),
-                MetricsConfiguration.fromConfig(config.getConfig("metrics")));
+        Conf.Builder builder = Conf.builder(determineEncoderType(config), KafkaConfiguration.fromConfig(config.getConfig("kafka")))
+                .metrics(MetricsConfiguration.fromConfig(config.getConfig("metrics")))
+                .envelope(EnvelopeConfiguration.fromConfig(config.getConfig("encoding.envelope")))
+                .pipeline(PipelineConfiguration.fromConfig(config.getConfig("pipeline")))
+                .filter(FilterConfiguration.fromConfig(config.getConfig("filter")))
+                .typedValues(config.getBoolean("encoding.typed-values"))
+                .spill(SpillConfiguration.fromConfig(config.getConfig("spill")))
+                .checkpoint(CheckpointConfiguration.fromConfig(config.getConfig("checkpoint")))
+                .reload(ReloadConfiguration.fromConfig(config.getConfig("reload")))
+                .trace(TraceConfiguration.fromConfig(config.getConfig("trace")));
 
-        addTableConfigurations(config.getObjectList("tables"), configuration);
+        addTableConfigurations(config.getObjectList("tables"), builder);
 
-        return configuration;
+        return builder.build();
     }
 
-    private void addTableConfigurations(List<? extends ConfigObject> tableConfigs, Conf configuration) {
+    private void addTableConfigurations(List<? extends ConfigObject> tableConfigs, Conf.Builder builder) {
         for (ConfigObject configObject : tableConfigs) {
-            configuration.addTableConfiguration(TableConfiguration.fromConfig(configObject.toConfig()));
+            builder.addTableConfiguration(TableConfiguration.fromConfig(configObject.toConfig()));
         }
     }
 
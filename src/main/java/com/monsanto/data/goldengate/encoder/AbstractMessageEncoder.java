@@ -1,24 +1,67 @@
 package com.monsanto.data.goldengate.encoder;
 
+import com.goldengate.atg.datasource.adapt.Col;
 import com.goldengate.atg.datasource.adapt.Op;
 import com.goldengate.atg.datasource.adapt.Tx;
+import com.goldengate.atg.datasource.meta.DsMetaData;
 import com.goldengate.atg.datasource.meta.TableName;
-import com.google.common.base.Optional;
 import com.monsanto.data.goldengate.MessageEncoder;
 import com.monsanto.data.goldengate.config.Conf;
-import com.monsanto.data.goldengate.config.TableConfiguration;
+import com.monsanto.data.goldengate.table.TableDescriptor;
+import com.monsanto.data.goldengate.table.TableDescriptorCache;
+import org.apache.commons.lang.StringUtils;
 
 public abstract class AbstractMessageEncoder implements MessageEncoder {
-    private final Conf configuration;
+    private static final String ORACLE_NULL = "NULL";
+
+    private final TableDescriptorCache tableDescriptors;
+    private final RecordKeyEncoder keyEncoder;
 
     public AbstractMessageEncoder(Conf configuration) {
-        this.configuration = configuration;
+        this(new TableDescriptorCache(configuration));
+    }
+
+    public AbstractMessageEncoder(TableDescriptorCache tableDescriptors) {
+        this.tableDescriptors = tableDescriptors;
+        this.keyEncoder = new RecordKeyEncoder(tableDescriptors);
+    }
+
+    protected TableDescriptor getDescriptor(TableName tableName) {
+        return tableDescriptors.descriptorFor(tableName);
+    }
+
+    /**
+     * True for an update that changes none of its written columns, on a table configured for compact updates.
+     */
+    protected boolean isUnchangedUpdate(Op op, TableDescriptor descriptor) {
+        if (!descriptor.isCompactUpdates() || !op.getOperationType().isUpdate()) {
+            return false;
+        }
+
+        int position = 0;
+        for (Col column : op) {
+            if (column.isChanged() && descriptor.isWrittenColumn(position)) {
+                return false;
+            }
+            position++;
+        }
+        return true;
     }
 
-    protected Optional<TableConfiguration> getConfigurationForTable(TableName tableName) {
-        return configuration.getTableConfiguration(tableName.getSchemaName(),tableName.getShortName());
+    protected boolean isNull(String value) {
+        return StringUtils.isEmpty(value) || ORACLE_NULL.equalsIgnoreCase(value);
     }
 
     abstract public byte[] encode(Tx tx, Op op);
 
+    @Override
+    public byte[] encodeKey(Op op) {
+        return keyEncoder.encode(op);
+    }
+
+    @Override
+    public void metaDataChanged(DsMetaData metaData) {
+        tableDescriptors.metaDataChanged(metaData);
+    }
+
 }
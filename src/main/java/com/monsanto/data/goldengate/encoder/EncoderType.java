@@ -1,7 +1,10 @@
 package com.monsanto.data.goldengate.encoder;
 
 public enum EncoderType {
-    JSON;
+    JSON,
+    AVRO,
+    SMILE,
+    CBOR;
 
     public static EncoderType fromString(String str) {
         return Enum.valueOf(EncoderType.class, str.toUpperCase());
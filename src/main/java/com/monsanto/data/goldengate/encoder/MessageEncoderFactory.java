@@ -1,15 +1,51 @@
 package com.monsanto.data.goldengate.encoder;
 
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.monsanto.data.goldengate.EnvelopeEncoder;
 import com.monsanto.data.goldengate.config.Conf;
+import com.monsanto.data.goldengate.encoder.avro.AvroEncoder;
 import com.monsanto.data.goldengate.encoder.json.JsonEncoder;
+import com.monsanto.data.goldengate.table.TableDescriptorCache;
 
 public class MessageEncoderFactory {
 
     public static AbstractMessageEncoder create(Conf configuration) {
-        EncoderType encoderType = configuration.encoderType();
+        return create(configuration, new TableDescriptorCache(configuration));
+    }
+
+    public static AbstractMessageEncoder create(Conf configuration, TableDescriptorCache tableDescriptors) {
+        if (configuration.hasTableEncoderTypes()) {
+            return new TableEncoderTypeMessageEncoder(tableDescriptors);
+        }
+        return create(configuration.encoderType(), tableDescriptors);
+    }
+
+    /**
+     * The encoder of transaction envelopes, which are written with the configured encoder type whatever
+     * the encoder types of the tables they contain.
+     */
+    public static EnvelopeEncoder createEnvelopeEncoder(Conf configuration, TableDescriptorCache tableDescriptors) {
+        AbstractMessageEncoder encoder = create(configuration.encoderType(), tableDescriptors);
 
+        if (!(encoder instanceof EnvelopeEncoder)) {
+            throw new IllegalArgumentException("Transaction envelopes are not supported by message encoder type: " + configuration.encoderType());
+        }
+        return (EnvelopeEncoder) encoder;
+    }
+
+    static AbstractMessageEncoder create(EncoderType encoderType, TableDescriptorCache tableDescriptors) {
         if (EncoderType.JSON.equals(encoderType)) {
-            return new JsonEncoder(configuration);
+            return new JsonEncoder(tableDescriptors);
+        }
+        else if (EncoderType.AVRO.equals(encoderType)) {
+            return new AvroEncoder(tableDescriptors);
+        }
+        else if (EncoderType.SMILE.equals(encoderType)) {
+            return new JsonEncoder(tableDescriptors, new SmileFactory(), true);
+        }
+        else if (EncoderType.CBOR.equals(encoderType)) {
+            return new JsonEncoder(tableDescriptors, new CBORFactory(), true);
         }
         else {
             throw new IllegalArgumentException("Unknown message encoder type: " + encoderType);
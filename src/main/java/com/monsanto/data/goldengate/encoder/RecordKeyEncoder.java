@@ -0,0 +1,73 @@
+package com.monsanto.data.goldengate.encoder;
+
+import com.goldengate.atg.datasource.adapt.Col;
+import com.goldengate.atg.datasource.adapt.Op;
+import com.monsanto.data.goldengate.table.TableDescriptorCache;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Builds Kafka record keys from the key columns of a table. Each key column is written as
+ * a varint of (length + 1) followed by the UTF-8 bytes of its value; a null value is a
+ * single zero byte. Key column positions come from the table's descriptor.
+ */
+public class RecordKeyEncoder {
+    private final TableDescriptorCache tableDescriptors;
+
+    public RecordKeyEncoder(TableDescriptorCache tableDescriptors) {
+        this.tableDescriptors = tableDescriptors;
+    }
+
+    public byte[] encode(Op op) {
+        int[] keyColumns = tableDescriptors.descriptorFor(op.getTableName()).getKeyColumns();
+
+        if (keyColumns.length == 0) {
+            return null;
+        }
+
+        boolean useBeforeImage = op.getOperationType().isDelete();
+        ByteArrayOutputStream key = new ByteArrayOutputStream(16 * keyColumns.length);
+        int columnIndex = 0;
+        int keyIndex = 0;
+
+        for (Col column : op) {
+            if (columnIndex == keyColumns[keyIndex]) {
+                writeValue(key, keyValue(column, useBeforeImage));
+
+                if (++keyIndex == keyColumns.length) {
+                    break;
+                }
+            }
+            columnIndex++;
+        }
+
+        return key.toByteArray();
+    }
+
+    private String keyValue(Col column, boolean useBeforeImage) {
+        if (useBeforeImage || !column.hasAfterValue()) {
+            return column.getBeforeValue();
+        }
+        return column.getAfterValue();
+    }
+
+    private void writeValue(ByteArrayOutputStream key, String value) {
+        if (value == null) {
+            key.write(0);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(key, bytes.length + 1);
+        key.write(bytes, 0, bytes.length);
+    }
+
+    private void writeVarint(ByteArrayOutputStream key, int value) {
+        while ((value & ~0x7F) != 0) {
+            key.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        key.write(value);
+    }
+}
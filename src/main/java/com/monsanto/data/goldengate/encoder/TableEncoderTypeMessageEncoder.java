@@ -0,0 +1,48 @@
+package com.monsanto.data.goldengate.encoder;
+
+import com.goldengate.atg.datasource.adapt.Op;
+import com.goldengate.atg.datasource.adapt.Tx;
+import com.goldengate.atg.datasource.meta.DsMetaData;
+import com.monsanto.data.goldengate.table.TableDescriptorCache;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Encodes each operation with the encoder type of its table, so tables can move between encodings
+ * one at a time. Transaction envelopes span tables and are written by an encoder of the default
+ * type instead, see {@link MessageEncoderFactory#createEnvelopeEncoder}. Like the encoders it
+ * delegates to, an instance must only be used by one thread at a time.
+ */
+public class TableEncoderTypeMessageEncoder extends AbstractMessageEncoder {
+    private final TableDescriptorCache tableDescriptors;
+    private final Map<EncoderType, AbstractMessageEncoder> encoders = new EnumMap<>(EncoderType.class);
+
+    public TableEncoderTypeMessageEncoder(TableDescriptorCache tableDescriptors) {
+        super(tableDescriptors);
+        this.tableDescriptors = tableDescriptors;
+    }
+
+    @Override
+    public byte[] encode(Tx tx, Op op) {
+        return encoder(getDescriptor(op.getTableName()).getEncoderType()).encode(tx, op);
+    }
+
+    @Override
+    public void metaDataChanged(DsMetaData metaData) {
+        super.metaDataChanged(metaData);
+        for (AbstractMessageEncoder encoder : encoders.values()) {
+            encoder.metaDataChanged(metaData);
+        }
+    }
+
+    private AbstractMessageEncoder encoder(EncoderType encoderType) {
+        AbstractMessageEncoder encoder = encoders.get(encoderType);
+
+        if (encoder == null) {
+            encoder = MessageEncoderFactory.create(encoderType, tableDescriptors);
+            encoders.put(encoderType, encoder);
+        }
+        return encoder;
+    }
+}
@@ -0,0 +1,259 @@
+package com.monsanto.data.goldengate.encoder.avro;
+
+import com.goldengate.atg.datasource.DsOperation;
+import com.goldengate.atg.datasource.DsToken;
+import com.goldengate.atg.datasource.adapt.Col;
+import com.goldengate.atg.datasource.adapt.Op;
+import com.goldengate.atg.datasource.adapt.Tx;
+import com.goldengate.atg.datasource.meta.DsMetaData;
+import com.goldengate.atg.datasource.meta.TableName;
+import com.google.common.annotations.VisibleForTesting;
+import com.monsanto.data.goldengate.GoldenGateConstants;
+import com.monsanto.data.goldengate.config.Conf;
+import com.monsanto.data.goldengate.encoder.AbstractMessageEncoder;
+import com.monsanto.data.goldengate.encoder.exception.UnableToEncodeMessageException;
+import com.monsanto.data.goldengate.encoder.json.JsonFields;
+import com.monsanto.data.goldengate.table.TableDescriptor;
+import com.monsanto.data.goldengate.table.TableDescriptorCache;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.SchemaNormalization;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Encodes operations as Avro binary records. Each table gets its own record schema, built
+ * from the column names of its descriptor on first use and rebuilt once the descriptor is replaced,
+ * on a metadata change or a reload of the table's configuration; every column
+ * is an optional string in a before and an after image. Messages start with the Avro
+ * single-object header (0xC3 0x01 and the little-endian CRC-64-AVRO fingerprint of the
+ * writer schema), and every new schema is logged so consumers can register it.
+ *
+ * An instance reuses its output buffer and must only be used by one thread at a time.
+ */
+public class AvroEncoder extends AbstractMessageEncoder {
+    private static final Logger log = LoggerFactory.getLogger(AvroEncoder.class);
+    private static final String NAMESPACE = "com.monsanto.data.goldengate.avro";
+    private static final String SOURCE_NAME_PROPERTY = "sourceName";
+    private static final String BEFORE_IMAGE = "before";
+    private static final String AFTER_IMAGE = "after";
+    private static final byte[] SINGLE_OBJECT_MAGIC = new byte[]{(byte) 0xC3, (byte) 0x01};
+
+    private final String ENV_TIMEZONE;
+    private final Map<TableName, TableSchema> schemasByTable = new HashMap<>();
+    private final ByteArrayOutputStream outBytes = new ByteArrayOutputStream(1024);
+    private BinaryEncoder binaryEncoder;
+
+    public AvroEncoder(Conf configuration) {
+        this(new TableDescriptorCache(configuration));
+    }
+
+    public AvroEncoder(TableDescriptorCache tableDescriptors) {
+        super(tableDescriptors);
+        TimeZone timeZone = Calendar.getInstance().getTimeZone();
+        ENV_TIMEZONE = timeZone.getDisplayName(false, TimeZone.SHORT);
+    }
+
+    @Override
+    public void metaDataChanged(DsMetaData metaData) {
+        super.metaDataChanged(metaData);
+        schemasByTable.clear();
+    }
+
+    @Override
+    public byte[] encode(Tx tx, Op op) {
+        try {
+            TableDescriptor descriptor = getDescriptor(op.getTableName());
+            if (isUnchangedUpdate(op, descriptor)) {
+                return null;
+            }
+
+            TableSchema tableSchema = schemaFor(descriptor);
+            GenericData.Record record = new GenericData.Record(tableSchema.schema);
+
+            writeOperationMetaData(op, record);
+            writeColumnImages(op, descriptor, tableSchema, record);
+            writeTokens(op, descriptor, record);
+
+            outBytes.reset();
+            outBytes.write(SINGLE_OBJECT_MAGIC);
+            outBytes.write(tableSchema.fingerprint);
+            binaryEncoder = EncoderFactory.get().directBinaryEncoder(outBytes, binaryEncoder);
+            tableSchema.writer.write(record, binaryEncoder);
+            binaryEncoder.flush();
+
+            return outBytes.toByteArray();
+        } catch (IOException | RuntimeException e) {
+            log.error("Error serializing operation to Avro. message: " + op.toString(), e);
+            throw new UnableToEncodeMessageException("Error encoding message as Avro.", e);
+        }
+    }
+
+    @VisibleForTesting
+    public Schema getSchema(TableName tableName) {
+        return schemaFor(getDescriptor(tableName)).schema;
+    }
+
+    private void writeOperationMetaData(Op op, GenericData.Record record) {
+        record.put(JsonFields.JSON_SCHEMA, op.getTableName().getSchemaName());
+        record.put(JsonFields.JSON_TABLE, op.getTableName().getShortName());
+        record.put(JsonFields.JSON_MODTYPE, String.valueOf(op.getOperationType().getCharID()));
+        record.put(JsonFields.JSON_TIMESTAMP, op.getTimestamp());
+        record.put(JsonFields.JSON_TIMEZONE, ENV_TIMEZONE);
+
+        record.put(JsonFields.JSON_FILESEQNO, op.getSeqno());
+        record.put(JsonFields.JSON_FILERBA, op.getRba());
+        record.put(JsonFields.JSON_TRANSIND, op.getTxState().getState());
+        record.put(JsonFields.JSON_DBUSER, nullable(op.getEnv(GoldenGateConstants.ENV_TRANSACTION, GoldenGateConstants.ENV_USERNAME)));
+        record.put(JsonFields.JSON_GGHOST, nullable(op.getEnv(GoldenGateConstants.ENV_GGENVIRONMENT, GoldenGateConstants.ENV_HOSTNAME)));
+        record.put(JsonFields.JSON_TRANSID, nullable(op.getEnv(GoldenGateConstants.ENV_TRANSACTION, GoldenGateConstants.ENV_TRANSACTIONID)));
+    }
+
+    private void writeColumnImages(Op op, TableDescriptor descriptor, TableSchema tableSchema, GenericData.Record record) {
+        DsOperation.OpType operationType = op.getOpType();
+        boolean writeBefore = !operationType.isInsert();
+        boolean writeAfter = !operationType.isDelete();
+
+        GenericData.Record before = writeBefore ? new GenericData.Record(tableSchema.rowSchema) : null;
+        GenericData.Record after = writeAfter ? new GenericData.Record(tableSchema.rowSchema) : null;
+        int columnCount = tableSchema.rowSchema.getFields().size();
+        int position = 0;
+        int fieldIndex = 0;
+
+        for (Col column : op) {
+            if (!descriptor.isWrittenColumn(position++)) {
+                continue;
+            }
+            if (fieldIndex >= columnCount) {
+                throw new IllegalStateException("Operation on " + op.getTableName() + " has more columns than its schema");
+            }
+            if (writeBefore) {
+                before.put(fieldIndex, nullable(column.getBeforeValue()));
+            }
+            if (writeAfter) {
+                after.put(fieldIndex, nullable(column.getAfterValue()));
+            }
+            fieldIndex++;
+        }
+
+        record.put(BEFORE_IMAGE, before);
+        record.put(AFTER_IMAGE, after);
+    }
+
+    private void writeTokens(Op op, TableDescriptor descriptor, GenericData.Record record) {
+        List<String> tokenNames = descriptor.getTokenNames();
+        Map<String, String> tokens = new HashMap<>();
+
+        if (!tokenNames.isEmpty()) {
+            Map<String, DsToken> opTokens = op.getData().getTokens();
+            for (int i = 0; i < tokenNames.size(); i++) {
+                tokens.put(tokenNames.get(i), nullable(descriptor.readToken(opTokens, i)));
+            }
+        }
+
+        record.put(JsonFields.JSON_TOKENS, tokens);
+    }
+
+    private String nullable(String value) {
+        return isNull(value) ? null : value;
+    }
+
+    private TableSchema schemaFor(TableDescriptor descriptor) {
+        TableSchema tableSchema = schemasByTable.get(descriptor.getTableName());
+
+        if (tableSchema == null || tableSchema.descriptor != descriptor) {
+            tableSchema = buildSchema(descriptor);
+            schemasByTable.put(descriptor.getTableName(), tableSchema);
+        }
+        return tableSchema;
+    }
+
+    private TableSchema buildSchema(TableDescriptor descriptor) {
+        if (!descriptor.hasMetaData()) {
+            throw new IllegalStateException("No metadata available for table " + descriptor.getTableName());
+        }
+
+        TableName tableName = descriptor.getTableName();
+        String recordName = avroName(tableName.getSchemaName() + "_" + tableName.getShortName());
+        SchemaBuilder.FieldAssembler<Schema> rowFields = SchemaBuilder.record(recordName + "_row").namespace(NAMESPACE).fields();
+        Set<String> fieldNames = new HashSet<>();
+
+        List<String> columnNames = descriptor.getColumnNames();
+        for (int i = 0; i < columnNames.size(); i++) {
+            if (!descriptor.isWrittenColumn(i)) {
+                continue;
+            }
+            String columnName = columnNames.get(i);
+            String fieldName = avroName(columnName);
+            if (!fieldNames.add(fieldName)) {
+                fieldName = fieldName + "_" + i;
+                fieldNames.add(fieldName);
+            }
+            rowFields = rowFields.name(fieldName).prop(SOURCE_NAME_PROPERTY, columnName).type().optional().stringType();
+        }
+        Schema rowSchema = rowFields.endRecord();
+
+        Schema schema = SchemaBuilder.record(recordName).namespace(NAMESPACE).fields()
+                .requiredString(JsonFields.JSON_SCHEMA)
+                .requiredString(JsonFields.JSON_TABLE)
+                .requiredString(JsonFields.JSON_MODTYPE)
+                .optionalString(JsonFields.JSON_TIMESTAMP)
+                .requiredString(JsonFields.JSON_TIMEZONE)
+                .requiredLong(JsonFields.JSON_FILESEQNO)
+                .requiredLong(JsonFields.JSON_FILERBA)
+                .requiredInt(JsonFields.JSON_TRANSIND)
+                .optionalString(JsonFields.JSON_DBUSER)
+                .optionalString(JsonFields.JSON_GGHOST)
+                .optionalString(JsonFields.JSON_TRANSID)
+                .name(BEFORE_IMAGE).type().optional().type(rowSchema)
+                .name(AFTER_IMAGE).type().optional().type(rowSchema)
+                .name(JsonFields.JSON_TOKENS).type().map().values().nullable().stringType().noDefault()
+                .endRecord();
+
+        log.info("Built Avro schema for table " + tableName + ": " + schema);
+        return new TableSchema(descriptor, schema, rowSchema);
+    }
+
+    private static String avroName(String name) {
+        StringBuilder avroName = new StringBuilder(name.length());
+
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean valid = c == '_' || (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (i > 0 && c >= '0' && c <= '9');
+            avroName.append(valid ? c : '_');
+        }
+        return avroName.toString();
+    }
+
+    private static final class TableSchema {
+        private final TableDescriptor descriptor;
+        private final Schema schema;
+        private final Schema rowSchema;
+        private final GenericDatumWriter<GenericData.Record> writer;
+        private final byte[] fingerprint;
+
+        private TableSchema(TableDescriptor descriptor, Schema schema, Schema rowSchema) {
+            this.descriptor = descriptor;
+            this.schema = schema;
+            this.rowSchema = rowSchema;
+            this.writer = new GenericDatumWriter<>(schema);
+            this.fingerprint = littleEndian(SchemaNormalization.parsingFingerprint64(schema));
+        }
+
+        private static byte[] littleEndian(long value) {
+            byte[] bytes = new byte[8];
+            for (int i = 0; i < 8; i++) {
+                bytes[i] = (byte) (value >>> (8 * i));
+            }
+            return bytes;
+        }
+    }
+}
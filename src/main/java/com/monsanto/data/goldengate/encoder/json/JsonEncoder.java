@@ -3,36 +3,66 @@ package com.monsanto.data.goldengate.encoder.json;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.goldengate.atg.datasource.DsColumn;
 import com.goldengate.atg.datasource.DsOperation;
 import com.goldengate.atg.datasource.DsToken;
 import com.goldengate.atg.datasource.adapt.Col;
 import com.goldengate.atg.datasource.adapt.Op;
 import com.goldengate.atg.datasource.adapt.Tx;
-import com.google.common.base.Optional;
+import com.monsanto.data.goldengate.EnvelopeEncoder;
 import com.monsanto.data.goldengate.GoldenGateConstants;
 import com.monsanto.data.goldengate.config.Conf;
-import com.monsanto.data.goldengate.config.TableConfiguration;
 import com.monsanto.data.goldengate.encoder.AbstractMessageEncoder;
 import com.monsanto.data.goldengate.encoder.exception.UnableToEncodeMessageException;
-import org.apache.commons.lang.StringUtils;
+import com.monsanto.data.goldengate.metrics.TrailTimestamps;
+import com.monsanto.data.goldengate.table.TableDescriptor;
+import com.monsanto.data.goldengate.table.TableDescriptorCache;
+import com.monsanto.data.goldengate.table.ValueType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.*;
 
-public class JsonEncoder extends AbstractMessageEncoder {
+/**
+ * Encodes operations as JSON documents, or as the same documents in a binary format such as
+ * Smile or CBOR when given the Jackson factory of that format. The output buffer, and for JSON
+ * the generator, are reused from one operation to the next, so an instance must only be used
+ * by one thread at a time.
+ */
+public class JsonEncoder extends AbstractMessageEncoder implements EnvelopeEncoder {
     private static final Logger log = LoggerFactory.getLogger(JsonEncoder.class);
-    private static final String ORACLE_NULL = "NULL";
 
-    private JsonFactory factory = new JsonFactory();
-    private String ENV_TIMEZONE;
+    private final JsonFactory factory;
+    private final boolean binary;
+    private final SerializableString ENV_TIMEZONE;
+
+    private final TrailTimestamps timestamps = new TrailTimestamps();
+    private final SerializableString[] serializedModTypes = new SerializableString[128];
+    private ByteArrayBuilder outBytes;
+    private JsonGenerator jsonGenerator;
 
     public JsonEncoder(Conf configuration) {
-        super(configuration);
+        this(new TableDescriptorCache(configuration));
+    }
+
+    public JsonEncoder(TableDescriptorCache tableDescriptors) {
+        this(tableDescriptors, new JsonFactory(), false);
+    }
+
+    /**
+     * @param binary true when the factory writes a binary format such as Smile or CBOR
+     */
+    public JsonEncoder(TableDescriptorCache tableDescriptors, JsonFactory factory, boolean binary) {
+        super(tableDescriptors);
+        this.factory = factory;
+        this.binary = binary;
         TimeZone timeZone = Calendar.getInstance().getTimeZone();
-        ENV_TIMEZONE = timeZone.getDisplayName(false, TimeZone.SHORT);
+        ENV_TIMEZONE = new SerializedString(timeZone.getDisplayName(false, TimeZone.SHORT));
 
         factory.configure(JsonParser.Feature.AUTO_CLOSE_SOURCE, false);
     }
@@ -40,65 +70,159 @@ public class JsonEncoder extends AbstractMessageEncoder {
     @Override
     public byte[] encode(Tx tx, Op op) {
         try {
-            ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
-            JsonGenerator jsonGenerator = factory.createGenerator(outBytes);
+            TableDescriptor descriptor = getDescriptor(op.getTableName());
+            if (isUnchangedUpdate(op, descriptor)) {
+                return null;
+            }
+
+            JsonGenerator jsonGenerator = generator();
 
             jsonGenerator.writeStartObject();
 
             writeOperationMetaData(op, jsonGenerator);
-            writeColumnArray(op, jsonGenerator, op.getOpType());
-            writeTokenArray(op, jsonGenerator);
+            writeColumnArray(op, descriptor, jsonGenerator, op.getOpType());
+            writeTokenArray(op, descriptor, jsonGenerator);
 
             jsonGenerator.writeEndObject();
 
+            return finishDocument();
+        } catch (IOException | RuntimeException e) {
+            discardGenerator();
+            log.error("Error serializing operation to " + factory.getFormatName() + ". message: " + op.toString(), e);
+            throw new UnableToEncodeMessageException("Error encoding message as " + factory.getFormatName() + ".", e);
+        }
+    }
+
+    @Override
+    public byte[] encodeTransaction(Tx tx, List<Op> ops, int chunk, int chunkCount) {
+        try {
+            JsonGenerator jsonGenerator = generator();
+
+            jsonGenerator.writeStartObject();
+
+            jsonGenerator.writeFieldName(SerializedJsonFields.TIMEZONE);
+            jsonGenerator.writeString(ENV_TIMEZONE);
+            writeTransactionEnvironment(ops.get(0), jsonGenerator);
+            jsonGenerator.writeFieldName(SerializedJsonFields.CHUNK);
+            jsonGenerator.writeNumber(chunk);
+            jsonGenerator.writeFieldName(SerializedJsonFields.CHUNKS);
+            jsonGenerator.writeNumber(chunkCount);
+
+            jsonGenerator.writeFieldName(SerializedJsonFields.OPERATIONS);
+            jsonGenerator.writeStartArray();
+            for (Op op : ops) {
+                TableDescriptor descriptor = getDescriptor(op.getTableName());
+                if (isUnchangedUpdate(op, descriptor)) {
+                    continue;
+                }
+
+                jsonGenerator.writeStartObject();
+
+                writeOperationAttributes(op, jsonGenerator);
+                writeOperationPosition(op, jsonGenerator);
+                writeColumnArray(op, descriptor, jsonGenerator, op.getOpType());
+                writeTokenArray(op, descriptor, jsonGenerator);
+
+                jsonGenerator.writeEndObject();
+            }
+            jsonGenerator.writeEndArray();
+
+            jsonGenerator.writeEndObject();
+
+            return finishDocument();
+        } catch (IOException | RuntimeException e) {
+            discardGenerator();
+            log.error("Error serializing transaction to " + factory.getFormatName() + ". transaction: " + tx.getTranID(), e);
+            throw new UnableToEncodeMessageException("Error encoding transaction envelope as " + factory.getFormatName() + ".", e);
+        }
+    }
+
+    private byte[] finishDocument() throws IOException {
+        if (binary) {
+            jsonGenerator.close();
+            jsonGenerator = null;
+        } else {
             jsonGenerator.flush();
+        }
 
-            return outBytes.toByteArray();
-        } catch (IOException e) {
-            log.error("Error serializing operation to JSON. message: " + op.toString(), e);
-            throw new UnableToEncodeMessageException("Error encoding message as JSON.", e);
+        byte[] encoded = outBytes.toByteArray();
+        outBytes.reset();
+        return encoded;
+    }
+
+    /**
+     * Binary generators start each document with a fresh generator, so that every message carries
+     * its own header and never refers back to names written in an earlier one. They are closed once
+     * the document is written, which hands their buffers back to the factory's recycler.
+     */
+    private JsonGenerator generator() throws IOException {
+        if (outBytes == null) {
+            outBytes = new ByteArrayBuilder();
+        }
+        if (jsonGenerator == null) {
+            jsonGenerator = factory.createGenerator(outBytes);
+            if (!binary) {
+                jsonGenerator.setRootValueSeparator(null);
+            }
         }
+        return jsonGenerator;
     }
 
-    private void writeOperationMetaData(Op op, JsonGenerator jsonGenerator) throws IOException {
-        jsonGenerator.writeStringField(JsonFields.JSON_SCHEMA, op.getTableName().getSchemaName());
-        jsonGenerator.writeStringField(JsonFields.JSON_TABLE, op.getTableName().getShortName());
-        jsonGenerator.writeStringField(JsonFields.JSON_MODTYPE, String.valueOf(op.getOperationType().getCharID()));
+    private void discardGenerator() {
+        jsonGenerator = null;
+        outBytes = null;
+    }
 
-        jsonGenerator.writeStringField(JsonFields.JSON_TIMESTAMP, op.getTimestamp());
-        jsonGenerator.writeStringField(JsonFields.JSON_TIMEZONE, ENV_TIMEZONE);
+    private void writeOperationMetaData(Op op, JsonGenerator jsonGenerator) throws IOException {
+        writeOperationAttributes(op, jsonGenerator);
+        jsonGenerator.writeFieldName(SerializedJsonFields.TIMEZONE);
+        jsonGenerator.writeString(ENV_TIMEZONE);
 
         writeTransactionMetadata(op, jsonGenerator);
     }
 
+    private void writeOperationAttributes(Op op, JsonGenerator jsonGenerator) throws IOException {
+        writeStringField(SerializedJsonFields.SCHEMA, op.getTableName().getSchemaName(), jsonGenerator);
+        writeStringField(SerializedJsonFields.TABLE, op.getTableName().getShortName(), jsonGenerator);
+        jsonGenerator.writeFieldName(SerializedJsonFields.MODTYPE);
+        jsonGenerator.writeString(serializedModType(op.getOperationType().getCharID()));
+
+        writeStringField(SerializedJsonFields.TIMESTAMP, op.getTimestamp(), jsonGenerator);
+    }
+
     private void writeTransactionMetadata(Op op, JsonGenerator jsonGenerator) throws IOException {
-        jsonGenerator.writeNumberField(JsonFields.JSON_FILESEQNO, op.getSeqno());
-        jsonGenerator.writeNumberField(JsonFields.JSON_FILERBA, op.getRba());
-        jsonGenerator.writeNumberField(JsonFields.JSON_TRANSIND, op.getTxState().getState());
-
-        writeNullableField(JsonFields.JSON_DBUSER, op.getEnv(GoldenGateConstants.ENV_TRANSACTION, GoldenGateConstants.ENV_USERNAME), jsonGenerator);
-        writeNullableField(JsonFields.JSON_GGHOST, op.getEnv(GoldenGateConstants.ENV_GGENVIRONMENT, GoldenGateConstants.ENV_HOSTNAME), jsonGenerator);
-        writeNullableField(JsonFields.JSON_TRANSID, op.getEnv(GoldenGateConstants.ENV_TRANSACTION, GoldenGateConstants.ENV_TRANSACTIONID), jsonGenerator);
-    }
-
-    private void writeTokenArray(Op op, JsonGenerator jsonGenerator) throws IOException {
-        jsonGenerator.writeArrayFieldStart(JsonFields.JSON_TOKENS);
-        Optional<TableConfiguration> configurationForTable = getConfigurationForTable(op.getTableName());
-
-        if (configurationForTable.isPresent()) {
-            Map<String, String> tokenMap = new HashMap<>();
-            for (Map.Entry<String,DsToken> entry : op.getData().getTokens().entrySet()) {
-                if (entry.getValue().isSet()) {
-                    tokenMap.put(entry.getKey().toUpperCase(), entry.getValue().toString());
-                } else {
-                    tokenMap.put(entry.getKey().toUpperCase(), null);
-                }
-            }
+        writeOperationPosition(op, jsonGenerator);
+        writeTransactionEnvironment(op, jsonGenerator);
+    }
+
+    private void writeOperationPosition(Op op, JsonGenerator jsonGenerator) throws IOException {
+        jsonGenerator.writeFieldName(SerializedJsonFields.FILESEQNO);
+        jsonGenerator.writeNumber(op.getSeqno());
+        jsonGenerator.writeFieldName(SerializedJsonFields.FILERBA);
+        jsonGenerator.writeNumber(op.getRba());
+        jsonGenerator.writeFieldName(SerializedJsonFields.TRANSIND);
+        jsonGenerator.writeNumber(op.getTxState().getState());
+    }
+
+    private void writeTransactionEnvironment(Op op, JsonGenerator jsonGenerator) throws IOException {
+        writeNullableField(SerializedJsonFields.DBUSER, op.getEnv(GoldenGateConstants.ENV_TRANSACTION, GoldenGateConstants.ENV_USERNAME), jsonGenerator);
+        writeNullableField(SerializedJsonFields.GGHOST, op.getEnv(GoldenGateConstants.ENV_GGENVIRONMENT, GoldenGateConstants.ENV_HOSTNAME), jsonGenerator);
+        writeNullableField(SerializedJsonFields.TRANSID, op.getEnv(GoldenGateConstants.ENV_TRANSACTION, GoldenGateConstants.ENV_TRANSACTIONID), jsonGenerator);
+    }
 
-            for (String tokenName : configurationForTable.get().getTokenNames()) {
+    private void writeTokenArray(Op op, TableDescriptor descriptor, JsonGenerator jsonGenerator) throws IOException {
+        jsonGenerator.writeFieldName(SerializedJsonFields.TOKENS);
+        jsonGenerator.writeStartArray();
+        List<String> tokenNames = descriptor.getTokenNames();
+
+        if (!tokenNames.isEmpty()) {
+            Map<String, DsToken> tokens = op.getData().getTokens();
+
+            for (int i = 0; i < tokenNames.size(); i++) {
                 jsonGenerator.writeStartObject();
-                jsonGenerator.writeStringField(JsonFields.JSON_COLUMN_NAME, tokenName.toUpperCase());
-                writeNullableField(JsonFields.JSON_VALUE, tokenMap.get(tokenName), jsonGenerator);
+                jsonGenerator.writeFieldName(SerializedJsonFields.COLUMN_NAME);
+                jsonGenerator.writeString(tokenNames.get(i));
+                writeNullableField(SerializedJsonFields.VALUE, descriptor.readToken(tokens, i), jsonGenerator);
                 jsonGenerator.writeEndObject();
             }
         }
@@ -106,52 +230,195 @@ public class JsonEncoder extends AbstractMessageEncoder {
         jsonGenerator.writeEndArray();
     }
 
-    private void writeColumnArray(Op op, JsonGenerator jsonGenerator, DsOperation.OpType operationType) throws IOException {
-        jsonGenerator.writeArrayFieldStart(JsonFields.JSON_COLUMNS);
+    private void writeColumnArray(Op op, TableDescriptor descriptor, JsonGenerator jsonGenerator, DsOperation.OpType operationType) throws IOException {
+        jsonGenerator.writeFieldName(SerializedJsonFields.COLUMNS);
+        jsonGenerator.writeStartArray();
 
+        boolean compact = descriptor.isCompactUpdates() && operationType.isUpdate();
+        boolean typed = descriptor.isTypedValues();
+        int position = 0;
         for (Col column : op) {
-            writeColumnObject(jsonGenerator, operationType, column);
+            if (descriptor.isWrittenColumn(position) && (!compact || column.isChanged() || descriptor.isPrimaryKeyColumn(position))) {
+                writeColumnObject(jsonGenerator, operationType, column, serializedName(descriptor, position, column),
+                        typed ? descriptor.getValueType(position) : null);
+            }
+            position++;
         }
 
         jsonGenerator.writeEndArray();
     }
 
-    private void writeColumnObject(JsonGenerator jsonGenerator, DsOperation.OpType operationType, Col column) throws IOException {
+    /**
+     * Writes a column; values are written as strings when {@code valueType} is null.
+     */
+    private void writeColumnObject(JsonGenerator jsonGenerator, DsOperation.OpType operationType, Col column,
+                                   SerializableString name, ValueType valueType) throws IOException {
         jsonGenerator.writeStartObject();
-        jsonGenerator.writeStringField(JsonFields.JSON_COLUMN_NAME, column.getName());
+        jsonGenerator.writeFieldName(SerializedJsonFields.COLUMN_NAME);
+        jsonGenerator.writeString(name);
 
         if (operationType.isInsert()) {
-            writeNullableField(JsonFields.JSON_VALUE, column.getAfterValue(), jsonGenerator);
+            writeAfterValue(SerializedJsonFields.VALUE, column, valueType, jsonGenerator);
         } else if (operationType.isDelete()) {
-            writeNullableField(JsonFields.JSON_VALUE, column.getBeforeValue(), jsonGenerator);
+            writeBeforeValue(SerializedJsonFields.VALUE, column, valueType, jsonGenerator);
         } else {
-            writeUpdatedColumn(jsonGenerator, column);
+            writeUpdatedColumn(jsonGenerator, column, valueType);
         }
 
         jsonGenerator.writeEndObject();
     }
 
-    private void writeUpdatedColumn(JsonGenerator jsonGenerator, Col column) throws IOException {
-        writeNullableField(JsonFields.JSON_COLUMN_BEFORE, column.getBeforeValue(), jsonGenerator);
-        writeNullableField(JsonFields.JSON_COLUMN_AFTER, column.getAfterValue(), jsonGenerator);
+    private void writeBeforeValue(SerializableString key, Col column, ValueType valueType, JsonGenerator jsonGenerator) throws IOException {
+        if (valueType == null) {
+            writeNullableField(key, column.getBeforeValue(), jsonGenerator);
+        } else {
+            writeTypedField(key, column.hasBeforeValue() ? column.getBefore() : null, valueType, jsonGenerator);
+        }
+    }
+
+    private void writeAfterValue(SerializableString key, Col column, ValueType valueType, JsonGenerator jsonGenerator) throws IOException {
+        if (valueType == null) {
+            writeNullableField(key, column.getAfterValue(), jsonGenerator);
+        } else {
+            writeTypedField(key, column.hasAfterValue() ? column.getAfter() : null, valueType, jsonGenerator);
+        }
+    }
+
+    private void writeUpdatedColumn(JsonGenerator jsonGenerator, Col column, ValueType valueType) throws IOException {
+        writeBeforeValue(SerializedJsonFields.COLUMN_BEFORE, column, valueType, jsonGenerator);
+        writeAfterValue(SerializedJsonFields.COLUMN_AFTER, column, valueType, jsonGenerator);
 
+        jsonGenerator.writeFieldName(SerializedJsonFields.COLUMN_CHANGED);
         if (column.hasAfterValue() && column.getAfter().isValueNull() && !column.hasBeforeValue()) {
-            jsonGenerator.writeBooleanField(JsonFields.JSON_COLUMN_CHANGED, false);
+            jsonGenerator.writeBoolean(false);
         } else {
-            jsonGenerator.writeBooleanField(JsonFields.JSON_COLUMN_CHANGED, column.isChanged());
+            jsonGenerator.writeBoolean(column.isChanged());
         }
     }
 
-    private void writeNullableField(String key, String value, JsonGenerator jsonGenerator) throws IOException {
+    private void writeStringField(SerializableString key, String value, JsonGenerator jsonGenerator) throws IOException {
+        jsonGenerator.writeFieldName(key);
+        jsonGenerator.writeString(value);
+    }
+
+    private void writeNullableField(SerializableString key, String value, JsonGenerator jsonGenerator) throws IOException {
+        jsonGenerator.writeFieldName(key);
         if (!isNull(value)) {
-            jsonGenerator.writeStringField(key, value);
+            jsonGenerator.writeString(value);
+        } else {
+            jsonGenerator.writeNull();
+        }
+    }
+
+    /**
+     * Writes a column image by its value type, taking nulls from the image's null flag. Values that
+     * do not parse as their type are written as strings.
+     */
+    private void writeTypedField(SerializableString key, DsColumn image, ValueType valueType, JsonGenerator jsonGenerator) throws IOException {
+        jsonGenerator.writeFieldName(key);
+        if (image == null || image.isValueNull()) {
+            jsonGenerator.writeNull();
+            return;
+        }
+
+        String value = image.getValue();
+        if (valueType == ValueType.NUMBER && isJsonNumber(value)) {
+            writeNumber(value, jsonGenerator);
+            return;
+        }
+        if (valueType == ValueType.TIMESTAMP) {
+            long millis = timestamps.toMillis(value);
+            if (millis != TrailTimestamps.INVALID) {
+                jsonGenerator.writeNumber(millis);
+                return;
+            }
+        }
+        jsonGenerator.writeString(value);
+    }
+
+    /**
+     * JSON numbers are written verbatim; binary formats need the number itself.
+     */
+    private void writeNumber(String value, JsonGenerator jsonGenerator) throws IOException {
+        if (!binary) {
+            jsonGenerator.writeNumber(value);
+        } else if (value.length() < 19 && value.indexOf('.') < 0 && value.indexOf('e') < 0 && value.indexOf('E') < 0) {
+            jsonGenerator.writeNumber(Long.parseLong(value));
         } else {
-            jsonGenerator.writeNullField(key);
+            jsonGenerator.writeNumber(new BigDecimal(value));
         }
     }
 
-    private boolean isNull(String value) {
-        return StringUtils.isEmpty(value) || ORACLE_NULL.equalsIgnoreCase(value);
+    /**
+     * True when the value can be written verbatim as a JSON number.
+     */
+    static boolean isJsonNumber(String value) {
+        if (value == null) {
+            return false;
+        }
+
+        int length = value.length();
+        int i = 0;
+        if (i < length && value.charAt(i) == '-') {
+            i++;
+        }
+        if (i < length && value.charAt(i) == '0') {
+            i++;
+        } else {
+            int start = i;
+            i = skipDigits(value, i);
+            if (i == start) {
+                return false;
+            }
+        }
+        if (i < length && value.charAt(i) == '.') {
+            int start = ++i;
+            i = skipDigits(value, i);
+            if (i == start) {
+                return false;
+            }
+        }
+        if (i < length && (value.charAt(i) == 'e' || value.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (value.charAt(i) == '+' || value.charAt(i) == '-')) {
+                i++;
+            }
+            int start = i;
+            i = skipDigits(value, i);
+            if (i == start) {
+                return false;
+            }
+        }
+        return i == length;
+    }
+
+    private static int skipDigits(String value, int i) {
+        while (i < value.length() && value.charAt(i) >= '0' && value.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * The descriptor's pre-encoded column name, or the column's own name for tables without metadata.
+     */
+    private static SerializableString serializedName(TableDescriptor descriptor, int position, Col column) {
+        SerializableString serializedName = descriptor.getSerializedColumnName(position);
+
+        return serializedName != null ? serializedName : new SerializedString(column.getName());
+    }
+
+    private SerializableString serializedModType(char modType) {
+        if (modType >= serializedModTypes.length) {
+            return new SerializedString(String.valueOf(modType));
+        }
+
+        SerializableString serializedModType = serializedModTypes[modType];
+        if (serializedModType == null) {
+            serializedModType = new SerializedString(String.valueOf(modType));
+            serializedModTypes[modType] = serializedModType;
+        }
+        return serializedModType;
     }
 
 }
@@ -3,6 +3,9 @@ package com.monsanto.data.goldengate.encoder.json;
 public interface JsonFields {
     String JSON_COLUMNS = "columns";
     String JSON_TOKENS = "tokens";
+    String JSON_OPERATIONS = "operations";
+    String JSON_CHUNK = "chunk";
+    String JSON_CHUNKS = "chunks";
 
     String JSON_FILESEQNO = "seqNo";
     String JSON_FILERBA = "rba";
@@ -0,0 +1,38 @@
+package com.monsanto.data.goldengate.encoder.json;
+
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+/**
+ * {@link JsonFields} names with their quoted UTF-8 form computed once, so that writing
+ * them does not re-encode the name for every operation.
+ */
+final class SerializedJsonFields {
+    static final SerializableString COLUMNS = new SerializedString(JsonFields.JSON_COLUMNS);
+    static final SerializableString TOKENS = new SerializedString(JsonFields.JSON_TOKENS);
+    static final SerializableString OPERATIONS = new SerializedString(JsonFields.JSON_OPERATIONS);
+    static final SerializableString CHUNK = new SerializedString(JsonFields.JSON_CHUNK);
+    static final SerializableString CHUNKS = new SerializedString(JsonFields.JSON_CHUNKS);
+
+    static final SerializableString FILESEQNO = new SerializedString(JsonFields.JSON_FILESEQNO);
+    static final SerializableString FILERBA = new SerializedString(JsonFields.JSON_FILERBA);
+    static final SerializableString TRANSIND = new SerializedString(JsonFields.JSON_TRANSIND);
+
+    static final SerializableString DBUSER = new SerializedString(JsonFields.JSON_DBUSER);
+    static final SerializableString GGHOST = new SerializedString(JsonFields.JSON_GGHOST);
+    static final SerializableString TRANSID = new SerializedString(JsonFields.JSON_TRANSID);
+
+    static final SerializableString COLUMN_NAME = new SerializedString(JsonFields.JSON_COLUMN_NAME);
+    static final SerializableString COLUMN_BEFORE = new SerializedString(JsonFields.JSON_COLUMN_BEFORE);
+    static final SerializableString COLUMN_AFTER = new SerializedString(JsonFields.JSON_COLUMN_AFTER);
+    static final SerializableString COLUMN_CHANGED = new SerializedString(JsonFields.JSON_COLUMN_CHANGED);
+    static final SerializableString SCHEMA = new SerializedString(JsonFields.JSON_SCHEMA);
+    static final SerializableString TABLE = new SerializedString(JsonFields.JSON_TABLE);
+    static final SerializableString TIMESTAMP = new SerializedString(JsonFields.JSON_TIMESTAMP);
+    static final SerializableString TIMEZONE = new SerializedString(JsonFields.JSON_TIMEZONE);
+    static final SerializableString MODTYPE = new SerializedString(JsonFields.JSON_MODTYPE);
+    static final SerializableString VALUE = new SerializedString(JsonFields.JSON_VALUE);
+
+    private SerializedJsonFields() {
+    }
+}
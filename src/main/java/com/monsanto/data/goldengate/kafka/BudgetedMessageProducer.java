@@ -0,0 +1,244 @@
+package com.monsanto.data.goldengate.kafka;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.annotations.VisibleForTesting;
+import com.monsanto.data.goldengate.MessageProducer;
+import com.monsanto.data.goldengate.SendCallback;
+import com.monsanto.data.goldengate.SendFailureCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounds the bytes of records handed to the producer but not yet acknowledged. A send that would go
+ * over the budget waits until acknowledgements free enough room, so the sending thread is slowed to
+ * the rate Kafka accepts records rather than buffering without limit. A failed send frees its bytes too,
+ * so a waiting send goes on to the producer and has the failure rethrown rather than waiting for acks
+ * that will not come. When no room is freed within the ack timeout the producer is flushed, which either
+ * fails like any other send or frees everything.
+ *
+ * Bytes are counted per topic, which is the table for tables with their own topic. A record larger
+ * than the whole budget is sent once nothing else is outstanding.
+ */
+public class BudgetedMessageProducer implements MessageProducer {
+    private final Logger log = LoggerFactory.getLogger(BudgetedMessageProducer.class);
+    private final MessageProducer producer;
+    private final long budgetBytes;
+    private final long ackTimeoutMillis;
+    private final Lock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final Set<Reservation> outstanding = new LinkedHashSet<>();
+    private final ConcurrentMap<String, AtomicLong> topicBytes = new ConcurrentHashMap<>();
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final Timer blockedTimer = new Timer();
+    private volatile MetricRegistry metrics;
+
+    public BudgetedMessageProducer(MessageProducer producer, long budgetBytes, long ackTimeoutMillis) {
+        this.producer = producer;
+        this.budgetBytes = budgetBytes;
+        this.ackTimeoutMillis = ackTimeoutMillis;
+    }
+
+    @Override
+    public void produce(String topic, byte[] key, byte[] bytes) {
+        produce(topic, key, bytes, null);
+    }
+
+    @Override
+    public void produce(String topic, byte[] key, byte[] bytes, SendCallback callback) {
+        Reservation reservation = reserve(topic, bytes.length + (key == null ? 0 : key.length), callback);
+
+        try {
+            producer.produce(topic, key, bytes, reservation);
+        } catch (RuntimeException re) {
+            releaseAll();
+            throw re;
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            producer.flush();
+        } finally {
+            releaseAll();
+        }
+    }
+
+    @Override
+    public void terminate() {
+        try {
+            producer.terminate();
+        } finally {
+            releaseAll();
+        }
+    }
+
+    @Override
+    public void registerMetrics(MetricRegistry metrics) {
+        producer.registerMetrics(metrics);
+        registerIfAbsent(metrics, "budget.usedBytes", new BytesGauge(usedBytes));
+        registerIfAbsent(metrics, "budget.blocked", blockedTimer);
+        for (Map.Entry<String, AtomicLong> entry : topicBytes.entrySet()) {
+            registerTopic(metrics, entry.getKey(), entry.getValue());
+        }
+        this.metrics = metrics;
+    }
+
+    @VisibleForTesting
+    long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    private Reservation reserve(String topic, int size, SendCallback callback) {
+        AtomicLong bytesOfTopic = topicBytes.get(topic);
+        if (bytesOfTopic == null) {
+            topicBytes.putIfAbsent(topic, new AtomicLong());
+            bytesOfTopic = topicBytes.get(topic);
+            if (metrics != null) {
+                registerTopic(metrics, topic, bytesOfTopic);
+            }
+        }
+        Reservation reservation = new Reservation(bytesOfTopic, size, callback);
+
+        while (!tryReserve(reservation)) {
+            log.warn("No acknowledgements within " + ackTimeoutMillis + "ms with " + usedBytes.get()
+                    + " bytes outstanding; flushing the producer");
+            flush();
+        }
+        return reservation;
+    }
+
+    /**
+     * Takes the reservation's bytes from the budget, waiting up to the ack timeout for room; false when
+     * the wait timed out.
+     */
+    private boolean tryReserve(Reservation reservation) {
+        lock.lock();
+        try {
+            if (!fits(reservation.size)) {
+                Timer.Context blocked = blockedTimer.time();
+                try {
+                    long remaining = TimeUnit.MILLISECONDS.toNanos(ackTimeoutMillis);
+                    while (!fits(reservation.size)) {
+                        if (remaining <= 0) {
+                            return false;
+                        }
+                        remaining = released.awaitNanos(remaining);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new UnableToSendMessageException("Interrupted waiting for room in the memory budget", e);
+                } finally {
+                    blocked.stop();
+                }
+            }
+
+            outstanding.add(reservation);
+            usedBytes.addAndGet(reservation.size);
+            reservation.topicBytes.addAndGet(reservation.size);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean fits(int size) {
+        long used = usedBytes.get();
+        return used == 0 || used + size <= budgetBytes;
+    }
+
+    private void release(Reservation reservation) {
+        lock.lock();
+        try {
+            if (outstanding.remove(reservation)) {
+                free(reservation);
+                released.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseAll() {
+        lock.lock();
+        try {
+            for (Reservation reservation : outstanding) {
+                free(reservation);
+            }
+            outstanding.clear();
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void free(Reservation reservation) {
+        usedBytes.addAndGet(-reservation.size);
+        reservation.topicBytes.addAndGet(-reservation.size);
+    }
+
+    private static void registerTopic(MetricRegistry metrics, String topic, AtomicLong bytes) {
+        registerIfAbsent(metrics, MetricRegistry.name("budget", topic, "usedBytes"), new BytesGauge(bytes));
+    }
+
+    private static void registerIfAbsent(MetricRegistry metrics, String name, Metric metric) {
+        if (!metrics.getMetrics().containsKey(name)) {
+            metrics.register(name, metric);
+        }
+    }
+
+    private class Reservation implements SendFailureCallback {
+        private final AtomicLong topicBytes;
+        private final int size;
+        private final SendCallback callback;
+
+        private Reservation(AtomicLong topicBytes, int size, SendCallback callback) {
+            this.topicBytes = topicBytes;
+            this.size = size;
+            this.callback = callback;
+        }
+
+        @Override
+        public void onAcknowledged() {
+            release(this);
+            if (callback != null) {
+                callback.onAcknowledged();
+            }
+        }
+
+        @Override
+        public void onFailed(Exception e) {
+            release(this);
+            if (callback instanceof SendFailureCallback) {
+                ((SendFailureCallback) callback).onFailed(e);
+            }
+        }
+    }
+
+    private static class BytesGauge implements Gauge<Long> {
+        private final AtomicLong bytes;
+
+        private BytesGauge(AtomicLong bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public Long getValue() {
+            return bytes.get();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.monsanto.data.goldengate.kafka;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Exposes the Kafka client's metrics as gauges, named
+ * {@code kafka.<client-id>.<group>[.<tag values>].<name>}, e.g.
+ * {@code kafka.goldengate-0.producer-metrics.record-queue-time-avg} or
+ * {@code kafka.goldengate-0.producer-topic-metrics.orders.record-send-rate}.
+ */
+public class KafkaClientMetrics {
+    private static final String CLIENT_ID_TAG = "client-id";
+
+    public static void register(MetricRegistry registry, Map<MetricName, ? extends Metric> clientMetrics) {
+        Set<String> registered = registry.getNames();
+
+        for (Map.Entry<MetricName, ? extends Metric> entry : clientMetrics.entrySet()) {
+            String name = nameOf(entry.getKey());
+
+            if (!registered.contains(name)) {
+                registry.register(name, new MetricGauge(entry.getValue()));
+            }
+        }
+    }
+
+    static String nameOf(MetricName metricName) {
+        Map<String, String> tags = new TreeMap<>(metricName.tags());
+        List<String> names = new ArrayList<>();
+
+        String clientId = tags.remove(CLIENT_ID_TAG);
+        if (clientId != null) {
+            names.add(clientId);
+        }
+        names.add(metricName.group());
+        names.addAll(tags.values());
+        names.add(metricName.name());
+        return MetricRegistry.name("kafka", names.toArray(new String[names.size()]));
+    }
+
+    private static class MetricGauge implements Gauge<Double> {
+        private final Metric metric;
+
+        private MetricGauge(Metric metric) {
+            this.metric = metric;
+        }
+
+        @Override
+        public Double getValue() {
+            return metric.value();
+        }
+    }
+}
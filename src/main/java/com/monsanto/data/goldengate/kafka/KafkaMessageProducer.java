@@ -1,26 +1,57 @@
 package com.monsanto.data.goldengate.kafka;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
 import com.monsanto.data.goldengate.MessageProducer;
+import com.monsanto.data.goldengate.SendCallback;
+import com.monsanto.data.goldengate.SendFailureCallback;
 import com.monsanto.data.goldengate.config.KafkaConfiguration;
 import org.apache.kafka.clients.producer.*;
+import org.apache.kafka.common.PartitionInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Properties;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class KafkaMessageProducer implements MessageProducer {
+    private static final long DEFAULT_ACK_TIMEOUT_MILLIS = 30000L;
+
     private final Logger log = LoggerFactory.getLogger(KafkaMessageProducer.class);
     private final String topicName;
     private final Producer<byte[], byte[]> producer ;
     private Optional<String> compressionFormat = Optional.absent();
+    private String clientId;
+    private Optional<StickyPartitioner> partitioner = Optional.absent();
+    private MetricRegistry metrics;
+    private int registeredMetricCount;
+
+    private boolean async = false;
+    private int maxInFlight = 1;
+    private long ackTimeoutMillis = DEFAULT_ACK_TIMEOUT_MILLIS;
+    private long drainTimeoutMillis = DEFAULT_ACK_TIMEOUT_MILLIS;
+    private final Deque<Future<RecordMetadata>> inFlight = new ArrayDeque<>();
+    private final AtomicReference<Exception> asyncFailure = new AtomicReference<>();
+    private final Callback asyncCallback = new Callback() {
+        @Override
+        public void onCompletion(RecordMetadata recordMetadata, Exception e) {
+            if (e != null) {
+                asyncFailure.compareAndSet(null, e);
+            } else if (log.isDebugEnabled()) {
+                log.debug("Message Acknowledged! offset=" + recordMetadata.offset() + ", topic=" + recordMetadata.topic() + ", partition=" + recordMetadata.partition());
+            }
+        }
+    };
 
     public KafkaMessageProducer(Producer<byte[], byte[]> producer, String topicName) {
         this.producer = producer;
@@ -33,33 +64,99 @@ public class KafkaMessageProducer implements MessageProducer {
         this.compressionFormat = compressionFormat;
     }
 
+    public KafkaMessageProducer(Producer<byte[], byte[]> producer, KafkaConfiguration configuration) {
+        this(producer, configuration, Optional.<StickyPartitioner>absent());
+    }
+
+    public KafkaMessageProducer(Producer<byte[], byte[]> producer, KafkaConfiguration configuration,
+                                Optional<StickyPartitioner> partitioner) {
+        this.producer = producer;
+        this.topicName = configuration.getTopicName();
+        this.compressionFormat = configuration.getCompression();
+        this.partitioner = partitioner;
+        configureSending(configuration);
+    }
+
     public KafkaMessageProducer(KafkaConfiguration configuration) {
+        this(configuration, configuration.getClientId().or(UUID.randomUUID().toString()));
+    }
+
+    public KafkaMessageProducer(KafkaConfiguration configuration, String clientId) {
+        this(configuration, clientId, Optional.<StickyPartitioner>absent());
+    }
+
+    public KafkaMessageProducer(KafkaConfiguration configuration, String clientId, Optional<StickyPartitioner> partitioner) {
         log.info("Kafka Producer Constructor");
         this.topicName = configuration.getTopicName();
-        this.producer = new KafkaProducer<>(createProperties(configuration.getBrokerList(),configuration.getCompression()));
+        this.producer = new KafkaProducer<>(createProperties(configuration.getBrokerList(),configuration.getCompression(), clientId,
+                configuration.getBatchSize()));
+        this.partitioner = partitioner;
+        configureSending(configuration);
     }
 
     @Override
-    public void produce(byte[] bytes) throws UnableToSendMessageException {
+    public void produce(String topic, byte[] key, byte[] bytes) throws UnableToSendMessageException {
+        produce(topic, null, key, bytes, null);
+    }
 
-        try {
-            Future<RecordMetadata> futureMetadata =  producer.send(new ProducerRecord<byte[], byte[]>(topicName, bytes));
-            RecordMetadata recordMetadata = futureMetadata.get(30000, TimeUnit.MILLISECONDS);
+    @Override
+    public void produce(String topic, byte[] key, byte[] bytes, SendCallback callback) throws UnableToSendMessageException {
+        produce(topic, null, key, bytes, callback);
+    }
 
-            if (log.isDebugEnabled() && recordMetadata != null) { // null check for UTs
-                log.debug("Message Sent! offset=" + recordMetadata.offset() + ", topic=" + recordMetadata.topic() + ", partition=" + recordMetadata.partition());
-            }
-        } catch (TimeoutException | InterruptedException | ExecutionException e) {
-            log.error("Error sending message to topic " + topicName + ": " + new String(bytes), e);
-            throw new UnableToSendMessageException("Error sending kafka message",e);
+    /**
+     * Sends to the given partition, or lets the sticky partitioner or the producer's partitioner choose one when
+     * it is null.
+     */
+    void produce(String topic, Integer partition, byte[] key, byte[] bytes, SendCallback callback) throws UnableToSendMessageException {
+        if (partition == null && key == null && partitioner.isPresent()) {
+            partition = partitioner.get().partition(topic, bytes.length, producer);
         }
+        ProducerRecord<byte[], byte[]> record = new ProducerRecord<>(topic, partition, key, bytes);
+
+        if (async) {
+            produceAsync(record, callback);
+        } else {
+            produceAndWait(record, callback);
+        }
+    }
+
+    @Override
+    public void flush() throws UnableToSendMessageException {
+        registerNewClientMetrics();
+        while (!inFlight.isEmpty()) {
+            awaitOldestInFlight();
+        }
+        throwIfAsyncSendFailed();
     }
 
     @Override
     public void terminate() {
+        drainInFlight();
         producer.close();
     }
 
+    @Override
+    public void registerMetrics(MetricRegistry metrics) {
+        this.metrics = metrics;
+        registeredMetricCount = producer.metrics().size();
+        KafkaClientMetrics.register(metrics, producer.metrics());
+        if (partitioner.isPresent()) {
+            partitioner.get().registerMetrics(metrics);
+        }
+    }
+
+    /**
+     * The producer creates its per-topic and per-broker metrics once it first sends to them, so metrics are
+     * registered again at each flush when their number has changed since the last registration.
+     */
+    private void registerNewClientMetrics() {
+        if (metrics != null && producer.metrics().size() != registeredMetricCount) {
+            registeredMetricCount = producer.metrics().size();
+            KafkaClientMetrics.register(metrics, producer.metrics());
+        }
+    }
+
     @VisibleForTesting
     public String getTopicName() {
         return topicName;
@@ -70,7 +167,113 @@ public class KafkaMessageProducer implements MessageProducer {
         return compressionFormat;
     }
 
-    private Properties createProperties(String brokerList, Optional<String> compressionCodec) {
+    @VisibleForTesting
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    @VisibleForTesting
+    public String getClientId() {
+        return clientId;
+    }
+
+    /**
+     * The partitions of the topic, fetching its metadata if this producer has not seen it yet.
+     */
+    List<PartitionInfo> partitionsFor(String topic) {
+        return producer.partitionsFor(topic);
+    }
+
+    /**
+     * The sticky partition for a keyless record of the given size, or null when the topic is not sticky.
+     */
+    Integer stickyPartition(String topic, int recordSize) {
+        if (!partitioner.isPresent()) {
+            return null;
+        }
+        return partitioner.get().partition(topic, recordSize, producer);
+    }
+
+    private void configureSending(KafkaConfiguration configuration) {
+        this.async = configuration.isAsync();
+        this.maxInFlight = configuration.getMaxInFlight();
+        this.ackTimeoutMillis = configuration.getAckTimeoutMillis();
+        this.drainTimeoutMillis = configuration.getDrainTimeoutMillis();
+    }
+
+    private void produceAndWait(ProducerRecord<byte[], byte[]> record, SendCallback callback) {
+        try {
+            Future<RecordMetadata> futureMetadata =  producer.send(record);
+            RecordMetadata recordMetadata = futureMetadata.get(ackTimeoutMillis, TimeUnit.MILLISECONDS);
+
+            if (log.isDebugEnabled() && recordMetadata != null) { // null check for UTs
+                log.debug("Message Sent! offset=" + recordMetadata.offset() + ", topic=" + recordMetadata.topic() + ", partition=" + recordMetadata.partition());
+            }
+            if (callback != null) {
+                callback.onAcknowledged();
+            }
+        } catch (TimeoutException | InterruptedException | ExecutionException e) {
+            log.error("Error sending message to topic " + record.topic() + ": " + new String(record.value()), e);
+            throw new UnableToSendMessageException("Error sending kafka message",e);
+        }
+    }
+
+    private void produceAsync(ProducerRecord<byte[], byte[]> record, SendCallback callback) {
+        throwIfAsyncSendFailed();
+
+        if (inFlight.size() >= maxInFlight) {
+            awaitOldestInFlight();
+        }
+
+        inFlight.addLast(producer.send(record, callback == null ? asyncCallback : new AcknowledgingCallback(callback)));
+    }
+
+    private void awaitOldestInFlight() {
+        Future<RecordMetadata> oldest = inFlight.pollFirst();
+
+        try {
+            oldest.get(ackTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | InterruptedException | ExecutionException e) {
+            inFlight.clear();
+            asyncFailure.set(null);
+            log.error("Error awaiting acknowledgement of kafka message", e);
+            throw new UnableToSendMessageException("Error sending kafka message", e);
+        }
+    }
+
+    private void throwIfAsyncSendFailed() {
+        Exception failure = asyncFailure.getAndSet(null);
+
+        if (failure != null) {
+            inFlight.clear();
+            log.error("Asynchronous send of kafka message failed", failure);
+            throw new UnableToSendMessageException("Error sending kafka message", failure);
+        }
+    }
+
+    private void drainInFlight() {
+        long deadline = System.currentTimeMillis() + drainTimeoutMillis;
+
+        while (!inFlight.isEmpty()) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                log.warn("Gave up waiting for " + inFlight.size() + " in-flight messages after " + drainTimeoutMillis + "ms");
+                break;
+            }
+
+            try {
+                inFlight.pollFirst().get(remaining, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                log.error("In-flight kafka message failed while draining", e);
+            } catch (TimeoutException | InterruptedException e) {
+                log.warn("Gave up waiting for " + (inFlight.size() + 1) + " in-flight messages", e);
+                break;
+            }
+        }
+        inFlight.clear();
+    }
+
+    private Properties createProperties(String brokerList, Optional<String> compressionCodec, String clientId, Integer batchSize) {
         log.info("Creating Kafka ProducerConfig");
         Properties properties = new Properties();
 
@@ -78,7 +281,9 @@ public class KafkaMessageProducer implements MessageProducer {
         properties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG,"org.apache.kafka.common.serialization.ByteArraySerializer");
         properties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG,"org.apache.kafka.common.serialization.ByteArraySerializer");
         properties.put(ProducerConfig.ACKS_CONFIG, "all");
-        properties.put(ProducerConfig.CLIENT_ID_CONFIG,UUID.randomUUID().toString());
+        properties.put(ProducerConfig.CLIENT_ID_CONFIG,clientId);
+        properties.put(ProducerConfig.BATCH_SIZE_CONFIG,String.valueOf(batchSize));
+        this.clientId = clientId;
 
         if (compressionCodec.isPresent()) {
             properties.put(ProducerConfig.COMPRESSION_TYPE_CONFIG,compressionCodec.get());
@@ -93,4 +298,22 @@ public class KafkaMessageProducer implements MessageProducer {
         }
         return properties;
     }
+
+    private class AcknowledgingCallback implements Callback {
+        private final SendCallback callback;
+
+        private AcknowledgingCallback(SendCallback callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void onCompletion(RecordMetadata recordMetadata, Exception e) {
+            asyncCallback.onCompletion(recordMetadata, e);
+            if (e == null) {
+                callback.onAcknowledged();
+            } else if (callback instanceof SendFailureCallback) {
+                ((SendFailureCallback) callback).onFailed(e);
+            }
+        }
+    }
 }
@@ -1,13 +1,61 @@
 package com.monsanto.data.goldengate.kafka;
 
+import com.google.common.base.Optional;
 import com.monsanto.data.goldengate.MessageProducer;
+import com.monsanto.data.goldengate.config.Conf;
 import com.monsanto.data.goldengate.config.KafkaConfiguration;
+import com.monsanto.data.goldengate.config.SpillConfiguration;
+import com.monsanto.data.goldengate.spill.SpillingMessageProducer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
 
 public class KafkaProducerFactory {
 
+    /**
+     * Creates the producer with sticky partitioning for the configured topics, bounded by the memory budget and
+     * wrapped so that records spill to local disk while Kafka is unavailable when spilling is enabled.
+     */
+    public static MessageProducer create(Conf configuration) {
+        KafkaConfiguration kafkaConfiguration = configuration.kafka();
+        Optional<StickyPartitioner> partitioner = Optional.absent();
+        if (!configuration.stickyPartitionedTopics().isEmpty()) {
+            partitioner = Optional.of(new StickyPartitioner(configuration.stickyPartitionedTopics(),
+                    kafkaConfiguration.getBatchSize(), kafkaConfiguration.getStickyLingerMillis()));
+        }
+
+        MessageProducer producer = create(kafkaConfiguration, partitioner);
+        if (kafkaConfiguration.getMemoryBudget() > 0) {
+            producer = new BudgetedMessageProducer(producer, kafkaConfiguration.getMemoryBudget(), kafkaConfiguration.getAckTimeoutMillis());
+        }
+
+        SpillConfiguration spillConfiguration = configuration.spill();
+        if (!spillConfiguration.isEnabled()) {
+            return producer;
+        }
+
+        SpillingMessageProducer spillingProducer = new SpillingMessageProducer(producer, spillConfiguration, kafkaConfiguration.isAsync());
+        spillingProducer.start();
+        return spillingProducer;
+    }
+
     public static MessageProducer create(KafkaConfiguration configuration) {
+        return create(configuration, Optional.<StickyPartitioner>absent());
+    }
+
+    private static MessageProducer create(KafkaConfiguration configuration, Optional<StickyPartitioner> partitioner) {
+        String clientId = configuration.getClientId().or(UUID.randomUUID().toString());
 
         // TODO: Extract the broker configuration here
-        return new KafkaMessageProducer(configuration);
+        if (configuration.getProducers() == 1) {
+            return new KafkaMessageProducer(configuration, clientId, partitioner);
+        }
+
+        List<KafkaMessageProducer> producers = new ArrayList<>();
+        for (int i = 0; i < configuration.getProducers(); i++) {
+            producers.add(new KafkaMessageProducer(configuration, clientId + "-" + i, partitioner));
+        }
+        return new StripedMessageProducer(producers);
     }
 }
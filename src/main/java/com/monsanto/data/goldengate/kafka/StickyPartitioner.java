@@ -0,0 +1,105 @@
+package com.monsanto.data.goldengate.kafka;
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.common.PartitionInfo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chooses partitions for records without a key on the configured topics. Instead of spreading them
+ * one by one, which leaves every partition's batch nearly empty when it is sent, it sends to one
+ * partition until a batch's worth of bytes has gone to it or the linger time has passed, then moves to
+ * the next partition with a leader.
+ *
+ * Batches are measured by uncompressed record size, so with compression they rotate before the
+ * producer's compressed batch is full. Meant to be shared by the producers of a pool; like them it must
+ * only be used by one thread at a time.
+ */
+public class StickyPartitioner {
+    // Per-record overhead of the 0.8 message format: offset, size, crc, magic, attributes and key and value lengths
+    private static final int RECORD_OVERHEAD = 26;
+
+    private final int batchSize;
+    private final long lingerMillis;
+    private final Map<String, Stick> sticks = new HashMap<>();
+
+    public StickyPartitioner(Collection<String> topics, int batchSize, long lingerMillis) {
+        this.batchSize = batchSize;
+        this.lingerMillis = lingerMillis;
+        for (String topic : topics) {
+            sticks.put(topic, new Stick());
+        }
+    }
+
+    /**
+     * The partition for a keyless record of the given size, or null when the topic is not sticky and
+     * the producer's own partitioner should choose.
+     */
+    Integer partition(String topic, int recordSize, Producer<byte[], byte[]> producer) {
+        Stick stick = sticks.get(topic);
+        if (stick == null) {
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        int size = recordSize + RECORD_OVERHEAD;
+        if (stick.partition < 0) {
+            rotate(topic, stick, producer, now);
+        } else if (stick.bytes + size > batchSize || now - stick.since >= lingerMillis) {
+            stick.batchFill.update(Math.min(100L, stick.bytes * 100L / batchSize));
+            rotate(topic, stick, producer, now);
+        }
+        stick.bytes += size;
+        return stick.partition;
+    }
+
+    public void registerMetrics(MetricRegistry metrics) {
+        for (Map.Entry<String, Stick> entry : sticks.entrySet()) {
+            registerIfAbsent(metrics, MetricRegistry.name("partitioner", entry.getKey(), "batchFill"), entry.getValue().batchFill);
+            registerIfAbsent(metrics, MetricRegistry.name("partitioner", entry.getKey(), "rotations"), entry.getValue().rotations);
+        }
+    }
+
+    private void rotate(String topic, Stick stick, Producer<byte[], byte[]> producer, long now) {
+        List<PartitionInfo> partitions = producer.partitionsFor(topic);
+        List<PartitionInfo> available = new ArrayList<>(partitions.size());
+        for (PartitionInfo partition : partitions) {
+            if (partition.leader() != null) {
+                available.add(partition);
+            }
+        }
+        if (available.isEmpty()) {
+            available = partitions;
+        }
+
+        stick.next = (stick.next + 1) % available.size();
+        stick.partition = available.get(stick.next).partition();
+        stick.bytes = 0;
+        stick.since = now;
+        stick.rotations.mark();
+    }
+
+    private static void registerIfAbsent(MetricRegistry metrics, String name, Metric metric) {
+        if (!metrics.getMetrics().containsKey(name)) {
+            metrics.register(name, metric);
+        }
+    }
+
+    private static final class Stick {
+        private final Histogram batchFill = new Histogram(new ExponentiallyDecayingReservoir());
+        private final Meter rotations = new Meter();
+        private int partition = -1;
+        private int next = -1;
+        private long bytes;
+        private long since;
+    }
+}
@@ -0,0 +1,146 @@
+package com.monsanto.data.goldengate.kafka;
+
+import com.codahale.metrics.MetricRegistry;
+import com.monsanto.data.goldengate.MessageProducer;
+import com.monsanto.data.goldengate.SendCallback;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.utils.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Spreads sends over a pool of producers, each with its own sender thread and broker connections.
+ *
+ * Every record is assigned its partition here and sent by the producer owning that partition: keyed
+ * records the partition the default partitioner would choose for their key, unkeyed records their
+ * topic's sticky partition or else the next partition with a leader, one by one. Every partition is
+ * therefore only written by one producer, which keeps it in send order. The partitions of each topic are
+ * looked up once per metadata age rather than per record.
+ */
+public class StripedMessageProducer implements MessageProducer {
+    // The producer's default metadata.max.age.ms, after which it refreshes topic metadata itself
+    private static final long PARTITIONS_MAX_AGE_MILLIS = 300000L;
+
+    private final Logger log = LoggerFactory.getLogger(StripedMessageProducer.class);
+    private final List<KafkaMessageProducer> producers;
+    private final Map<String, TopicPartitions> topicPartitions = new HashMap<>();
+
+    public StripedMessageProducer(List<KafkaMessageProducer> producers) {
+        if (producers.isEmpty()) {
+            throw new IllegalArgumentException("At least one producer is required");
+        }
+        this.producers = producers;
+    }
+
+    @Override
+    public void produce(String topic, byte[] key, byte[] bytes) {
+        produce(topic, key, bytes, null);
+    }
+
+    @Override
+    public void produce(String topic, byte[] key, byte[] bytes, SendCallback callback) {
+        int partition = key == null ? unkeyedPartition(topic, bytes.length) : keyedPartition(topic, key);
+        stripe(partition).produce(topic, partition, key, bytes, callback);
+    }
+
+    @Override
+    public void flush() {
+        UnableToSendMessageException failure = null;
+
+        for (KafkaMessageProducer producer : producers) {
+            try {
+                producer.flush();
+            } catch (UnableToSendMessageException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public void terminate() {
+        for (KafkaMessageProducer producer : producers) {
+            try {
+                producer.terminate();
+            } catch (RuntimeException re) {
+                log.error("Error terminating kafka producer " + producer.getClientId(), re);
+            }
+        }
+    }
+
+    @Override
+    public void registerMetrics(MetricRegistry metrics) {
+        for (KafkaMessageProducer producer : producers) {
+            producer.registerMetrics(metrics);
+        }
+    }
+
+    private int keyedPartition(String topic, byte[] key) {
+        return Utils.abs(Utils.murmur2(key)) % partitions(topic).count;
+    }
+
+    private int unkeyedPartition(String topic, int recordSize) {
+        Integer sticky = producers.get(0).stickyPartition(topic, recordSize);
+        if (sticky != null) {
+            return sticky;
+        }
+        return partitions(topic).next();
+    }
+
+    private TopicPartitions partitions(String topic) {
+        long now = System.currentTimeMillis();
+        TopicPartitions partitions = topicPartitions.get(topic);
+        if (partitions == null || now - partitions.fetchedMillis >= PARTITIONS_MAX_AGE_MILLIS) {
+            partitions = new TopicPartitions(producers.get(0).partitionsFor(topic), now,
+                    partitions == null ? 0 : partitions.counter);
+            topicPartitions.put(topic, partitions);
+        }
+        return partitions;
+    }
+
+    private KafkaMessageProducer stripe(int partition) {
+        return producers.get(partition % producers.size());
+    }
+
+    private static final class TopicPartitions {
+        private final int count;
+        private final int[] available;
+        private final long fetchedMillis;
+        private int counter;
+
+        private TopicPartitions(List<PartitionInfo> partitions, long fetchedMillis, int counter) {
+            List<Integer> withLeader = new ArrayList<>(partitions.size());
+            for (PartitionInfo partition : partitions) {
+                if (partition.leader() != null) {
+                    withLeader.add(partition.partition());
+                }
+            }
+            if (withLeader.isEmpty()) {
+                for (PartitionInfo partition : partitions) {
+                    withLeader.add(partition.partition());
+                }
+            }
+
+            this.count = partitions.size();
+            this.available = new int[withLeader.size()];
+            for (int i = 0; i < available.length; i++) {
+                available[i] = withLeader.get(i);
+            }
+            this.fetchedMillis = fetchedMillis;
+            this.counter = counter;
+        }
+
+        private int next() {
+            return available[Utils.abs(counter++) % available.length];
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.monsanto.data.goldengate.metrics;
 
+import com.codahale.metrics.JmxReporter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.ScheduledReporter;
 import com.codahale.metrics.Slf4jReporter;
@@ -23,4 +24,17 @@ public class MetricsReporterFactory {
         return reporter;
     }
 
+    public static JmxReporter createJmxReporter(MetricsConfiguration configuration, MetricRegistry metrics) {
+
+        JmxReporter reporter = JmxReporter.forRegistry(metrics)
+                .inDomain(configuration.getJmxDomain())
+                .convertRatesTo(TimeUnit.SECONDS)
+                .convertDurationsTo(TimeUnit.MILLISECONDS)
+                .build();
+
+        reporter.start();
+
+        return reporter;
+    }
+
 }
@@ -0,0 +1,86 @@
+package com.monsanto.data.goldengate.metrics;
+
+import com.goldengate.atg.datasource.adapt.Op;
+import com.monsanto.data.goldengate.SendCallback;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The stage times of one operation, started by an {@link OperationTracer}. The trace is the callback
+ * of the operation's message, so it is completed when Kafka acknowledges it. When the producer waits
+ * for the acknowledgement before returning, it arrives before the send is noted and the send stage
+ * includes it.
+ */
+public final class OperationTrace implements SendCallback {
+    private final OperationTracer tracer;
+    private final long receivedNanos;
+    private final long encodingNanos;
+
+    private Op op;
+    private int bytes;
+    private long encodedNanos;
+    private SendCallback callback;
+    private volatile long sentNanos;
+
+    OperationTrace(OperationTracer tracer, long receivedNanos, long encodingNanos) {
+        this.tracer = tracer;
+        this.receivedNanos = receivedNanos;
+        this.encodingNanos = encodingNanos;
+    }
+
+    public void encoded(Op op, byte[] message) {
+        this.op = op;
+        this.bytes = message.length;
+        this.encodedNanos = System.nanoTime();
+    }
+
+    /**
+     * This trace as the callback of the operation's message, calling the given callback, which may be
+     * null, once it is acknowledged.
+     */
+    public SendCallback callback(SendCallback callback) {
+        this.callback = callback;
+        return this;
+    }
+
+    public void sent() {
+        if (sentNanos == 0) {
+            sentNanos = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void onAcknowledged() {
+        long acknowledgedNanos = System.nanoTime();
+        if (sentNanos == 0) {
+            sentNanos = acknowledgedNanos;
+        }
+
+        tracer.acknowledged(this, acknowledgedNanos);
+        if (callback != null) {
+            callback.onAcknowledged();
+        }
+    }
+
+    long getReceivedNanos() {
+        return receivedNanos;
+    }
+
+    String describe(long acknowledgedNanos) {
+        long receivedMillis = System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(acknowledgedNanos - receivedNanos);
+        return "table=" + op.getTableName().getSchemaName() + "." + op.getTableName().getShortName()
+                + " type=" + op.getOperationType()
+                + " position=" + op.getPosition()
+                + " bytes=" + bytes
+                + " received=" + receivedMillis
+                + " waitMicros=" + micros(receivedNanos, encodingNanos)
+                + " encodeMicros=" + micros(encodingNanos, encodedNanos)
+                + " sendMicros=" + micros(encodedNanos, sentNanos)
+                + " ackMicros=" + micros(sentNanos, acknowledgedNanos)
+                + " totalMicros=" + micros(receivedNanos, acknowledgedNanos);
+    }
+
+    private static long micros(long fromNanos, long toNanos) {
+        return TimeUnit.NANOSECONDS.toMicros(toNanos - fromNanos);
+    }
+}
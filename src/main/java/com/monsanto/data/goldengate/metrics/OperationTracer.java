@@ -0,0 +1,55 @@
+package com.monsanto.data.goldengate.metrics;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.monsanto.data.goldengate.config.TraceConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Traces operations through receipt, encoding, sending and acknowledgement by Kafka, and writes one
+ * line to the trace logger for each operation that took at least the slow threshold from receipt to
+ * acknowledgement. Unlike the timers, which only report aggregates, a line carries the table,
+ * operation type, trail position and encoded size of one operation, the wall-clock time it was
+ * received and the microseconds spent in each stage, so a slow operation can be lined up with GC
+ * and safepoint logs or a flight recording of the same period.
+ *
+ * Lines are written on the thread that receives the acknowledgement, which is the Kafka producer's
+ * I/O thread; with a low threshold the trace logger should be asynchronous.
+ */
+public class OperationTracer {
+    private final Logger traceLog;
+    private final long slowThresholdNanos;
+
+    public OperationTracer(TraceConfiguration configuration) {
+        this(LoggerFactory.getLogger(configuration.getLoggerName()), configuration.getSlowThresholdMillis());
+    }
+
+    @VisibleForTesting
+    OperationTracer(Logger traceLog, long slowThresholdMillis) {
+        this.traceLog = traceLog;
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+    }
+
+    /**
+     * Starts tracing an operation received now, which is about to be encoded.
+     */
+    public OperationTrace start() {
+        long now = System.nanoTime();
+        return new OperationTrace(this, now, now);
+    }
+
+    /**
+     * Starts tracing an operation received at the given {@link System#nanoTime()}, which is about to be encoded.
+     */
+    public OperationTrace start(long receivedNanos) {
+        return new OperationTrace(this, receivedNanos, System.nanoTime());
+    }
+
+    void acknowledged(OperationTrace trace, long acknowledgedNanos) {
+        if (acknowledgedNanos - trace.getReceivedNanos() >= slowThresholdNanos && traceLog.isInfoEnabled()) {
+            traceLog.info(trace.describe(acknowledgedNanos));
+        }
+    }
+}
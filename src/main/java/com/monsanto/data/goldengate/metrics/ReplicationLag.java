@@ -0,0 +1,120 @@
+package com.monsanto.data.goldengate.metrics;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.goldengate.atg.datasource.adapt.Op;
+import com.goldengate.atg.datasource.meta.TableName;
+import com.monsanto.data.goldengate.SendCallback;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Measures replication lag: the time in milliseconds from an operation's timestamp in the trail
+ * to the acknowledgement of its message by Kafka. Lags are recorded in a histogram per table,
+ * {@code replicationLag.<schema>.<table>}, and {@code replicationLag.max} reports the highest lag
+ * of the last acknowledged operation of each table, leaving out tables with no acknowledgement
+ * within the maximum age, by default the reporter's default frequency.
+ */
+public class ReplicationLag {
+    private static final String NAME = "replicationLag";
+    private static final long DEFAULT_MAX_AGE_MILLIS = 300000L;
+
+    private final MetricRegistry metrics;
+    private final TrailTimestamps timestamps = new TrailTimestamps();
+    private final ConcurrentMap<TableName, TableLag> lagByTable = new ConcurrentHashMap<>();
+    private volatile long maxAgeMillis;
+
+    public ReplicationLag(MetricRegistry metrics) {
+        this(metrics, DEFAULT_MAX_AGE_MILLIS);
+    }
+
+    public ReplicationLag(MetricRegistry metrics, long maxAgeMillis) {
+        this.metrics = metrics;
+        this.maxAgeMillis = maxAgeMillis;
+        metrics.register(MetricRegistry.name(NAME, "max"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return maxLag();
+            }
+        });
+    }
+
+    /**
+     * A callback recording the lag of the operation once its message is acknowledged, or null when
+     * the operation has no usable timestamp.
+     */
+    public SendCallback callbackFor(Op op) {
+        long timestampMillis = timestamps.toMillis(op.getTimestamp());
+
+        if (timestampMillis == TrailTimestamps.INVALID) {
+            return null;
+        }
+        return new LagCallback(tableLag(op.getTableName()), timestampMillis);
+    }
+
+    /**
+     * How long the lag of a table's last acknowledged operation counts towards the maximum; usually the
+     * report interval, so that a table which stopped receiving changes drops out of the next report.
+     */
+    public void setMaxAgeMillis(long maxAgeMillis) {
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    private TableLag tableLag(TableName tableName) {
+        TableLag tableLag = lagByTable.get(tableName);
+
+        if (tableLag == null) {
+            Histogram histogram = metrics.histogram(MetricRegistry.name(NAME, tableName.getSchemaName(), tableName.getShortName()));
+            TableLag created = new TableLag(histogram);
+            TableLag existing = lagByTable.putIfAbsent(tableName, created);
+            tableLag = existing == null ? created : existing;
+        }
+        return tableLag;
+    }
+
+    private long maxLag() {
+        long max = 0;
+        long oldestMillis = System.currentTimeMillis() - maxAgeMillis;
+
+        for (TableLag tableLag : lagByTable.values()) {
+            if (tableLag.latestMillis >= oldestMillis) {
+                max = Math.max(max, tableLag.latest);
+            }
+        }
+        return max;
+    }
+
+    private static final class TableLag {
+        private final Histogram histogram;
+        private volatile long latest;
+        private volatile long latestMillis;
+
+        private TableLag(Histogram histogram) {
+            this.histogram = histogram;
+        }
+
+        private void record(long lag, long recordedMillis) {
+            histogram.update(lag);
+            latest = lag;
+            latestMillis = recordedMillis;
+        }
+    }
+
+    private static final class LagCallback implements SendCallback {
+        private final TableLag tableLag;
+        private final long timestampMillis;
+
+        private LagCallback(TableLag tableLag, long timestampMillis) {
+            this.tableLag = tableLag;
+            this.timestampMillis = timestampMillis;
+        }
+
+        @Override
+        public void onAcknowledged() {
+            long now = System.currentTimeMillis();
+            tableLag.record(now - timestampMillis, now);
+        }
+    }
+}
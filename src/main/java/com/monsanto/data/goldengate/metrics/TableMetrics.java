@@ -0,0 +1,91 @@
+package com.monsanto.data.goldengate.metrics;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.goldengate.atg.datasource.DsOperation;
+import com.goldengate.atg.datasource.adapt.Op;
+import com.goldengate.atg.datasource.meta.TableName;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Throughput per table, under {@code table.<schema>.<table>}: meters of the {@code inserts},
+ * {@code updates}, {@code deletes} and {@code otherOperations} captured, a meter of the encoded
+ * {@code bytes} sent and a {@code messageSize} histogram. Sizes are taken before the producer
+ * compresses its batches; the compression ratio is reported per topic by the Kafka client's own
+ * {@code compression-rate-avg}. Meters count with striped adders, so encoder threads recording
+ * the same table do not contend on a single counter.
+ */
+public class TableMetrics {
+    private static final String NAME = "table";
+
+    private final MetricRegistry metrics;
+    private final ConcurrentMap<TableName, Table> tables = new ConcurrentHashMap<>();
+
+    public TableMetrics(MetricRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Counts an operation sent in a message of its own.
+     */
+    public void recordMessage(Op op, byte[] message) {
+        Table table = table(op.getTableName());
+
+        table.operations(op.getOperationType()).mark();
+        table.bytes.mark(message.length);
+        table.messageSize.update(message.length);
+    }
+
+    /**
+     * Counts an operation sent as part of a message holding several, whose size is not attributed to tables.
+     */
+    public void recordOperation(Op op) {
+        table(op.getTableName()).operations(op.getOperationType()).mark();
+    }
+
+    private Table table(TableName tableName) {
+        Table table = tables.get(tableName);
+
+        if (table == null) {
+            Table created = new Table(metrics, tableName);
+            Table existing = tables.putIfAbsent(tableName, created);
+            table = existing == null ? created : existing;
+        }
+        return table;
+    }
+
+    private static final class Table {
+        private final Meter inserts;
+        private final Meter updates;
+        private final Meter deletes;
+        private final Meter otherOperations;
+        private final Meter bytes;
+        private final Histogram messageSize;
+
+        private Table(MetricRegistry metrics, TableName tableName) {
+            String prefix = MetricRegistry.name(NAME, tableName.getSchemaName(), tableName.getShortName());
+            this.inserts = metrics.meter(MetricRegistry.name(prefix, "inserts"));
+            this.updates = metrics.meter(MetricRegistry.name(prefix, "updates"));
+            this.deletes = metrics.meter(MetricRegistry.name(prefix, "deletes"));
+            this.otherOperations = metrics.meter(MetricRegistry.name(prefix, "otherOperations"));
+            this.bytes = metrics.meter(MetricRegistry.name(prefix, "bytes"));
+            this.messageSize = metrics.histogram(MetricRegistry.name(prefix, "messageSize"));
+        }
+
+        private Meter operations(DsOperation.OpType opType) {
+            if (opType == null) {
+                return otherOperations;
+            } else if (opType.isInsert()) {
+                return inserts;
+            } else if (opType.isUpdate()) {
+                return updates;
+            } else if (opType.isDelete()) {
+                return deletes;
+            }
+            return otherOperations;
+        }
+    }
+}
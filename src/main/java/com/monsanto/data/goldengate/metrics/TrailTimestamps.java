@@ -0,0 +1,130 @@
+package com.monsanto.data.goldengate.metrics;
+
+import java.util.Calendar;
+
+/**
+ * Parses GoldenGate operation and column timestamps ({@code yyyy-MM-dd HH:mm:ss.ffffff}, in the
+ * local time zone; column dates may use {@code :} between date and time) to epoch milliseconds.
+ *
+ * The start of each hour is computed once and kept in a small cache keyed by the date and hour, so
+ * that column values spread over many hours are parsed without a Calendar as long as their hours
+ * recur; only the minutes, seconds and fraction are parsed for the rest. The cache is direct mapped
+ * and its entries immutable, so it is safe for use by several threads without locking.
+ */
+public class TrailTimestamps {
+    /**
+     * Returned for missing or malformed timestamps; unlike -1 it is no valid time.
+     */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    private static final int CACHE_SIZE = 256;
+    private static final int MIN_LENGTH = 19;
+    private static final int FRACTION_OFFSET = 20;
+
+    private final HourStart[] hours = new HourStart[CACHE_SIZE];
+
+    /**
+     * The timestamp in epoch milliseconds, or {@link #INVALID} when it is missing or malformed.
+     */
+    public long toMillis(String timestamp) {
+        if (timestamp == null || timestamp.length() < MIN_LENGTH
+                || timestamp.charAt(4) != '-' || timestamp.charAt(7) != '-'
+                || (timestamp.charAt(10) != ' ' && timestamp.charAt(10) != ':')
+                || timestamp.charAt(13) != ':' || timestamp.charAt(16) != ':') {
+            return INVALID;
+        }
+
+        int year = digits(timestamp, 0, 4);
+        int month = digits(timestamp, 5, 2);
+        int day = digits(timestamp, 8, 2);
+        int hour = digits(timestamp, 11, 2);
+        int minutes = digits(timestamp, 14, 2);
+        int seconds = digits(timestamp, 17, 2);
+        int millis = fractionMillis(timestamp);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || hour > 23
+                || minutes < 0 || minutes > 59 || seconds < 0 || seconds > 59 || millis < 0) {
+            return INVALID;
+        }
+
+        long key = ((year * 100L + month) * 100L + day) * 100L + hour;
+        int index = (int) (key % CACHE_SIZE);
+        HourStart hourStart = hours[index];
+        if (hourStart == null || hourStart.key != key) {
+            hourStart = hourStart(key, year, month, day, hour);
+            if (hourStart == null) {
+                return INVALID;
+            }
+            hours[index] = hourStart;
+        }
+        return hourStart.millis + minutes * 60000L + seconds * 1000L + millis;
+    }
+
+    /**
+     * The start of the hour, or null when the day does not exist in its month.
+     */
+    private static HourStart hourStart(long key, int year, int month, int day, int hour) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month - 1, 1, hour, 0, 0);
+        if (day > calendar.getActualMaximum(Calendar.DAY_OF_MONTH)) {
+            return null;
+        }
+        calendar.set(Calendar.DAY_OF_MONTH, day);
+        return new HourStart(key, calendar.getTimeInMillis());
+    }
+
+    /**
+     * The milliseconds of the fraction after the seconds, 0 when there is none, or -1 when it is malformed.
+     */
+    private static int fractionMillis(String timestamp) {
+        int length = timestamp.length();
+        if (length == MIN_LENGTH) {
+            return 0;
+        }
+        if (timestamp.charAt(MIN_LENGTH) != '.' || length == FRACTION_OFFSET) {
+            return -1;
+        }
+
+        int fractionDigits = Math.min(3, length - FRACTION_OFFSET);
+        int millis = digits(timestamp, FRACTION_OFFSET, fractionDigits);
+        if (millis < 0 || !isDigits(timestamp, FRACTION_OFFSET + fractionDigits)) {
+            return -1;
+        }
+        for (int i = fractionDigits; i < 3; i++) {
+            millis *= 10;
+        }
+        return millis;
+    }
+
+    private static int digits(String value, int offset, int length) {
+        int result = 0;
+
+        for (int i = offset; i < offset + length; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    private static boolean isDigits(String value, int offset) {
+        for (int i = offset; i < value.length(); i++) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class HourStart {
+        private final long key;
+        private final long millis;
+
+        private HourStart(long key, long millis) {
+            this.key = key;
+            this.millis = millis;
+        }
+    }
+}
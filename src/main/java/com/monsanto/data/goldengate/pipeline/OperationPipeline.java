@@ -0,0 +1,487 @@
+package com.monsanto.data.goldengate.pipeline;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.goldengate.atg.datasource.DsConfiguration;
+import com.goldengate.atg.datasource.DsOperation;
+import com.goldengate.atg.datasource.DsTransaction;
+import com.goldengate.atg.datasource.adapt.Op;
+import com.goldengate.atg.datasource.adapt.Tx;
+import com.goldengate.atg.datasource.meta.DsMetaData;
+import com.google.common.base.Optional;
+import com.monsanto.data.goldengate.MessageEncoder;
+import com.monsanto.data.goldengate.MessageProducer;
+import com.monsanto.data.goldengate.SendCallback;
+import com.monsanto.data.goldengate.TxFactory;
+import com.monsanto.data.goldengate.config.PipelineConfiguration;
+import com.monsanto.data.goldengate.metrics.OperationTrace;
+import com.monsanto.data.goldengate.metrics.OperationTracer;
+import com.monsanto.data.goldengate.metrics.ReplicationLag;
+import com.monsanto.data.goldengate.metrics.TableMetrics;
+import com.monsanto.data.goldengate.table.TableDescriptor;
+import com.monsanto.data.goldengate.table.TableDescriptorCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decouples the GoldenGate callback thread from encoding and sending.
+ *
+ * The callback thread publishes each operation into the next slot of a preallocated ring.
+ * Encoder threads own every n-th sequence and encode their slots in parallel, each with its
+ * own MessageEncoder. A single sequencer thread hands encoded slots to the MessageProducer
+ * strictly in publish order and then frees them for reuse.
+ *
+ * A thread with nothing to do spins, then yields, then parks until the thread it waits on signals
+ * progress. A failure of any stage, Error included, fails the pipeline and is rethrown to the
+ * publishing thread.
+ *
+ * Publishing and draining must only be done from one thread. The producer is only called
+ * by the sequencer, so callers may use it again once {@link #awaitDrained()} returns.
+ */
+public class OperationPipeline {
+    private static final Logger log = LoggerFactory.getLogger(OperationPipeline.class);
+
+    private static final int FREE = 0;
+    private static final int CAPTURED = 1;
+    private static final int ENCODED = 2;
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 200;
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long JOIN_TIMEOUT_MILLIS = 5000L;
+
+    private final Slot[] ring;
+    private final int mask;
+    private volatile List<MessageEncoder> encoders;
+    private final MessageProducer messageProducer;
+    private final TableDescriptorCache tableDescriptors;
+    private final TxFactory txFactory;
+    private final ReplicationLag replicationLag;
+    private final TableMetrics tableMetrics;
+    private final OperationTracer operationTracer;
+    private final Timer encodingTimer;
+    private final Timer sendingTimer;
+    private final Meter processingErrorMeter;
+    private final Thread[] encoderThreads;
+    private final Thread sequencerThread;
+    private final Waiter[] encoderWaiters;
+    private final Waiter sequencerWaiter = new Waiter();
+    private final Waiter publisherWaiter = new Waiter();
+
+    private final AtomicLong sentSequence = new AtomicLong(-1);
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    private volatile boolean running = true;
+    private long nextSequence = 0;
+
+    public OperationPipeline(PipelineConfiguration configuration, List<MessageEncoder> encoders, MessageProducer messageProducer,
+                             TableDescriptorCache tableDescriptors, TxFactory txFactory, MetricRegistry metrics,
+                             ReplicationLag replicationLag, TableMetrics tableMetrics) {
+        this(configuration, encoders, messageProducer, tableDescriptors, txFactory, metrics, replicationLag, tableMetrics,
+                Optional.<OperationTracer>absent());
+    }
+
+    public OperationPipeline(PipelineConfiguration configuration, List<MessageEncoder> encoders, MessageProducer messageProducer,
+                             TableDescriptorCache tableDescriptors, TxFactory txFactory, MetricRegistry metrics,
+                             ReplicationLag replicationLag, TableMetrics tableMetrics, Optional<OperationTracer> operationTracer) {
+        checkEncoderCount(encoders, configuration.getEncoderThreads());
+
+        this.ring = new Slot[configuration.getRingSize()];
+        this.mask = ring.length - 1;
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = new Slot();
+        }
+
+        this.encoders = encoders;
+        this.messageProducer = messageProducer;
+        this.tableDescriptors = tableDescriptors;
+        this.txFactory = txFactory;
+        this.replicationLag = replicationLag;
+        this.tableMetrics = tableMetrics;
+        this.operationTracer = operationTracer.orNull();
+        this.encodingTimer = metrics.timer("encodingTime");
+        this.sendingTimer = metrics.timer("sendingTime");
+        this.processingErrorMeter = metrics.meter("processingErrors");
+
+        this.encoderThreads = new Thread[encoders.size()];
+        this.encoderWaiters = new Waiter[encoders.size()];
+        for (int i = 0; i < encoderThreads.length; i++) {
+            encoderWaiters[i] = new Waiter();
+            encoderThreads[i] = new Thread(new EncoderWorker(i), "gg-kafka-encoder-" + i);
+            encoderThreads[i].setDaemon(true);
+        }
+        this.sequencerThread = new Thread(new Sequencer(), "gg-kafka-sequencer");
+        this.sequencerThread.setDaemon(true);
+    }
+
+    public void start() {
+        log.info("Starting operation pipeline: ringSize=" + ring.length + ", encoderThreads=" + encoderThreads.length);
+        for (Thread encoderThread : encoderThreads) {
+            encoderThread.start();
+        }
+        sequencerThread.start();
+    }
+
+    public void publish(DsTransaction transaction, DsOperation operation, DsMetaData metaData, DsConfiguration config) {
+        throwIfFailed();
+        Slot slot = claimNextSlot();
+        slot.transaction = transaction;
+        slot.operation = operation;
+        slot.descriptor = tableDescriptors.descriptorFor(operation.getTableName());
+        slot.metaData = metaData;
+        slot.config = config;
+        slot.receivedNanos = operationTracer == null ? 0 : System.nanoTime();
+        slot.state = CAPTURED;
+        encoderWaiters[(int) (slot.sequence % encoderWaiters.length)].signal();
+    }
+
+    public void publish(Tx tx, Op op) {
+        throwIfFailed();
+
+        Slot slot = claimNextSlot();
+        slot.tx = tx;
+        slot.op = op;
+        slot.receivedNanos = operationTracer == null ? 0 : System.nanoTime();
+        slot.state = CAPTURED;
+        encoderWaiters[(int) (slot.sequence % encoderWaiters.length)].signal();
+    }
+
+    /**
+     * Waits until everything published so far has been handed to the producer, rethrowing
+     * the first encoding or sending failure.
+     */
+    public void awaitDrained() {
+        waitForSequencer();
+        throwIfFailed();
+    }
+
+    public void metaDataChanged(DsMetaData metaData) {
+        waitForSequencer();
+        for (MessageEncoder encoder : encoders) {
+            encoder.metaDataChanged(metaData);
+        }
+    }
+
+    /**
+     * Replaces the encoders, one per encoder thread, once everything published so far has been sent.
+     */
+    public void encodersChanged(List<MessageEncoder> encoders) {
+        checkEncoderCount(encoders, encoderThreads.length);
+        waitForSequencer();
+        this.encoders = encoders;
+    }
+
+    public void close() {
+        running = false;
+        sequencerWaiter.wake();
+        for (Waiter encoderWaiter : encoderWaiters) {
+            encoderWaiter.wake();
+        }
+        join(sequencerThread);
+        for (Thread encoderThread : encoderThreads) {
+            join(encoderThread);
+        }
+    }
+
+    private static void checkEncoderCount(List<MessageEncoder> encoders, int encoderThreads) {
+        if (encoders.size() != encoderThreads) {
+            throw new IllegalArgumentException("Expected " + encoderThreads + " encoders, got " + encoders.size());
+        }
+    }
+
+    private Slot claimNextSlot() {
+        long sequence = nextSequence;
+        Slot slot = ring[(int) (sequence & mask)];
+
+        int attempt = 0;
+        while (slot.state != FREE) {
+            checkRunning();
+            attempt = publisherWaiter.idle(attempt);
+        }
+        publisherWaiter.awake();
+
+        slot.sequence = sequence;
+        nextSequence = sequence + 1;
+        return slot;
+    }
+
+    private void waitForSequencer() {
+        long lastPublished = nextSequence - 1;
+
+        int attempt = 0;
+        while (sentSequence.get() < lastPublished) {
+            checkRunning();
+            attempt = publisherWaiter.idle(attempt);
+        }
+        publisherWaiter.awake();
+    }
+
+    private void throwIfFailed() {
+        RuntimeException pipelineFailure = failure.get();
+
+        if (pipelineFailure != null) {
+            throw pipelineFailure;
+        }
+    }
+
+    private void checkRunning() {
+        if (!running) {
+            throwIfFailed();
+            throw new IllegalStateException("Operation pipeline has been closed");
+        }
+    }
+
+    /**
+     * Fails the pipeline when one of its threads dies, so that the publishing thread stops waiting for it.
+     */
+    private void threadFailed(Throwable t) {
+        log.error("Operation pipeline thread " + Thread.currentThread().getName() + " failed", t);
+        failure.compareAndSet(null, asRuntimeException(t));
+        running = false;
+        publisherWaiter.wake();
+    }
+
+    private static RuntimeException asRuntimeException(Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        return new IllegalStateException("Operation pipeline failed: " + t, t);
+    }
+
+    private void join(Thread thread) {
+        try {
+            thread.join(JOIN_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Lets one thread wait for another. The waiting thread spins, then yields, then announces that it
+     * parks and checks its condition once more before parking, so a thread changing the condition after
+     * that check sees the announcement and unparks it. Parking is bounded, so a missed signal only delays.
+     */
+    private static final class Waiter {
+        private volatile Thread thread;
+        private volatile boolean parked;
+
+        private int idle(int attempt) {
+            if (attempt < SPIN_TRIES) {
+                // busy spin
+            } else if (attempt < YIELD_TRIES) {
+                Thread.yield();
+            } else if (!parked) {
+                thread = Thread.currentThread();
+                parked = true;
+            } else {
+                LockSupport.parkNanos(this, PARK_NANOS);
+            }
+            return attempt + 1;
+        }
+
+        /**
+         * Called by the waiting thread once its condition holds.
+         */
+        private int awake() {
+            if (parked) {
+                parked = false;
+            }
+            return 0;
+        }
+
+        /**
+         * Called after changing the condition the waiting thread may be parked on.
+         */
+        private void signal() {
+            if (parked) {
+                wake();
+            }
+        }
+
+        private void wake() {
+            Thread waiting = thread;
+            if (waiting != null) {
+                LockSupport.unpark(waiting);
+            }
+        }
+    }
+
+    private class EncoderWorker implements Runnable {
+        private final int workerIndex;
+
+        private EncoderWorker(int workerIndex) {
+            this.workerIndex = workerIndex;
+        }
+
+        @Override
+        public void run() {
+            try {
+                encodeSlots();
+            } catch (Throwable t) {
+                threadFailed(t);
+            }
+        }
+
+        private void encodeSlots() {
+            Waiter waiter = encoderWaiters[workerIndex];
+            long sequence = workerIndex;
+            int attempt = 0;
+
+            while (running) {
+                Slot slot = ring[(int) (sequence & mask)];
+
+                if (slot.state != CAPTURED || slot.sequence != sequence) {
+                    attempt = waiter.idle(attempt);
+                    continue;
+                }
+
+                attempt = waiter.awake();
+                encode(slot);
+                slot.state = ENCODED;
+                sequencerWaiter.signal();
+                sequence += encoderThreads.length;
+            }
+        }
+
+        private void encode(Slot slot) {
+            Timer.Context timer = encodingTimer.time();
+            MessageEncoder encoder = encoders.get(workerIndex);
+            OperationTrace trace = operationTracer == null ? null : operationTracer.start(slot.receivedNanos);
+
+            try {
+                if (slot.op == null) {
+                    slot.tx = txFactory.createAdapterTx(slot.transaction, slot.metaData, slot.config);
+                    slot.op = txFactory.createAdapterOp(slot.operation, slot.descriptor.getTableMetaData(), slot.config);
+                } else {
+                    slot.descriptor = tableDescriptors.descriptorFor(slot.op.getTableName());
+                }
+
+                slot.message = encoder.encode(slot.tx, slot.op);
+                if (slot.message == null) {
+                    return;
+                }
+
+                slot.key = encoder.encodeKey(slot.op);
+                slot.topic = slot.descriptor.getTopic();
+                slot.callback = replicationLag.callbackFor(slot.op);
+                tableMetrics.recordMessage(slot.op, slot.message);
+                if (trace != null) {
+                    trace.encoded(slot.op, slot.message);
+                    slot.callback = trace.callback(slot.callback);
+                    slot.trace = trace;
+                }
+            } catch (Throwable t) {
+                slot.failure = asRuntimeException(t);
+            } finally {
+                timer.stop();
+            }
+        }
+    }
+
+    private class Sequencer implements Runnable {
+        @Override
+        public void run() {
+            try {
+                sendSlots();
+            } catch (Throwable t) {
+                threadFailed(t);
+            }
+        }
+
+        private void sendSlots() {
+            long sequence = 0;
+            int attempt = 0;
+
+            while (running) {
+                Slot slot = ring[(int) (sequence & mask)];
+
+                if (slot.state != ENCODED || slot.sequence != sequence) {
+                    attempt = sequencerWaiter.idle(attempt);
+                    continue;
+                }
+
+                attempt = sequencerWaiter.awake();
+                if (failure.get() == null) {
+                    send(slot);
+                }
+
+                slot.clear();
+                slot.state = FREE;
+                sentSequence.set(sequence);
+                publisherWaiter.signal();
+                sequence++;
+            }
+        }
+
+        private void send(Slot slot) {
+            if (slot.failure != null) {
+                fail(slot, slot.failure);
+                return;
+            }
+            if (slot.message == null) {
+                return;
+            }
+
+            Timer.Context timer = sendingTimer.time();
+            try {
+                messageProducer.produce(slot.topic, slot.key, slot.message, slot.callback);
+                if (slot.trace != null) {
+                    slot.trace.sent();
+                }
+            } catch (Throwable t) {
+                fail(slot, asRuntimeException(t));
+            } finally {
+                timer.stop();
+            }
+        }
+
+        private void fail(Slot slot, RuntimeException re) {
+            processingErrorMeter.mark();
+            log.error("Error processing operation: " + slot.op, re);
+            failure.compareAndSet(null, re);
+        }
+    }
+
+    private static final class Slot {
+        private volatile int state = FREE;
+        private long sequence = -1;
+
+        private DsTransaction transaction;
+        private DsOperation operation;
+        private TableDescriptor descriptor;
+        private DsMetaData metaData;
+        private DsConfiguration config;
+        private Tx tx;
+        private Op op;
+
+        private String topic;
+        private SendCallback callback;
+        private OperationTrace trace;
+        private long receivedNanos;
+        private byte[] key;
+        private byte[] message;
+        private RuntimeException failure;
+
+        private void clear() {
+            transaction = null;
+            operation = null;
+            descriptor = null;
+            metaData = null;
+            config = null;
+            tx = null;
+            op = null;
+            topic = null;
+            callback = null;
+            trace = null;
+            key = null;
+            message = null;
+            failure = null;
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package com.monsanto.data.goldengate.spill;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of messages in memory-mapped segment files. One thread appends while another
+ * reads from the oldest message on; reads only become permanent with {@link #commit()}, which records
+ * the read position in the oldest segment's header and deletes the segments read completely, unmapping
+ * them first so their disk space is freed straight away rather than once the buffers are collected. After a
+ * restart reading resumes at the last committed position, so messages read but not committed are read
+ * again.
+ *
+ * Each segment starts with a magic number and the committed read offset, followed by records of
+ * body length, CRC32 of the body and the body: topic, key and value. The length is written last, and a
+ * zero length or a CRC mismatch ends the segment when it is reopened.
+ */
+class SpillLog implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(SpillLog.class);
+    private static final int MAGIC = 0x53504c31;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final String SUFFIX = ".spill";
+
+    private final File directory;
+    private final int segmentSize;
+    private final List<Segment> segments = new ArrayList<>();
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer body = ByteBuffer.allocate(4096);
+    private long nextSequence;
+
+    private int readSegment;
+    private int readOffset;
+    private int committedOffset;
+
+    SpillLog(File directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create spill directory " + directory);
+        }
+        open();
+    }
+
+    synchronized void append(String topic, byte[] key, byte[] value) throws IOException {
+        byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        int bodySize = 2 + topicBytes.length + 4 + length(key) + 4 + length(value);
+        int recordSize = RECORD_HEADER_SIZE + bodySize;
+
+        if (body.capacity() < bodySize) {
+            body = ByteBuffer.allocate(Math.max(bodySize, body.capacity() * 2));
+        }
+        body.clear();
+        body.putShort((short) topicBytes.length);
+        body.put(topicBytes);
+        putBytes(body, key);
+        putBytes(body, value);
+        body.flip();
+
+        Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (segment == null || segment.remaining() < recordSize) {
+            segment = createSegment(recordSize);
+        }
+
+        MappedByteBuffer buffer = segment.buffer;
+        int offset = segment.writeOffset;
+        buffer.position(offset + RECORD_HEADER_SIZE);
+        buffer.put(body);
+        buffer.putInt(offset + 4, checksum(body.array(), bodySize));
+        buffer.putInt(offset, bodySize);
+        segment.writeOffset = offset + recordSize;
+    }
+
+    /**
+     * The message after the last one read, or null when every appended message has been read.
+     */
+    synchronized SpilledMessage next() {
+        while (readSegment < segments.size()) {
+            Segment segment = segments.get(readSegment);
+
+            if (readOffset < segment.writeOffset) {
+                MappedByteBuffer buffer = segment.buffer;
+                int bodySize = buffer.getInt(readOffset);
+                buffer.position(readOffset + RECORD_HEADER_SIZE);
+                byte[] topic = new byte[buffer.getShort()];
+                buffer.get(topic);
+                byte[] key = getBytes(buffer);
+                byte[] value = getBytes(buffer);
+
+                readOffset += RECORD_HEADER_SIZE + bodySize;
+                return new SpilledMessage(new String(topic, StandardCharsets.UTF_8), key, value);
+            }
+            if (readSegment == segments.size() - 1) {
+                return null;
+            }
+            readSegment++;
+            readOffset = HEADER_SIZE;
+        }
+        return null;
+    }
+
+    /**
+     * Makes the reads so far permanent.
+     */
+    synchronized void commit() {
+        for (int i = 0; i < readSegment; i++) {
+            delete(segments.remove(0));
+        }
+        readSegment = 0;
+        committedOffset = readOffset;
+
+        if (!segments.isEmpty()) {
+            segments.get(0).buffer.putInt(4, committedOffset);
+        }
+    }
+
+    /**
+     * Moves reading back to the last committed position.
+     */
+    synchronized void rewind() {
+        readSegment = 0;
+        readOffset = committedOffset;
+    }
+
+    /**
+     * True when every appended message has been read and committed.
+     */
+    synchronized boolean isEmpty() {
+        return segments.isEmpty() || (segments.size() == 1 && committedOffset == segments.get(0).writeOffset);
+    }
+
+    /**
+     * Bytes of messages appended but not yet committed.
+     */
+    synchronized long pendingBytes() {
+        long pending = 0;
+        for (Segment segment : segments) {
+            pending += segment.writeOffset - HEADER_SIZE;
+        }
+        return segments.isEmpty() ? 0 : pending - (committedOffset - HEADER_SIZE);
+    }
+
+    /**
+     * Writes appended messages and the committed position through to the disk.
+     */
+    synchronized void force() {
+        for (Segment segment : segments) {
+            segment.buffer.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        force();
+        for (Segment segment : segments) {
+            unmap(segment);
+            segment.channel.close();
+        }
+        segments.clear();
+    }
+
+    private void open() throws IOException {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(SUFFIX);
+            }
+        });
+        Arrays.sort(files);
+
+        for (File file : files) {
+            long sequence = Long.parseLong(file.getName().substring(0, file.getName().length() - SUFFIX.length()));
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            FileChannel channel = randomAccessFile.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, randomAccessFile.length());
+
+            if (buffer.getInt(0) != MAGIC) {
+                channel.close();
+                throw new IOException("Not a spill segment: " + file);
+            }
+            Segment segment = new Segment(file, channel, buffer);
+            segment.writeOffset = recoverWriteOffset(segment);
+            segments.add(segment);
+            nextSequence = sequence + 1;
+        }
+
+        committedOffset = segments.isEmpty() ? HEADER_SIZE : segments.get(0).buffer.getInt(4);
+        readOffset = committedOffset;
+        if (!segments.isEmpty()) {
+            log.info("Opened " + segments.size() + " spill segments in " + directory + " holding " + pendingBytes() + " bytes to send");
+        }
+    }
+
+    private int recoverWriteOffset(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        int offset = HEADER_SIZE;
+
+        while (offset + RECORD_HEADER_SIZE <= buffer.capacity()) {
+            int bodySize = buffer.getInt(offset);
+            if (bodySize <= 0 || offset + RECORD_HEADER_SIZE + bodySize > buffer.capacity()) {
+                break;
+            }
+            byte[] recordBody = new byte[bodySize];
+            buffer.position(offset + RECORD_HEADER_SIZE);
+            buffer.get(recordBody);
+            if (buffer.getInt(offset + 4) != checksum(recordBody, bodySize)) {
+                log.warn("Spill segment " + segment.file + " has a torn record at offset " + offset + "; ignoring the rest of it");
+                break;
+            }
+            offset += RECORD_HEADER_SIZE + bodySize;
+        }
+        return offset;
+    }
+
+    private Segment createSegment(int recordSize) throws IOException {
+        File file = new File(directory, String.format("%020d", nextSequence++) + SUFFIX);
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.setLength(Math.max(segmentSize, HEADER_SIZE + recordSize));
+        FileChannel channel = randomAccessFile.getChannel();
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, randomAccessFile.length());
+
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, HEADER_SIZE);
+        Segment segment = new Segment(file, channel, buffer);
+        segment.writeOffset = HEADER_SIZE;
+        segments.add(segment);
+
+        if (segments.size() == 1) {
+            readSegment = 0;
+            readOffset = HEADER_SIZE;
+            committedOffset = HEADER_SIZE;
+        }
+        return segment;
+    }
+
+    private void delete(Segment segment) {
+        unmap(segment);
+        try {
+            segment.channel.close();
+        } catch (IOException e) {
+            log.warn("Error closing spill segment " + segment.file, e);
+        }
+        if (!segment.file.delete()) {
+            log.warn("Unable to delete drained spill segment " + segment.file);
+        }
+    }
+
+    /**
+     * Releases the segment's mapping through the buffer's cleaner, which Java 7 and 8 only expose
+     * internally. Where it is not reachable the mapping stays until the buffer is garbage collected.
+     */
+    private static void unmap(Segment segment) {
+        try {
+            Method cleanerMethod = segment.buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(segment.buffer);
+            if (cleaner != null) {
+                Method clean = cleaner.getClass().getMethod("clean");
+                clean.setAccessible(true);
+                clean.invoke(cleaner);
+            }
+        } catch (Exception e) {
+            log.debug("Unable to unmap spill segment " + segment.file + "; leaving it to the garbage collector", e);
+        }
+    }
+
+    private int checksum(byte[] bytes, int length) {
+        crc.reset();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    private static byte[] getBytes(MappedByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static final class Segment {
+        private final File file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int writeOffset;
+
+        private Segment(File file, FileChannel channel, MappedByteBuffer buffer) {
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        private int remaining() {
+            return buffer.capacity() - writeOffset;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.monsanto.data.goldengate.spill;
+
+/**
+ * A message waiting in the spill log to be sent.
+ */
+class SpilledMessage {
+    final String topic;
+    final byte[] key;
+    final byte[] value;
+
+    SpilledMessage(String topic, byte[] key, byte[] value) {
+        this.topic = topic;
+        this.key = key;
+        this.value = value;
+    }
+}
@@ -0,0 +1,367 @@
+package com.monsanto.data.goldengate.spill;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
+import com.monsanto.data.goldengate.MessageProducer;
+import com.monsanto.data.goldengate.SendCallback;
+import com.monsanto.data.goldengate.config.SpillConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Keeps replication going while Kafka is slow or unavailable. Messages go straight to the wrapped
+ * producer until a send or flush fails; from then on they are appended to a {@link SpillLog} on local
+ * disk, and {@link #flush()} only forces the log to disk. A drainer thread replays the log to the
+ * wrapped producer in order, retrying after a backoff, and sending switches back to the producer once
+ * the log is empty. Messages left in the log when the handler stops are sent after the next start.
+ *
+ * Delivery is at least once: messages that were in flight when a send failed are spilled again, and
+ * messages replayed before a crash may be replayed once more. Acknowledgement callbacks are not called
+ * for spilled messages.
+ *
+ * When sends are only acknowledged asynchronously, messages are retained in memory from their send
+ * until their acknowledgement, so they can be spilled if the send fails. Once the retained messages
+ * take the maximum retained bytes, Kafka is treated as unavailable: the retained messages are spilled
+ * ahead of further messages, so they keep their order if their sends fail, and may be sent twice
+ * if they succeed. No messages are retained while spilling. Like the producers it wraps, an instance
+ * must only be used by one thread at a time apart from the drainer.
+ */
+public class SpillingMessageProducer implements MessageProducer {
+    private static final Logger log = LoggerFactory.getLogger(SpillingMessageProducer.class);
+    private static final int DRAIN_BATCH = 1000;
+
+    private final MessageProducer producer;
+    private final SpillLog spillLog;
+    private final long retryBackoffMillis;
+    private final boolean retainUnacknowledged;
+    private final long maxRetainedBytes;
+    private final Set<Retained> unacknowledged = new LinkedHashSet<>();
+    private final Object lock = new Object();
+    private final Meter spilledMeter = new Meter();
+    private final Meter drainedMeter = new Meter();
+
+    private long retainedBytes;
+    private volatile boolean spilling;
+    private volatile boolean running;
+    private Thread drainer;
+
+    /**
+     * @param retainUnacknowledged true when the producer acknowledges sends only at flush, so messages
+     *                             sent since the last flush must be spilled too when it fails
+     */
+    public SpillingMessageProducer(MessageProducer producer, SpillConfiguration configuration, boolean retainUnacknowledged) {
+        this(producer, openSpillLog(configuration), configuration.getRetryBackoffMillis(), retainUnacknowledged,
+                configuration.getMaxRetainedBytes());
+    }
+
+    @VisibleForTesting
+    SpillingMessageProducer(MessageProducer producer, SpillLog spillLog, long retryBackoffMillis, boolean retainUnacknowledged,
+                            long maxRetainedBytes) {
+        this.producer = producer;
+        this.spillLog = spillLog;
+        this.retryBackoffMillis = retryBackoffMillis;
+        this.retainUnacknowledged = retainUnacknowledged;
+        this.maxRetainedBytes = maxRetainedBytes;
+        this.spilling = !spillLog.isEmpty();
+    }
+
+    public void start() {
+        running = true;
+        drainer = new Thread(new Drainer(), "spill-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    @Override
+    public void produce(String topic, byte[] key, byte[] bytes) {
+        produce(topic, key, bytes, null);
+    }
+
+    @Override
+    public void produce(String topic, byte[] key, byte[] bytes, SendCallback callback) {
+        while (true) {
+            if (!spilling && retainUnacknowledged) {
+                Retained retained = retain(topic, key, bytes, callback);
+                if (retained != null) {
+                    try {
+                        producer.produce(topic, key, bytes, retained);
+                        return;
+                    } catch (RuntimeException re) {
+                        startSpilling(re);
+                    }
+                }
+            } else if (!spilling) {
+                try {
+                    producer.produce(topic, key, bytes, callback);
+                    return;
+                } catch (RuntimeException re) {
+                    startSpilling(re);
+                }
+            }
+            if (spill(topic, key, bytes)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (!spilling) {
+            try {
+                producer.flush();
+                releaseRetained();
+                return;
+            } catch (RuntimeException re) {
+                startSpilling(re);
+            }
+        }
+        synchronized (lock) {
+            spillLog.force();
+        }
+    }
+
+    @Override
+    public void terminate() {
+        running = false;
+        if (drainer != null) {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+            try {
+                drainer.join(retryBackoffMillis + 30000L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        try {
+            spillLog.close();
+        } catch (IOException e) {
+            log.error("Error closing spill log", e);
+        }
+        producer.terminate();
+    }
+
+    @Override
+    public void registerMetrics(MetricRegistry metrics) {
+        producer.registerMetrics(metrics);
+        registerIfAbsent(metrics, "spill.spilledMessages", spilledMeter);
+        registerIfAbsent(metrics, "spill.drainedMessages", drainedMeter);
+        registerIfAbsent(metrics, "spill.pendingBytes", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return spillLog.pendingBytes();
+            }
+        });
+        registerIfAbsent(metrics, "spill.retainedBytes", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return getRetainedBytes();
+            }
+        });
+    }
+
+    @VisibleForTesting
+    long getRetainedBytes() {
+        synchronized (lock) {
+            return retainedBytes;
+        }
+    }
+
+    @VisibleForTesting
+    boolean isSpilling() {
+        return spilling;
+    }
+
+    /**
+     * Sends one batch of spilled messages and commits it once the producer has acknowledged it;
+     * returns false when nothing was left to send.
+     */
+    @VisibleForTesting
+    boolean drainBatch() {
+        synchronized (lock) {
+            if (spillLog.isEmpty()) {
+                if (spilling) {
+                    log.info("Spill log drained; sending directly to Kafka again");
+                    spilling = false;
+                }
+                return false;
+            }
+        }
+
+        try {
+            int sent = 0;
+            SpilledMessage message;
+            while (sent < DRAIN_BATCH && (message = spillLog.next()) != null) {
+                producer.produce(message.topic, message.key, message.value, null);
+                sent++;
+            }
+            producer.flush();
+            spillLog.commit();
+            drainedMeter.mark(sent);
+            releaseRetained();
+        } catch (RuntimeException re) {
+            synchronized (lock) {
+                spillLog.rewind();
+            }
+            throw re;
+        }
+        return true;
+    }
+
+    private void startSpilling(RuntimeException cause) {
+        synchronized (lock) {
+            log.warn("Unable to send to Kafka; spilling messages to " + spillLog + " until it recovers", cause);
+            spillRetained();
+            spilling = true;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Retains a message about to be sent, or returns null after spilling the retained messages when
+     * they already take the maximum bytes, so the message is spilled behind them.
+     */
+    private Retained retain(String topic, byte[] key, byte[] bytes, SendCallback callback) {
+        Retained retained = new Retained(new SpilledMessage(topic, key, bytes), callback);
+
+        synchronized (lock) {
+            if (!unacknowledged.isEmpty() && retainedBytes + retained.size > maxRetainedBytes) {
+                log.warn(retainedBytes + " bytes sent to Kafka are not acknowledged yet; spilling messages to " + spillLog
+                        + " until it catches up");
+                spillRetained();
+                spilling = true;
+                lock.notifyAll();
+                return null;
+            }
+            unacknowledged.add(retained);
+            retainedBytes += retained.size;
+        }
+        return retained;
+    }
+
+    /**
+     * Appends the retained messages to the spill log in the order they were sent. Must hold the lock.
+     */
+    private void spillRetained() {
+        for (Retained retained : unacknowledged) {
+            append(retained.message.topic, retained.message.key, retained.message.value);
+        }
+        unacknowledged.clear();
+        retainedBytes = 0;
+    }
+
+    private void releaseRetained() {
+        synchronized (lock) {
+            unacknowledged.clear();
+            retainedBytes = 0;
+        }
+    }
+
+    private void acknowledged(Retained retained) {
+        synchronized (lock) {
+            if (unacknowledged.remove(retained)) {
+                retainedBytes -= retained.size;
+            }
+        }
+    }
+
+    private boolean spill(String topic, byte[] key, byte[] bytes) {
+        synchronized (lock) {
+            if (!spilling) {
+                return false;
+            }
+            append(topic, key, bytes);
+            return true;
+        }
+    }
+
+    private void append(String topic, byte[] key, byte[] bytes) {
+        try {
+            spillLog.append(topic, key, bytes);
+            spilledMeter.mark();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to spill message for topic " + topic, e);
+        }
+    }
+
+    private static void registerIfAbsent(MetricRegistry metrics, String name, Metric metric) {
+        if (!metrics.getMetrics().containsKey(name)) {
+            metrics.register(name, metric);
+        }
+    }
+
+    private static SpillLog openSpillLog(SpillConfiguration configuration) {
+        try {
+            return new SpillLog(new File(configuration.getDirectory()), configuration.getSegmentSize());
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to open spill log in " + configuration.getDirectory(), e);
+        }
+    }
+
+    private final class Retained implements SendCallback {
+        private final SpilledMessage message;
+        private final SendCallback callback;
+        private final long size;
+
+        private Retained(SpilledMessage message, SendCallback callback) {
+            this.message = message;
+            this.callback = callback;
+            this.size = message.value.length + (message.key == null ? 0 : message.key.length);
+        }
+
+        @Override
+        public void onAcknowledged() {
+            acknowledged(this);
+            if (callback != null) {
+                callback.onAcknowledged();
+            }
+        }
+    }
+
+    private class Drainer implements Runnable {
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    if (!drainBatch()) {
+                        awaitSpilling();
+                    }
+                } catch (RuntimeException re) {
+                    log.warn("Unable to replay spilled messages; retrying in " + retryBackoffMillis + "ms", re);
+                    pause(retryBackoffMillis);
+                }
+            }
+        }
+
+        private void awaitSpilling() {
+            synchronized (lock) {
+                while (running && !spilling) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        private void pause(long millis) {
+            synchronized (lock) {
+                try {
+                    lock.wait(millis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.monsanto.data.goldengate.table;
+
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.goldengate.atg.datasource.DsToken;
+import com.goldengate.atg.datasource.meta.TableMetaData;
+import com.goldengate.atg.datasource.meta.TableName;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.monsanto.data.goldengate.config.TableConfiguration;
+import com.monsanto.data.goldengate.encoder.EncoderType;
+import com.monsanto.data.goldengate.encoder.exception.UnableToEncodeMessageException;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything the hot path needs to know about one table, resolved once from its configuration
+ * and metadata: the table configuration, topic, encoder type, column names (also pre-encoded for the
+ * JSON encoders) and value types, written and key column positions and the configured tokens.
+ * Descriptors are immutable apart from the remembered spelling of token names, and are replaced
+ * wholesale when the metadata changes.
+ */
+public class TableDescriptor {
+    private final TableName tableName;
+    private final Optional<TableConfiguration> configuration;
+    private final boolean replicated;
+    private final String topic;
+    private final EncoderType encoderType;
+    private final TableMetaData tableMetaData;
+    private final List<String> columnNames;
+    private final SerializableString[] serializedColumnNames;
+    private final boolean[] primaryKey;
+    private final boolean[] writtenColumns;
+    private final boolean compactUpdates;
+    private final ValueType[] valueTypes;
+    private final int[] keyColumns;
+    private final String keyColumnsError;
+    private final List<String> tokenNames;
+    private final String[] tokenKeys;
+
+    TableDescriptor(TableName tableName, Optional<TableConfiguration> configuration, boolean replicated, String topic,
+                    EncoderType encoderType, TableMetaData tableMetaData,
+                    List<String> columnNames, boolean[] primaryKey, boolean[] writtenColumns, ValueType[] valueTypes,
+                    int[] keyColumns, String keyColumnsError, List<String> tokenNames) {
+        this.tableName = tableName;
+        this.configuration = configuration;
+        this.replicated = replicated;
+        this.topic = topic;
+        this.encoderType = encoderType;
+        this.tableMetaData = tableMetaData;
+        this.columnNames = ImmutableList.copyOf(columnNames);
+        this.serializedColumnNames = new SerializableString[columnNames.size()];
+        for (int i = 0; i < serializedColumnNames.length; i++) {
+            serializedColumnNames[i] = new SerializedString(columnNames.get(i));
+        }
+        this.primaryKey = primaryKey;
+        this.writtenColumns = writtenColumns;
+        this.compactUpdates = configuration.isPresent() && configuration.get().isCompactUpdates();
+        this.valueTypes = valueTypes;
+        this.keyColumns = keyColumns;
+        this.keyColumnsError = keyColumnsError;
+        this.tokenNames = ImmutableList.copyOf(tokenNames);
+        this.tokenKeys = tokenNames.toArray(new String[tokenNames.size()]);
+    }
+
+    public TableName getTableName() {
+        return tableName;
+    }
+
+    public Optional<TableConfiguration> getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * False when the table is filtered out and its operations are dropped unseen.
+     */
+    public boolean isReplicated() {
+        return replicated;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public EncoderType getEncoderType() {
+        return encoderType;
+    }
+
+    /**
+     * The GoldenGate metadata of the table, or null when none was available.
+     */
+    public TableMetaData getTableMetaData() {
+        return tableMetaData;
+    }
+
+    public boolean hasMetaData() {
+        return tableMetaData != null;
+    }
+
+    /**
+     * Column names in metadata order, which is also the order in which an Op iterates its columns.
+     */
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    /**
+     * The name of the column at the given position, pre-encoded for Jackson generators; null when
+     * the table has no metadata for that position.
+     */
+    public SerializableString getSerializedColumnName(int position) {
+        return position < serializedColumnNames.length ? serializedColumnNames[position] : null;
+    }
+
+    /**
+     * True when the column at the given position is part of the table's primary key.
+     */
+    public boolean isPrimaryKeyColumn(int position) {
+        return position < primaryKey.length && primaryKey[position];
+    }
+
+    /**
+     * True when some columns of the table are left out of its messages.
+     */
+    public boolean isProjected() {
+        return writtenColumns != null;
+    }
+
+    /**
+     * True when the column at the given position is written to the table's messages.
+     */
+    public boolean isWrittenColumn(int position) {
+        return writtenColumns == null || position < writtenColumns.length && writtenColumns[position];
+    }
+
+    /**
+     * True when updates of the table are written with their primary key and changed columns only.
+     */
+    public boolean isCompactUpdates() {
+        return compactUpdates;
+    }
+
+    /**
+     * True when column values of the table are written with the type of their column.
+     */
+    public boolean isTypedValues() {
+        return valueTypes != null;
+    }
+
+    /**
+     * How values of the column at the given position are written when typed values are enabled.
+     */
+    public ValueType getValueType(int position) {
+        return valueTypes == null || position >= valueTypes.length ? ValueType.STRING : valueTypes[position];
+    }
+
+    /**
+     * Ascending positions of the columns that make up the record key; empty when the table is not keyed.
+     */
+    public int[] getKeyColumns() {
+        if (keyColumnsError != null) {
+            throw new UnableToEncodeMessageException(keyColumnsError, null);
+        }
+        return keyColumns;
+    }
+
+    /**
+     * Upper-cased names of the tokens configured for the table, in configuration order.
+     */
+    public List<String> getTokenNames() {
+        return tokenNames;
+    }
+
+    /**
+     * Reads the value of the {@code index}-th configured token from the tokens of an operation;
+     * null when the token is missing or unset. Token names match case-insensitively, and the
+     * spelling found in the trail is remembered so later operations take a single map lookup.
+     */
+    public String readToken(Map<String, DsToken> tokens, int index) {
+        DsToken token = tokens.get(tokenKeys[index]);
+
+        if (token == null) {
+            token = findToken(tokens, index);
+        }
+        return token == null || !token.isSet() ? null : token.toString();
+    }
+
+    private DsToken findToken(Map<String, DsToken> tokens, int index) {
+        for (Map.Entry<String, DsToken> entry : tokens.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(tokenNames.get(index))) {
+                tokenKeys[index] = entry.getKey();
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return tableName.getSchemaName() + "." + tableName.getShortName();
+    }
+}
@@ -0,0 +1,288 @@
+package com.monsanto.data.goldengate.table;
+
+import com.goldengate.atg.datasource.meta.ColumnMetaData;
+import com.goldengate.atg.datasource.meta.DsMetaData;
+import com.goldengate.atg.datasource.meta.TableMetaData;
+import com.goldengate.atg.datasource.meta.TableName;
+import com.google.common.base.Optional;
+import com.monsanto.data.goldengate.config.Conf;
+import com.monsanto.data.goldengate.config.TableConfiguration;
+import com.monsanto.data.goldengate.encoder.EncoderType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Builds a {@link TableDescriptor} the first time a table is seen and serves later lookups
+ * from an identity-keyed snapshot of the TableName instances it was built for, falling back
+ * to an equality lookup for other instances naming the same table. All descriptors are
+ * dropped when the metadata changes; when the configuration is reloaded only those of tables whose
+ * configuration changed are. Safe for use by several threads.
+ */
+public class TableDescriptorCache {
+    private static final Logger log = LoggerFactory.getLogger(TableDescriptorCache.class);
+    private static final int[] NO_KEY_COLUMNS = new int[0];
+
+    private volatile Conf configuration;
+    private final ConcurrentMap<TableName, TableDescriptor> descriptorsByTable = new ConcurrentHashMap<>();
+    private volatile Map<TableName, TableDescriptor> descriptorsByIdentity = Collections.emptyMap();
+    private DsMetaData metaData;
+
+    public TableDescriptorCache(Conf configuration) {
+        this.configuration = configuration;
+    }
+
+    public TableDescriptor descriptorFor(TableName tableName) {
+        TableDescriptor descriptor = descriptorsByIdentity.get(tableName);
+
+        if (descriptor == null) {
+            descriptor = descriptorsByTable.get(tableName);
+        }
+        if (descriptor == null) {
+            descriptor = createDescriptor(tableName);
+        }
+        return descriptor;
+    }
+
+    public synchronized void metaDataChanged(DsMetaData metaData) {
+        this.metaData = metaData;
+        descriptorsByTable.clear();
+        descriptorsByIdentity = Collections.emptyMap();
+    }
+
+    /**
+     * Switches to the reloaded configuration, dropping the descriptors of tables it configures
+     * differently so that they are rebuilt on next use. Returns the number dropped.
+     */
+    public synchronized int reconfigure(Conf configuration) {
+        Conf previous = this.configuration;
+        this.configuration = configuration;
+        boolean allTables = !previous.encoderType().equals(configuration.encoderType())
+                || previous.isTypedValues() != configuration.isTypedValues();
+
+        List<TableDescriptor> dropped = new ArrayList<>();
+        for (Iterator<TableDescriptor> descriptors = descriptorsByTable.values().iterator(); descriptors.hasNext(); ) {
+            TableDescriptor descriptor = descriptors.next();
+            if (allTables || isReconfigured(descriptor)) {
+                descriptors.remove();
+                dropped.add(descriptor);
+            }
+        }
+
+        if (!dropped.isEmpty()) {
+            Map<TableName, TableDescriptor> byIdentity = new IdentityHashMap<>(descriptorsByIdentity);
+            byIdentity.values().removeAll(dropped);
+            descriptorsByIdentity = byIdentity;
+        }
+        return dropped.size();
+    }
+
+    private boolean isReconfigured(TableDescriptor descriptor) {
+        TableName tableName = descriptor.getTableName();
+        if (configuration.filter().isReplicated(tableName.getSchemaName(), tableName.getShortName()) != descriptor.isReplicated()) {
+            return true;
+        }
+        return descriptor.isReplicated()
+                && !descriptor.getConfiguration().equals(configuration.getTableConfiguration(tableName.getSchemaName(), tableName.getShortName()));
+    }
+
+    private synchronized TableDescriptor createDescriptor(TableName tableName) {
+        TableDescriptor descriptor = descriptorsByTable.get(tableName);
+
+        if (descriptor == null) {
+            descriptor = buildDescriptor(tableName);
+            descriptorsByTable.put(tableName, descriptor);
+
+            Map<TableName, TableDescriptor> byIdentity = new IdentityHashMap<>(descriptorsByIdentity);
+            byIdentity.put(tableName, descriptor);
+            descriptorsByIdentity = byIdentity;
+        }
+        return descriptor;
+    }
+
+    private TableDescriptor buildDescriptor(TableName tableName) {
+        if (!configuration.filter().isReplicated(tableName.getSchemaName(), tableName.getShortName())) {
+            log.info("Filtering out operations on table " + tableName.getSchemaName() + "." + tableName.getShortName());
+            return new TableDescriptor(tableName, Optional.<TableConfiguration>absent(), false, null, configuration.encoderType(), null,
+                    Collections.<String>emptyList(), new boolean[0], null, null, NO_KEY_COLUMNS, null, Collections.<String>emptyList());
+        }
+
+        Optional<TableConfiguration> tableConfiguration = configuration.getTableConfiguration(tableName.getSchemaName(), tableName.getShortName());
+        TableMetaData tableMetaData = metaData == null ? null : metaData.getTableMetaData(tableName);
+
+        List<String> columnNames = new ArrayList<>();
+        List<Boolean> primaryKey = new ArrayList<>();
+        ValueType[] valueTypes = null;
+        if (tableMetaData != null) {
+            if (configuration.isTypedValues()) {
+                valueTypes = new ValueType[tableMetaData.getNumColumns()];
+            }
+            for (int i = 0; i < tableMetaData.getNumColumns(); i++) {
+                ColumnMetaData columnMetaData = tableMetaData.getColumnMetaData(i);
+                columnNames.add(columnMetaData.getColumnName());
+                primaryKey.add(columnMetaData.isKeyCol());
+                if (valueTypes != null) {
+                    valueTypes[i] = ValueType.of(columnMetaData);
+                }
+            }
+        }
+
+        String topic = resolveTopic(tableConfiguration);
+        List<String> tokenNames = new ArrayList<>();
+        if (tableConfiguration.isPresent()) {
+            for (String tokenName : tableConfiguration.get().getTokenNames()) {
+                tokenNames.add(tokenName.toUpperCase());
+            }
+        }
+
+        int[] keyColumns = NO_KEY_COLUMNS;
+        String keyColumnsError = null;
+        Optional<List<String>> keyColumnNames = resolveKeyColumnNames(tableConfiguration);
+        if (keyColumnNames.isPresent() && tableMetaData == null) {
+            log.warn("No metadata for table " + tableName + "; records will not be keyed");
+        } else if (keyColumnNames.isPresent()) {
+            List<Integer> positions = new ArrayList<>();
+            keyColumnsError = resolveKeyColumns(tableName, keyColumnNames.get(), columnNames, primaryKey, positions);
+
+            keyColumns = new int[positions.size()];
+            for (int i = 0; i < keyColumns.length; i++) {
+                keyColumns[i] = positions.get(i);
+            }
+            if (keyColumnsError == null) {
+                log.info("Resolved key columns for table " + tableName + ": " + positions);
+            }
+        }
+
+        boolean[] writtenColumns = resolveWrittenColumns(tableName, tableConfiguration, tableMetaData, columnNames);
+
+        log.info("Routing table " + tableName.getSchemaName() + "." + tableName.getShortName() + " to topic " + topic);
+        boolean[] primaryKeyMask = new boolean[primaryKey.size()];
+        for (int i = 0; i < primaryKeyMask.length; i++) {
+            primaryKeyMask[i] = primaryKey.get(i);
+        }
+
+        EncoderType encoderType = configuration.encoderType();
+        if (tableConfiguration.isPresent() && tableConfiguration.get().getEncoderType().isPresent()) {
+            encoderType = tableConfiguration.get().getEncoderType().get();
+        }
+
+        return new TableDescriptor(tableName, tableConfiguration, true, topic, encoderType, tableMetaData, columnNames, primaryKeyMask,
+                writtenColumns, valueTypes, keyColumns, keyColumnsError, tokenNames);
+    }
+
+    /**
+     * Marks the positions of the columns written for the table, or returns null when every column
+     * is written. Configured names that the table does not have are logged and ignored.
+     */
+    private boolean[] resolveWrittenColumns(TableName tableName, Optional<TableConfiguration> tableConfiguration,
+                                            TableMetaData tableMetaData, List<String> columnNames) {
+        if (!tableConfiguration.isPresent()) {
+            return null;
+        }
+
+        Optional<List<String>> includeColumns = tableConfiguration.get().getIncludeColumns();
+        List<String> excludeColumns = tableConfiguration.get().getExcludeColumns();
+        if (!includeColumns.isPresent() && excludeColumns.isEmpty()) {
+            return null;
+        }
+        if (tableMetaData == null) {
+            log.warn("No metadata for table " + tableName + "; all of its columns will be written");
+            return null;
+        }
+
+        boolean[] writtenColumns = new boolean[columnNames.size()];
+        if (includeColumns.isPresent()) {
+            for (String includeColumn : includeColumns.get()) {
+                markColumn(tableName, includeColumn, columnNames, writtenColumns, true);
+            }
+        } else {
+            Arrays.fill(writtenColumns, true);
+        }
+        for (String excludeColumn : excludeColumns) {
+            markColumn(tableName, excludeColumn, columnNames, writtenColumns, false);
+        }
+
+        List<String> written = new ArrayList<>();
+        for (int i = 0; i < writtenColumns.length; i++) {
+            if (writtenColumns[i]) {
+                written.add(columnNames.get(i));
+            }
+        }
+        log.info("Writing columns of table " + tableName + ": " + written);
+        return writtenColumns;
+    }
+
+    private void markColumn(TableName tableName, String columnName, List<String> columnNames, boolean[] writtenColumns, boolean written) {
+        for (int i = 0; i < columnNames.size(); i++) {
+            if (columnNames.get(i).equalsIgnoreCase(columnName)) {
+                writtenColumns[i] = written;
+                return;
+            }
+        }
+        log.warn("Table " + tableName + " has no column " + columnName + "; ignoring it");
+    }
+
+    private String resolveTopic(Optional<TableConfiguration> tableConfiguration) {
+        if (tableConfiguration.isPresent() && tableConfiguration.get().getTopic().isPresent()) {
+            return tableConfiguration.get().getTopic().get();
+        }
+        return configuration.kafka().getTopicName();
+    }
+
+    /**
+     * The configured key columns of the table, an empty list for its primary key, or absent when
+     * records of the table are not keyed.
+     */
+    private Optional<List<String>> resolveKeyColumnNames(Optional<TableConfiguration> tableConfiguration) {
+        if (tableConfiguration.isPresent() && tableConfiguration.get().getKeyColumns().isPresent()) {
+            return tableConfiguration.get().getKeyColumns();
+        } else if (configuration.kafka().isKeyByPrimaryKey()) {
+            return Optional.of(Collections.<String>emptyList());
+        }
+        return Optional.absent();
+    }
+
+    /**
+     * Fills {@code positions} with the sorted positions of the key columns; returns an error
+     * message when a named key column does not exist.
+     */
+    private String resolveKeyColumns(TableName tableName, List<String> keyColumnNames, List<String> columnNames,
+                                     List<Boolean> primaryKey, List<Integer> positions) {
+        if (keyColumnNames.isEmpty()) {
+            for (int i = 0; i < primaryKey.size(); i++) {
+                if (primaryKey.get(i)) {
+                    positions.add(i);
+                }
+            }
+            return null;
+        }
+
+        for (String keyColumnName : keyColumnNames) {
+            int position = -1;
+            for (int i = 0; i < columnNames.size(); i++) {
+                if (columnNames.get(i).equalsIgnoreCase(keyColumnName)) {
+                    position = i;
+                    break;
+                }
+            }
+
+            if (position < 0) {
+                positions.clear();
+                return "Key column " + keyColumnName + " does not exist in table " + tableName;
+            }
+            positions.add(position);
+        }
+
+        Collections.sort(positions);
+        return null;
+    }
+}
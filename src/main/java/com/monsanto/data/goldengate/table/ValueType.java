@@ -0,0 +1,38 @@
+package com.monsanto.data.goldengate.table;
+
+import com.goldengate.atg.datasource.meta.ColumnMetaData;
+
+import java.sql.Types;
+
+/**
+ * How the values of a column are written when typed values are enabled.
+ */
+public enum ValueType {
+    STRING,
+    NUMBER,
+    TIMESTAMP;
+
+    static ValueType of(ColumnMetaData columnMetaData) {
+        if (columnMetaData.getDataType() == null) {
+            return STRING;
+        }
+
+        switch (columnMetaData.getDataType().getJDBCType()) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.FLOAT:
+            case Types.REAL:
+            case Types.DOUBLE:
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                return NUMBER;
+            case Types.DATE:
+            case Types.TIMESTAMP:
+                return TIMESTAMP;
+            default:
+                return STRING;
+        }
+    }
+}
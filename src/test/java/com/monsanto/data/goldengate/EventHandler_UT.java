@@ -4,7 +4,12 @@ import com.goldengate.atg.datasource.*;
 import com.goldengate.atg.datasource.adapt.Op;
 import com.goldengate.atg.datasource.adapt.Tx;
 import com.goldengate.atg.datasource.meta.DsMetaData;
+import com.goldengate.atg.datasource.meta.TableName;
 import com.monsanto.data.goldengate.config.Conf;
+import com.monsanto.data.goldengate.config.EnvelopeConfiguration;
+import com.monsanto.data.goldengate.config.KafkaConfiguration;
+import com.monsanto.data.goldengate.table.TableDescriptor;
+import com.monsanto.data.goldengate.table.TableDescriptorCache;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -23,9 +28,13 @@ import static org.mockito.Mockito.*;
 @RunWith(PowerMockRunner.class)
 @PrepareForTest({Tx.class, DsEvent.class, Op.class, DsTransaction.class, DsOperation.class, EventHandler.class, AbstractHandler.class})
 public class EventHandler_UT {
+    private static final String TOPIC_NAME = "foobar";
+
     @Mock
     private MessageEncoder messageEncoder;
     @Mock
+    private EnvelopeEncoder envelopeEncoder;
+    @Mock
     private MessageProducer messageProducer;
     @Mock
     private DsEvent mockEvent;
@@ -48,7 +57,13 @@ public class EventHandler_UT {
     @Mock
     private Op op;
     @Mock
+    private TableDescriptorCache tableDescriptors;
+    @Mock
+    private TableDescriptor tableDescriptor;
+    @Mock
     private TxFactory txFactory;
+    @Mock
+    private TableName tableName;
 
     private byte[] encodedBytes = new byte[1];
 
@@ -56,15 +71,20 @@ public class EventHandler_UT {
 
     @Before
     public void setUp() {
-        eventHandler = spy(new EventHandler(configuration, messageEncoder, messageProducer, txFactory));
+        eventHandler = spy(new EventHandler(configuration, messageEncoder, envelopeEncoder, messageProducer, tableDescriptors, txFactory));
         eventHandler.setState(DataSourceListener.State.READY);
         when(eventHandler.isOperationMode()).thenReturn(false);
 
         when(txFactory.createAdapterTx(Matchers.any(DsTransaction.class), Matchers.any(DsMetaData.class),
                 Matchers.any(DsConfiguration.class))).thenReturn(tx);
 
+        when(op.getTableName()).thenReturn(tableName);
         when(tx.iterator()).thenReturn(Collections.singletonList(op).listIterator());
         when(messageEncoder.encode(tx, op)).thenReturn(encodedBytes);
+        when(tableDescriptors.descriptorFor(Matchers.any(TableName.class))).thenReturn(tableDescriptor);
+        when(tableDescriptor.getTopic()).thenReturn(TOPIC_NAME);
+        when(tableDescriptor.isReplicated()).thenReturn(true);
+        when(configuration.envelope()).thenReturn(EnvelopeConfiguration.disabled());
     }
 
     @Test
@@ -72,12 +92,12 @@ public class EventHandler_UT {
         GGDataSource.Status status = eventHandler.transactionCommit(mockEvent, mockDsTx);
 
         assertThat(status, equalTo(GGDataSource.Status.OK));
-        verify(messageProducer).produce(encodedBytes);
+        verify(messageProducer).produce(TOPIC_NAME, null, encodedBytes, null);
     }
 
     @Test
     public void transactionCommit_publishesMessagesForAllOpsInaTransaction() {
-        Op op2 = mock(Op.class);
+        Op op2 = createOp();
         when(tx.iterator()).thenReturn(Arrays.asList(op, op2).listIterator());
 
         byte[] secondOpByteArray = new byte[2];
@@ -85,8 +105,8 @@ public class EventHandler_UT {
 
         eventHandler.transactionCommit(mockEvent, mockDsTx);
 
-        verify(messageProducer).produce(encodedBytes);
-        verify(messageProducer).produce(secondOpByteArray);
+        verify(messageProducer).produce(TOPIC_NAME, null, encodedBytes, null);
+        verify(messageProducer).produce(TOPIC_NAME, null, secondOpByteArray, null);
     }
 
     @Test
@@ -100,11 +120,93 @@ public class EventHandler_UT {
 
     @Test
     public void transactionCommit_returnsAbendWhenProducerFails() {
-        doThrow(new RuntimeException()).when(messageProducer).produce(encodedBytes);
+        doThrow(new RuntimeException()).when(messageProducer).produce(TOPIC_NAME, null, encodedBytes, null);
 
         GGDataSource.Status status = eventHandler.transactionCommit(mockEvent, mockDsTx);
 
         assertThat(status, equalTo(GGDataSource.Status.ABEND));
     }
 
+    @Test
+    public void transactionCommit_publishesMessageWithEncodedKey() {
+        byte[] key = new byte[]{1, 2};
+        when(messageEncoder.encodeKey(op)).thenReturn(key);
+
+        eventHandler.transactionCommit(mockEvent, mockDsTx);
+
+        verify(messageProducer).produce(TOPIC_NAME, key, encodedBytes, null);
+    }
+
+    @Test
+    public void transactionCommit_waitsForAcknowledgementOfSentMessages() {
+        eventHandler.transactionCommit(mockEvent, mockDsTx);
+
+        verify(messageProducer).flush();
+    }
+
+    @Test
+    public void transactionCommit_returnsAbendWhenAcknowledgementFails() {
+        doThrow(new RuntimeException()).when(messageProducer).flush();
+
+        GGDataSource.Status status = eventHandler.transactionCommit(mockEvent, mockDsTx);
+
+        assertThat(status, equalTo(GGDataSource.Status.ABEND));
+    }
+
+    @Test
+    public void transactionCommit_publishesEnvelopeChunksWhenEnabled() {
+        Op op2 = createOp();
+        Op op3 = createOp();
+        when(tx.iterator()).thenReturn(Arrays.asList(op, op2, op3).listIterator());
+        when(tx.getTranID()).thenReturn("1.2");
+        when(configuration.envelope()).thenReturn(new EnvelopeConfiguration(true, 2));
+        KafkaConfiguration kafkaConfiguration = mock(KafkaConfiguration.class);
+        when(kafkaConfiguration.getTopicName()).thenReturn(TOPIC_NAME);
+        when(configuration.kafka()).thenReturn(kafkaConfiguration);
+
+        byte[] firstChunk = new byte[3];
+        byte[] secondChunk = new byte[4];
+        when(envelopeEncoder.encodeTransaction(tx, Arrays.asList(op, op2), 0, 2)).thenReturn(firstChunk);
+        when(envelopeEncoder.encodeTransaction(tx, Collections.singletonList(op3), 1, 2)).thenReturn(secondChunk);
+
+        GGDataSource.Status status = eventHandler.transactionCommit(mockEvent, mockDsTx);
+
+        assertThat(status, equalTo(GGDataSource.Status.OK));
+        verify(messageProducer).produce(TOPIC_NAME, "1.2".getBytes(), firstChunk, null);
+        verify(messageProducer).produce(TOPIC_NAME, "1.2".getBytes(), secondChunk, null);
+        verify(messageEncoder, never()).encode(tx, op);
+    }
+
+    @Test
+    public void transactionCommit_skipsOperationsOnFilteredTables() {
+        TableName filteredTableName = mock(TableName.class);
+        TableDescriptor filteredDescriptor = mock(TableDescriptor.class);
+        when(tableDescriptors.descriptorFor(filteredTableName)).thenReturn(filteredDescriptor);
+        Op filteredOp = mock(Op.class);
+        when(filteredOp.getTableName()).thenReturn(filteredTableName);
+        when(tx.iterator()).thenReturn(Arrays.asList(filteredOp, op).listIterator());
+
+        eventHandler.transactionCommit(mockEvent, mockDsTx);
+
+        verify(messageEncoder, never()).encode(tx, filteredOp);
+        verify(messageProducer).produce(TOPIC_NAME, null, encodedBytes, null);
+    }
+
+    @Test
+    public void operationAdded_dropsOperationsOnFilteredTablesBeforeBuildingThem() {
+        when(eventHandler.isOperationMode()).thenReturn(true);
+        when(mockDsOp.getTableName()).thenReturn(tableName);
+        when(tableDescriptor.isReplicated()).thenReturn(false);
+
+        GGDataSource.Status status = eventHandler.operationAdded(mockEvent, mockDsTx, mockDsOp);
+
+        assertThat(status, equalTo(GGDataSource.Status.OK));
+        verifyZeroInteractions(txFactory, messageEncoder, messageProducer);
+    }
+
+    private Op createOp() {
+        Op op = mock(Op.class);
+        when(op.getTableName()).thenReturn(tableName);
+        return op;
+    }
 }
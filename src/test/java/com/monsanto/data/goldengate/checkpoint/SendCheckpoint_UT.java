@@ -0,0 +1,100 @@
+package com.monsanto.data.goldengate.checkpoint;
+
+import com.goldengate.atg.datasource.adapt.Op;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({Op.class})
+public class SendCheckpoint_UT {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = new File(folder.newFolder("dirchk"), "kafka-handler.cpk");
+    }
+
+    @Test
+    public void deliversEverythingWithoutACheckpointFile() {
+        SendCheckpoint checkpoint = new SendCheckpoint(file, 0L);
+
+        assertThat(checkpoint.isDelivered(createOp(0, 0)), equalTo(false));
+    }
+
+    @Test
+    public void writesTheLastSentPositionOnCommit() throws IOException {
+        SendCheckpoint checkpoint = new SendCheckpoint(file, 0L);
+
+        checkpoint.sent(createOp(3, 100));
+        checkpoint.sent(createOp(3, 200));
+        checkpoint.commit();
+
+        assertThat(read(file), equalTo("3:200"));
+    }
+
+    @Test
+    public void waitsForTheSyncIntervalBeforeWritingAgain() throws IOException {
+        SendCheckpoint checkpoint = new SendCheckpoint(file, 60000L);
+
+        checkpoint.sent(createOp(3, 100));
+        checkpoint.commit();
+        checkpoint.sent(createOp(3, 200));
+        checkpoint.commit();
+        assertThat(read(file), equalTo("3:100"));
+
+        checkpoint.close();
+        assertThat(read(file), equalTo("3:200"));
+    }
+
+    @Test
+    public void skipsOperationsUpToTheCheckpointAfterARestart() throws IOException {
+        Files.write(file.toPath(), "3:200\n".getBytes(StandardCharsets.UTF_8));
+        SendCheckpoint checkpoint = new SendCheckpoint(file, 0L);
+
+        assertThat(checkpoint.isDelivered(createOp(2, 900)), equalTo(true));
+        assertThat(checkpoint.isDelivered(createOp(3, 200)), equalTo(true));
+        assertThat(checkpoint.isDelivered(createOp(3, 300)), equalTo(false));
+        assertThat(checkpoint.isDelivered(createOp(3, 100)), equalTo(false));
+    }
+
+    @Test
+    public void keepsTheRecoveredPositionUntilSomethingIsCommitted() throws IOException {
+        Files.write(file.toPath(), "3:200\n".getBytes(StandardCharsets.UTF_8));
+        SendCheckpoint checkpoint = new SendCheckpoint(file, 0L);
+
+        checkpoint.commit();
+        checkpoint.close();
+
+        assertThat(read(file), equalTo("3:200"));
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim();
+    }
+
+    private static Op createOp(long seqno, long rba) {
+        Op op = mock(Op.class);
+        when(op.getSeqno()).thenReturn(seqno);
+        when(op.getRba()).thenReturn(rba);
+        return op;
+    }
+}
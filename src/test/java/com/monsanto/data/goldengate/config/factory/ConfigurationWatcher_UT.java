@@ -0,0 +1,90 @@
+package com.monsanto.data.goldengate.config.factory;
+
+import com.google.common.base.Optional;
+import com.monsanto.data.goldengate.config.Conf;
+import com.monsanto.data.goldengate.config.KafkaConfiguration;
+import com.monsanto.data.goldengate.config.TableConfiguration;
+import com.monsanto.data.goldengate.encoder.EncoderType;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ConfigurationWatcher_UT {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+    private ConfigurationFactory configurationFactory;
+    private Conf startupConfiguration;
+
+    @Before
+    public void setUp() throws IOException {
+        file = folder.newFile("kafka.conf");
+        configurationFactory = mock(ConfigurationFactory.class);
+        startupConfiguration = new Conf(EncoderType.JSON, kafkaConfiguration("firehose"), null);
+    }
+
+    @Test
+    public void doesNotLoadAnUnchangedFile() {
+        ConfigurationWatcher watcher = new ConfigurationWatcher(configurationFactory, file.getPath(), startupConfiguration, 0L);
+
+        assertThat(watcher.check(), equalTo(false));
+        assertThat(watcher.poll().isPresent(), equalTo(false));
+        verify(configurationFactory, never()).load(anyString());
+    }
+
+    @Test
+    public void reloadsTablesAndEncodingButKeepsStartupSections() {
+        ConfigurationWatcher watcher = new ConfigurationWatcher(configurationFactory, file.getPath(), startupConfiguration, 0L);
+        Conf changed = Conf.builder(EncoderType.AVRO, kafkaConfiguration("other-topic"))
+                .addTableConfiguration(new TableConfiguration("sales", "orders", Collections.<String>emptyList()))
+                .build();
+        when(configurationFactory.load(file.getPath())).thenReturn(changed);
+
+        touch();
+
+        assertThat(watcher.check(), equalTo(true));
+        Optional<Conf> reloaded = watcher.poll();
+        assertThat(reloaded.get().encoderType(), equalTo(EncoderType.AVRO));
+        assertThat(reloaded.get().kafka(), sameInstance(startupConfiguration.kafka()));
+        assertThat(reloaded.get().getTableConfiguration("SALES", "ORDERS").isPresent(), equalTo(true));
+        assertThat(watcher.poll().isPresent(), equalTo(false));
+    }
+
+    @Test
+    public void keepsTheCurrentConfigurationWhenTheFileDoesNotLoad() {
+        ConfigurationWatcher watcher = new ConfigurationWatcher(configurationFactory, file.getPath(), startupConfiguration, 0L);
+        when(configurationFactory.load(file.getPath())).thenThrow(new IllegalArgumentException("bad"));
+
+        touch();
+
+        assertThat(watcher.check(), equalTo(false));
+        assertThat(watcher.poll().isPresent(), equalTo(false));
+    }
+
+    private void touch() {
+        file.setLastModified(file.lastModified() + 2000L);
+    }
+
+    private static KafkaConfiguration kafkaConfiguration(String topic) {
+        return new KafkaConfiguration("localhost:9092", topic, Optional.<String>absent());
+    }
+}
@@ -0,0 +1,135 @@
+package com.monsanto.data.goldengate.encoder;
+
+import com.goldengate.atg.datasource.DsOperation;
+import com.goldengate.atg.datasource.adapt.Col;
+import com.goldengate.atg.datasource.adapt.Op;
+import com.goldengate.atg.datasource.meta.ColumnMetaData;
+import com.goldengate.atg.datasource.meta.DsMetaData;
+import com.goldengate.atg.datasource.meta.TableMetaData;
+import com.goldengate.atg.datasource.meta.TableName;
+import com.google.common.base.Optional;
+import com.monsanto.data.goldengate.config.Conf;
+import com.monsanto.data.goldengate.config.FilterConfiguration;
+import com.monsanto.data.goldengate.config.KafkaConfiguration;
+import com.monsanto.data.goldengate.config.TableConfiguration;
+import com.monsanto.data.goldengate.table.TableDescriptorCache;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({Op.class})
+public class RecordKeyEncoder_UT {
+    private static final String SCHEMA_NAME = "FOO";
+    private static final String TABLE_NAME = "BAR";
+
+    @Mock
+    private Conf configuration;
+    @Mock
+    private KafkaConfiguration kafkaConfiguration;
+    @Mock
+    private DsMetaData metaData;
+    @Mock
+    private TableMetaData tableMetaData;
+    @Mock
+    private TableName tableName;
+    @Mock
+    private Op op;
+
+    private RecordKeyEncoder keyEncoder;
+
+    @Before
+    public void setUp() {
+        when(tableName.getSchemaName()).thenReturn(SCHEMA_NAME);
+        when(tableName.getShortName()).thenReturn(TABLE_NAME);
+        when(configuration.kafka()).thenReturn(kafkaConfiguration);
+        when(configuration.filter()).thenReturn(FilterConfiguration.none());
+        when(kafkaConfiguration.isKeyByPrimaryKey()).thenReturn(false);
+        when(configuration.getTableConfiguration(SCHEMA_NAME, TABLE_NAME)).thenReturn(Optional.<TableConfiguration>absent());
+
+        ColumnMetaData idColumn = createColumnMetaData("ID", true);
+        ColumnMetaData nameColumn = createColumnMetaData("NAME", false);
+        when(tableMetaData.getNumColumns()).thenReturn(2);
+        when(tableMetaData.getColumnMetaData(0)).thenReturn(idColumn);
+        when(tableMetaData.getColumnMetaData(1)).thenReturn(nameColumn);
+        when(metaData.getTableMetaData(tableName)).thenReturn(tableMetaData);
+
+        when(op.getTableName()).thenReturn(tableName);
+        when(op.getOperationType()).thenReturn(DsOperation.OpType.DO_INSERT);
+        List<Col> columns = Arrays.asList(createColumn("42", "43"), createColumn("fizz", "buzz"));
+        when(op.iterator()).thenReturn(columns.iterator());
+
+        TableDescriptorCache tableDescriptors = new TableDescriptorCache(configuration);
+        tableDescriptors.metaDataChanged(metaData);
+        keyEncoder = new RecordKeyEncoder(tableDescriptors);
+    }
+
+    @Test
+    public void tablesAreNotKeyedByDefault() {
+        assertThat(keyEncoder.encode(op), nullValue());
+    }
+
+    @Test
+    public void keysByPrimaryKeyColumnsWhenEnabledGlobally() {
+        when(kafkaConfiguration.isKeyByPrimaryKey()).thenReturn(true);
+
+        assertThat(keyEncoder.encode(op), equalTo(new byte[]{3, '4', '3'}));
+    }
+
+    @Test
+    public void keysByConfiguredColumnsForTable() {
+        configureKeyColumns(Collections.singletonList("name"));
+
+        assertThat(keyEncoder.encode(op), equalTo(new byte[]{5, 'b', 'u', 'z', 'z'}));
+    }
+
+    @Test
+    public void deletesAreKeyedByBeforeImage() {
+        configureKeyColumns(Collections.<String>emptyList());
+        when(op.getOperationType()).thenReturn(DsOperation.OpType.DO_DELETE);
+
+        assertThat(keyEncoder.encode(op), equalTo(new byte[]{3, '4', '2'}));
+    }
+
+    @Test
+    public void nullKeyValuesAreWrittenAsZeroLength() {
+        configureKeyColumns(Collections.<String>emptyList());
+        List<Col> columns = Collections.singletonList(createColumn(null, null));
+        when(op.iterator()).thenReturn(columns.iterator());
+
+        assertThat(keyEncoder.encode(op), equalTo(new byte[]{0}));
+    }
+
+    private void configureKeyColumns(List<String> keyColumns) {
+        TableConfiguration tableConfiguration = TableConfiguration.builder(SCHEMA_NAME, TABLE_NAME).keyColumns(keyColumns).build();
+        when(configuration.getTableConfiguration(SCHEMA_NAME, TABLE_NAME)).thenReturn(Optional.of(tableConfiguration));
+    }
+
+    private ColumnMetaData createColumnMetaData(String name, boolean keyColumn) {
+        ColumnMetaData columnMetaData = mock(ColumnMetaData.class);
+        when(columnMetaData.getColumnName()).thenReturn(name);
+        when(columnMetaData.isKeyCol()).thenReturn(keyColumn);
+        return columnMetaData;
+    }
+
+    private Col createColumn(String beforeValue, String afterValue) {
+        Col column = mock(Col.class);
+        when(column.getBeforeValue()).thenReturn(beforeValue);
+        when(column.getAfterValue()).thenReturn(afterValue);
+        when(column.hasAfterValue()).thenReturn(afterValue != null);
+        return column;
+    }
+}
@@ -0,0 +1,87 @@
+package com.monsanto.data.goldengate.encoder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.goldengate.atg.datasource.DsOperation;
+import com.goldengate.atg.datasource.TxState;
+import com.goldengate.atg.datasource.adapt.Col;
+import com.goldengate.atg.datasource.adapt.Op;
+import com.goldengate.atg.datasource.adapt.Tx;
+import com.goldengate.atg.datasource.meta.TableName;
+import com.google.common.base.Optional;
+import com.monsanto.data.goldengate.config.Conf;
+import com.monsanto.data.goldengate.config.KafkaConfiguration;
+import com.monsanto.data.goldengate.config.TableConfiguration;
+import com.monsanto.data.goldengate.encoder.json.JsonEncoder;
+import com.monsanto.data.goldengate.table.TableDescriptorCache;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({Op.class})
+public class TableEncoderTypeMessageEncoder_UT {
+    private Conf configuration;
+
+    @Before
+    public void setUp() {
+        configuration = Conf.builder(EncoderType.JSON, new KafkaConfiguration("localhost:9092", "firehose", Optional.<String>absent()))
+                .addTableConfiguration(TableConfiguration.builder("sales", "orders").encoderType(EncoderType.SMILE).build())
+                .build();
+    }
+
+    @Test
+    public void createsPlainEncoderWithoutTableEncoderTypes() {
+        Conf plainConfiguration = new Conf(EncoderType.JSON, configuration.kafka(), null);
+
+        assertThat(MessageEncoderFactory.create(plainConfiguration) instanceof TableEncoderTypeMessageEncoder, is(false));
+    }
+
+    @Test
+    public void writesEnvelopesWithTheDefaultEncoderType() {
+        assertThat(MessageEncoderFactory.createEnvelopeEncoder(configuration, new TableDescriptorCache(configuration)) instanceof JsonEncoder, is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEnvelopesForEncoderTypesWithoutThem() {
+        Conf avroConfiguration = new Conf(EncoderType.AVRO, configuration.kafka(), null);
+
+        MessageEncoderFactory.createEnvelopeEncoder(avroConfiguration, new TableDescriptorCache(avroConfiguration));
+    }
+
+    @Test
+    public void encodesEachTableWithItsEncoderType() throws Exception {
+        AbstractMessageEncoder encoder = MessageEncoderFactory.create(configuration, new TableDescriptorCache(configuration));
+        Tx tx = mock(Tx.class);
+
+        byte[] orders = encoder.encode(tx, createOp("SALES", "ORDERS"));
+        byte[] customers = encoder.encode(tx, createOp("SALES", "CUSTOMERS"));
+
+        assertThat(new ObjectMapper(new SmileFactory()).readTree(orders).get("table").asText(), equalTo("ORDERS"));
+        assertThat(new ObjectMapper().readTree(customers).get("table").asText(), equalTo("CUSTOMERS"));
+    }
+
+    private Op createOp(String schema, String table) {
+        TableName tableName = mock(TableName.class);
+        when(tableName.getSchemaName()).thenReturn(schema);
+        when(tableName.getShortName()).thenReturn(table);
+
+        Op op = mock(Op.class);
+        when(op.getTableName()).thenReturn(tableName);
+        when(op.getOperationType()).thenReturn(DsOperation.OpType.DO_INSERT);
+        when(op.getOpType()).thenReturn(DsOperation.OpType.DO_INSERT);
+        when(op.getTxState()).thenReturn(TxState.END);
+        when(op.iterator()).thenReturn(Collections.<Col>emptyIterator());
+        return op;
+    }
+}
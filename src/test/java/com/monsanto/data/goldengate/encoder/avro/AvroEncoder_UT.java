@@ -0,0 +1,190 @@
+package com.monsanto.data.goldengate.encoder.avro;
+
+import com.goldengate.atg.datasource.DsOperation;
+import com.goldengate.atg.datasource.TxState;
+import com.goldengate.atg.datasource.adapt.Col;
+import com.goldengate.atg.datasource.adapt.Op;
+import com.goldengate.atg.datasource.adapt.Tx;
+import com.goldengate.atg.datasource.meta.ColumnMetaData;
+import com.goldengate.atg.datasource.meta.DsMetaData;
+import com.goldengate.atg.datasource.meta.TableMetaData;
+import com.goldengate.atg.datasource.meta.TableName;
+import com.google.common.base.Optional;
+import com.monsanto.data.goldengate.config.Conf;
+import com.monsanto.data.goldengate.config.FilterConfiguration;
+import com.monsanto.data.goldengate.config.KafkaConfiguration;
+import com.monsanto.data.goldengate.config.TableConfiguration;
+import com.monsanto.data.goldengate.encoder.EncoderType;
+import com.monsanto.data.goldengate.encoder.json.JsonFields;
+import com.monsanto.data.goldengate.table.TableDescriptorCache;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.DecoderFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({Op.class})
+public class AvroEncoder_UT {
+    private static final int HEADER_LENGTH = 10;
+
+    @Mock
+    private Conf configuration;
+    @Mock
+    private DsMetaData metaData;
+    @Mock
+    private TableMetaData tableMetaData;
+    @Mock
+    private TableName tableName;
+    @Mock
+    private Tx tx;
+    @Mock
+    private Op op;
+
+    private AvroEncoder avroEncoder;
+
+    @Before
+    public void setUp() {
+        when(configuration.getTableConfiguration(anyString(), anyString())).thenReturn(Optional.<TableConfiguration>absent());
+        when(configuration.kafka()).thenReturn(new KafkaConfiguration("localhost:9092", "foobar", Optional.<String>absent()));
+        when(configuration.filter()).thenReturn(FilterConfiguration.none());
+
+        when(tableName.getSchemaName()).thenReturn("FOO");
+        when(tableName.getShortName()).thenReturn("BAR");
+        ColumnMetaData idColumn = createColumnMetaData("ID");
+        ColumnMetaData nameColumn = createColumnMetaData("NAME$1");
+        when(tableMetaData.getNumColumns()).thenReturn(2);
+        when(tableMetaData.getColumnMetaData(0)).thenReturn(idColumn);
+        when(tableMetaData.getColumnMetaData(1)).thenReturn(nameColumn);
+        when(metaData.getTableMetaData(tableName)).thenReturn(tableMetaData);
+
+        when(op.getTableName()).thenReturn(tableName);
+        when(op.getOperationType()).thenReturn(DsOperation.OpType.DO_INSERT);
+        when(op.getOpType()).thenReturn(DsOperation.OpType.DO_INSERT);
+        when(op.getTimestamp()).thenReturn("2015-05-01 23:59:01.999");
+        when(op.getSeqno()).thenReturn(7L);
+        when(op.getRba()).thenReturn(1L);
+        when(op.getTxState()).thenReturn(TxState.END);
+        List<Col> columns = Arrays.asList(createColumn("42", "43"), createColumn("fizz", "NULL"));
+        when(op.iterator()).thenReturn(columns.iterator());
+
+        avroEncoder = new AvroEncoder(configuration);
+        avroEncoder.metaDataChanged(metaData);
+    }
+
+    @Test
+    public void buildsRowSchemaFromTableMetaData() {
+        Schema rowSchema = avroEncoder.getSchema(tableName).getField("after").schema().getTypes().get(1);
+
+        assertThat(rowSchema.getFields().size(), equalTo(2));
+        assertThat(rowSchema.getFields().get(0).name(), equalTo("ID"));
+        assertThat(rowSchema.getFields().get(1).name(), equalTo("NAME_1"));
+        assertThat(rowSchema.getFields().get(1).getProp("sourceName"), equalTo("NAME$1"));
+    }
+
+    @Test
+    public void writesOperationAttributes() throws Exception {
+        GenericRecord record = encodeAndDecode();
+
+        assertThat(record.get(JsonFields.JSON_SCHEMA).toString(), equalTo("FOO"));
+        assertThat(record.get(JsonFields.JSON_TABLE).toString(), equalTo("BAR"));
+        assertThat(record.get(JsonFields.JSON_MODTYPE).toString(), equalTo("I"));
+        assertThat((Long) record.get(JsonFields.JSON_FILESEQNO), equalTo(7L));
+    }
+
+    @Test
+    public void inserts_writeAfterImageOnly() throws Exception {
+        GenericRecord record = encodeAndDecode();
+
+        GenericRecord after = (GenericRecord) record.get("after");
+        assertThat(record.get("before"), nullValue());
+        assertThat(after.get("ID").toString(), equalTo("43"));
+        assertThat(after.get("NAME_1"), nullValue());
+    }
+
+    @Test
+    public void deletes_writeBeforeImageOnly() throws Exception {
+        when(op.getOpType()).thenReturn(DsOperation.OpType.DO_DELETE);
+
+        GenericRecord record = encodeAndDecode();
+
+        GenericRecord before = (GenericRecord) record.get("before");
+        assertThat(record.get("after"), nullValue());
+        assertThat(before.get("ID").toString(), equalTo("42"));
+        assertThat(before.get("NAME_1").toString(), equalTo("fizz"));
+    }
+
+    @Test
+    public void cachesSchemaUntilMetaDataChanges() {
+        Schema schema = avroEncoder.getSchema(tableName);
+        assertThat(avroEncoder.getSchema(tableName), sameInstance(schema));
+
+        avroEncoder.metaDataChanged(metaData);
+
+        assertThat(avroEncoder.getSchema(tableName), not(sameInstance(schema)));
+    }
+
+    @Test
+    public void rebuildsSchemaOnceTheTableIsReconfigured() {
+        when(configuration.encoderType()).thenReturn(EncoderType.AVRO);
+        TableDescriptorCache tableDescriptors = new TableDescriptorCache(configuration);
+        AvroEncoder encoder = new AvroEncoder(tableDescriptors);
+        encoder.metaDataChanged(metaData);
+        Schema schema = encoder.getSchema(tableName);
+
+        TableConfiguration withoutName = TableConfiguration.builder("FOO", "BAR").excludeColumns(Collections.singletonList("NAME$1")).build();
+        KafkaConfiguration kafkaConfiguration = configuration.kafka();
+        Conf reloaded = mock(Conf.class);
+        when(reloaded.encoderType()).thenReturn(EncoderType.AVRO);
+        when(reloaded.filter()).thenReturn(FilterConfiguration.none());
+        when(reloaded.kafka()).thenReturn(kafkaConfiguration);
+        when(reloaded.getTableConfiguration("FOO", "BAR")).thenReturn(Optional.of(withoutName));
+        tableDescriptors.reconfigure(reloaded);
+
+        Schema rebuilt = encoder.getSchema(tableName);
+        assertThat(rebuilt, not(sameInstance(schema)));
+        assertThat(rebuilt.getField("after").schema().getTypes().get(1).getField("NAME_1"), nullValue());
+        assertThat(encoder.getSchema(tableName), sameInstance(rebuilt));
+    }
+
+    private GenericRecord encodeAndDecode() throws IOException {
+        byte[] encoded = avroEncoder.encode(tx, op);
+        assertThat(encoded[0], equalTo((byte) 0xC3));
+        assertThat(encoded[1], equalTo((byte) 0x01));
+
+        GenericDatumReader<GenericRecord> reader = new GenericDatumReader<>(avroEncoder.getSchema(tableName));
+        return reader.read(null, DecoderFactory.get().binaryDecoder(encoded, HEADER_LENGTH, encoded.length - HEADER_LENGTH, null));
+    }
+
+    private ColumnMetaData createColumnMetaData(String name) {
+        ColumnMetaData columnMetaData = mock(ColumnMetaData.class);
+        when(columnMetaData.getColumnName()).thenReturn(name);
+        return columnMetaData;
+    }
+
+    private Col createColumn(String beforeValue, String afterValue) {
+        Col column = mock(Col.class);
+        when(column.getBeforeValue()).thenReturn(beforeValue);
+        when(column.getAfterValue()).thenReturn(afterValue);
+        return column;
+    }
+}
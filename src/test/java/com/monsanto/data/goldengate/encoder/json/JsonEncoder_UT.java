@@ -6,29 +6,44 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeType;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.goldengate.atg.datasource.*;
 import com.goldengate.atg.datasource.adapt.Col;
 import com.goldengate.atg.datasource.adapt.Op;
 import com.goldengate.atg.datasource.adapt.Tx;
+import com.goldengate.atg.datasource.meta.ColumnMetaData;
 import com.goldengate.atg.datasource.meta.DsMetaData;
+import com.goldengate.atg.datasource.meta.DsType;
+import com.goldengate.atg.datasource.meta.TableMetaData;
 import com.goldengate.atg.datasource.meta.TableName;
 import com.google.common.base.Optional;
 import com.monsanto.data.goldengate.config.Conf;
+import com.monsanto.data.goldengate.config.FilterConfiguration;
+import com.monsanto.data.goldengate.config.KafkaConfiguration;
 import com.monsanto.data.goldengate.config.TableConfiguration;
+import com.monsanto.data.goldengate.table.TableDescriptorCache;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.io.IOException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Calendar;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
@@ -68,6 +83,8 @@ public class JsonEncoder_UT {
         message = null;
 
         when(configuration.getTableConfiguration(anyString(),anyString())).thenReturn(Optional.<TableConfiguration>absent());
+        when(configuration.kafka()).thenReturn(new KafkaConfiguration("localhost:9092", "foobar", Optional.<String>absent()));
+        when(configuration.filter()).thenReturn(FilterConfiguration.none());
 
         trainSimpleOpMock();
     }
@@ -91,6 +108,49 @@ public class JsonEncoder_UT {
         assertThat(readJsonTextAttribute(JsonFields.JSON_MODTYPE), equalTo("I"));
     }
 
+    @Test
+    public void encodesConsecutiveOperationsAsSeparateDocuments() throws Exception {
+        Col column1 = createMockColumn("fizz", null, "buzz");
+        when(op.getOpType()).thenReturn(DsOperation.OpType.DO_INSERT);
+        when(op.iterator()).thenReturn(Collections.singletonList(column1).listIterator());
+
+        byte[] first = jsonEncoder.encode(tx, op);
+
+        Col column2 = createMockColumn("fizz", null, "baz");
+        when(op.iterator()).thenReturn(Collections.singletonList(column2).listIterator());
+
+        byte[] second = jsonEncoder.encode(tx, op);
+
+        message = objectMapper.readTree(second);
+        ObjectNode columnObject = (ObjectNode) getOnlyColumnObject();
+        assertThat(readTextAttributeFromObject(columnObject, JsonFields.JSON_VALUE), is("baz"));
+
+        message = objectMapper.readTree(first);
+        columnObject = (ObjectNode) getOnlyColumnObject();
+        assertThat(readTextAttributeFromObject(columnObject, JsonFields.JSON_VALUE), is("buzz"));
+        assertThat(first.length, equalTo(second.length + 1));
+    }
+
+    @Test
+    public void envelope_writesTransactionMetadataOnceAndEachOperation() throws Exception {
+        when(op.getEnv(anyString(), anyString())).thenReturn("scott");
+        when(op.getOperationType()).thenReturn(DsOperation.OpType.DO_INSERT);
+        when(op.getOpType()).thenReturn(DsOperation.OpType.DO_INSERT);
+
+        byte[] encoded = jsonEncoder.encodeTransaction(tx, Arrays.asList(op, op), 1, 3);
+        message = objectMapper.readTree(encoded);
+
+        assertThat(readJsonTextAttribute(JsonFields.JSON_DBUSER), equalTo("scott"));
+        assertThat(message.get(JsonFields.JSON_CHUNK).asInt(), equalTo(1));
+        assertThat(message.get(JsonFields.JSON_CHUNKS).asInt(), equalTo(3));
+
+        JsonNode operations = message.get(JsonFields.JSON_OPERATIONS);
+        assertThat(operations.size(), equalTo(2));
+        assertThat(operations.get(0).get(JsonFields.JSON_TABLE).asText(), equalTo(TABLE_NAME));
+        assertThat(operations.get(1).get(JsonFields.JSON_MODTYPE).asText(), equalTo("I"));
+        assertThat(operations.get(0).has(JsonFields.JSON_DBUSER), is(false));
+    }
+
     @Test
     public void writesTransactionMetadataAttributes() throws Exception {
 
@@ -224,6 +284,233 @@ public class JsonEncoder_UT {
         assertThat(serializedChangedBoolean, is(false));
     }
 
+    @Test
+    public void columns_compactUpdates_writesKeyAndChangedColumnsOnly() throws Exception {
+        trainCompactUpdateTable();
+
+        Col idColumn = createMockColumn("ID", "1", "1");
+        Col nameColumn = createMockColumn("NAME", "fizz", "fizz");
+        Col statusColumn = createMockColumn("STATUS", "new", "shipped");
+        when(statusColumn.isChanged()).thenReturn(true);
+
+        when(op.iterator()).thenAnswer(columnsAnswer(idColumn, nameColumn, statusColumn));
+        when(op.getOperationType()).thenReturn(DsOperation.OpType.DO_UPDATE);
+        when(op.getOpType()).thenReturn(DsOperation.OpType.DO_UPDATE);
+
+        encodeMessage();
+
+        ArrayNode columnsArray = (ArrayNode) message.get("columns");
+        assertThat(columnsArray.size(), is(2));
+        assertThat(columnsArray.get(0).get(JsonFields.JSON_COLUMN_NAME).asText(), is("ID"));
+        assertThat(columnsArray.get(1).get(JsonFields.JSON_COLUMN_NAME).asText(), is("STATUS"));
+        assertThat(columnsArray.get(1).get(JsonFields.JSON_COLUMN_AFTER).asText(), is("shipped"));
+    }
+
+    @Test
+    public void columns_compactUpdates_skipsUpdatesThatChangeNothing() throws Exception {
+        trainCompactUpdateTable();
+
+        Col idColumn = createMockColumn("ID", "1", "1");
+        Col nameColumn = createMockColumn("NAME", "fizz", "fizz");
+
+        when(op.iterator()).thenAnswer(columnsAnswer(idColumn, nameColumn));
+        when(op.getOperationType()).thenReturn(DsOperation.OpType.DO_UPDATE);
+        when(op.getOpType()).thenReturn(DsOperation.OpType.DO_UPDATE);
+
+        assertThat(jsonEncoder.encode(tx, op), is(nullValue()));
+    }
+
+    @Test
+    public void columns_compactUpdates_writesInsertsInFull() throws Exception {
+        trainCompactUpdateTable();
+
+        Col idColumn = createMockColumn("ID", null, "1");
+        Col nameColumn = createMockColumn("NAME", null, "fizz");
+
+        when(op.iterator()).thenAnswer(columnsAnswer(idColumn, nameColumn));
+        when(op.getOpType()).thenReturn(DsOperation.OpType.DO_INSERT);
+
+        encodeMessage();
+
+        assertThat(message.get("columns").size(), is(2));
+    }
+
+    @Test
+    public void columns_excludedColumnsAreNotWritten() throws Exception {
+        when(configuration.getTableConfiguration(SCHEMA_NAME, TABLE_NAME)).thenReturn(Optional.of(
+                TableConfiguration.builder(SCHEMA_NAME, TABLE_NAME).excludeColumns(Collections.singletonList("name")).build()));
+        trainTableMetaData();
+
+        Col idColumn = createMockColumn("ID", null, "1");
+        Col nameColumn = createMockColumn("NAME", null, "fizz");
+        Col statusColumn = createMockColumn("STATUS", null, "new");
+
+        when(op.iterator()).thenAnswer(columnsAnswer(idColumn, nameColumn, statusColumn));
+        when(op.getOpType()).thenReturn(DsOperation.OpType.DO_INSERT);
+
+        encodeMessage();
+
+        ArrayNode columnsArray = (ArrayNode) message.get("columns");
+        assertThat(columnsArray.size(), is(2));
+        assertThat(columnsArray.get(0).get(JsonFields.JSON_COLUMN_NAME).asText(), is("ID"));
+        assertThat(columnsArray.get(1).get(JsonFields.JSON_COLUMN_NAME).asText(), is("STATUS"));
+    }
+
+    @Test
+    public void columns_typedValues_writesNumbersTimestampsAndNullsByColumnType() throws Exception {
+        when(configuration.isTypedValues()).thenReturn(true);
+        trainTableMetaData(Types.NUMERIC, Types.TIMESTAMP, Types.VARCHAR);
+
+        Col idColumn = createMockColumn("ID", null, "-12.50");
+        trainAfterImage(idColumn, "-12.50", false);
+        Col createdColumn = createMockColumn("CREATED", null, "2015-05-01 23:59:01.999000");
+        trainAfterImage(createdColumn, "2015-05-01 23:59:01.999000", false);
+        Col nameColumn = createMockColumn("NAME", null, "NULL");
+        trainAfterImage(nameColumn, "NULL", false);
+
+        when(op.iterator()).thenAnswer(columnsAnswer(idColumn, createdColumn, nameColumn));
+        when(op.getOpType()).thenReturn(DsOperation.OpType.DO_INSERT);
+
+        encodeMessage();
+
+        ArrayNode columnsArray = (ArrayNode) message.get("columns");
+        assertThat(columnsArray.get(0).get(JsonFields.JSON_VALUE).isNumber(), is(true));
+        assertThat(columnsArray.get(0).get(JsonFields.JSON_VALUE).asDouble(), equalTo(-12.5));
+        assertThat(columnsArray.get(1).get(JsonFields.JSON_VALUE).asLong(), equalTo(epochMillis(2015, 5, 1, 23, 59, 1, 999)));
+        assertThat(columnsArray.get(2).get(JsonFields.JSON_VALUE).asText(), is("NULL"));
+    }
+
+    @Test
+    public void columns_typedValues_writesNullsFromTheNullFlagAndUnparsableValuesAsStrings() throws Exception {
+        when(configuration.isTypedValues()).thenReturn(true);
+        trainTableMetaData(Types.NUMERIC, Types.DATE, Types.VARCHAR);
+
+        Col idColumn = createMockColumn("ID", null, "");
+        trainAfterImage(idColumn, "", true);
+        Col createdColumn = createMockColumn("CREATED", null, "yesterday");
+        trainAfterImage(createdColumn, "yesterday", false);
+        Col nameColumn = createMockColumn("NAME", null, null);
+
+        when(op.iterator()).thenAnswer(columnsAnswer(idColumn, createdColumn, nameColumn));
+        when(op.getOpType()).thenReturn(DsOperation.OpType.DO_INSERT);
+
+        encodeMessage();
+
+        ArrayNode columnsArray = (ArrayNode) message.get("columns");
+        assertThat(columnsArray.get(0).get(JsonFields.JSON_VALUE).isNull(), is(true));
+        assertThat(columnsArray.get(1).get(JsonFields.JSON_VALUE).asText(), is("yesterday"));
+        assertThat(columnsArray.get(2).get(JsonFields.JSON_VALUE).isNull(), is(true));
+    }
+
+    @Test
+    public void smile_writesTheJsonDocumentAsSelfContainedBinaryMessages() throws Exception {
+        assertBinaryEncoderWritesTheJsonDocument(new SmileFactory());
+    }
+
+    @Test
+    public void cbor_writesTheJsonDocumentAsSelfContainedBinaryMessages() throws Exception {
+        assertBinaryEncoderWritesTheJsonDocument(new CBORFactory());
+    }
+
+    private void assertBinaryEncoderWritesTheJsonDocument(JsonFactory binaryFactory) throws Exception {
+        when(configuration.isTypedValues()).thenReturn(true);
+        JsonEncoder binaryEncoder = new JsonEncoder(new TableDescriptorCache(configuration), binaryFactory, true);
+        trainTableMetaData(Types.NUMERIC);
+        binaryEncoder.metaDataChanged(metaData);
+
+        Col idColumn = createMockColumn("ID", null, "42");
+        trainAfterImage(idColumn, "42", false);
+        when(op.iterator()).thenAnswer(columnsAnswer(idColumn));
+        when(op.getOpType()).thenReturn(DsOperation.OpType.DO_INSERT);
+
+        byte[] first = binaryEncoder.encode(tx, op);
+        byte[] second = binaryEncoder.encode(tx, op);
+        encodeMessage();
+
+        ObjectMapper binaryMapper = new ObjectMapper(binaryFactory);
+        assertThat(binaryMapper.readTree(first), equalTo(message));
+        assertThat(binaryMapper.readTree(second), equalTo(message));
+        assertThat(second, equalTo(first));
+    }
+
+    @Test
+    public void recognizesJsonNumbers() {
+        assertThat(JsonEncoder.isJsonNumber("0"), is(true));
+        assertThat(JsonEncoder.isJsonNumber("-12.50"), is(true));
+        assertThat(JsonEncoder.isJsonNumber("1.5E-7"), is(true));
+        assertThat(JsonEncoder.isJsonNumber(".5"), is(false));
+        assertThat(JsonEncoder.isJsonNumber("007"), is(false));
+        assertThat(JsonEncoder.isJsonNumber("1."), is(false));
+        assertThat(JsonEncoder.isJsonNumber("12a"), is(false));
+        assertThat(JsonEncoder.isJsonNumber(""), is(false));
+    }
+
+    private void trainAfterImage(Col column, String value, boolean isNull) {
+        DsColumn image = mock(DsColumn.class);
+        when(image.getValue()).thenReturn(value);
+        when(image.isValueNull()).thenReturn(isNull);
+        when(column.hasAfterValue()).thenReturn(true);
+        when(column.getAfter()).thenReturn(image);
+    }
+
+    private long epochMillis(int year, int month, int day, int hour, int minute, int second, int millis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month - 1, day, hour, minute, second);
+        return calendar.getTimeInMillis() + millis;
+    }
+
+    private void trainTableMetaData(int... jdbcTypes) {
+        TableMetaData tableMetaData = mock(TableMetaData.class);
+        when(tableMetaData.getNumColumns()).thenReturn(jdbcTypes.length);
+        for (int i = 0; i < jdbcTypes.length; i++) {
+            ColumnMetaData columnMetaData = createColumnMetaData("C" + i, false);
+            DsType dataType = mock(DsType.class);
+            when(dataType.getJDBCType()).thenReturn(jdbcTypes[i]);
+            when(columnMetaData.getDataType()).thenReturn(dataType);
+            when(tableMetaData.getColumnMetaData(i)).thenReturn(columnMetaData);
+        }
+        when(metaData.getTableMetaData(op.getTableName())).thenReturn(tableMetaData);
+
+        jsonEncoder.metaDataChanged(metaData);
+    }
+
+    private void trainCompactUpdateTable() {
+        when(configuration.getTableConfiguration(SCHEMA_NAME, TABLE_NAME)).thenReturn(Optional.of(
+                TableConfiguration.builder(SCHEMA_NAME, TABLE_NAME).compactUpdates(true).build()));
+        trainTableMetaData();
+    }
+
+    private void trainTableMetaData() {
+        TableMetaData tableMetaData = mock(TableMetaData.class);
+        when(tableMetaData.getNumColumns()).thenReturn(3);
+        ColumnMetaData idColumn = createColumnMetaData("ID", true);
+        ColumnMetaData nameColumn = createColumnMetaData("NAME", false);
+        ColumnMetaData statusColumn = createColumnMetaData("STATUS", false);
+        when(tableMetaData.getColumnMetaData(0)).thenReturn(idColumn);
+        when(tableMetaData.getColumnMetaData(1)).thenReturn(nameColumn);
+        when(tableMetaData.getColumnMetaData(2)).thenReturn(statusColumn);
+        when(metaData.getTableMetaData(op.getTableName())).thenReturn(tableMetaData);
+
+        jsonEncoder.metaDataChanged(metaData);
+    }
+
+    private ColumnMetaData createColumnMetaData(String name, boolean keyColumn) {
+        ColumnMetaData columnMetaData = mock(ColumnMetaData.class);
+        when(columnMetaData.getColumnName()).thenReturn(name);
+        when(columnMetaData.isKeyCol()).thenReturn(keyColumn);
+        return columnMetaData;
+    }
+
+    private Answer<Iterator<Col>> columnsAnswer(final Col... columns) {
+        return new Answer<Iterator<Col>>() {
+            @Override
+            public Iterator<Col> answer(InvocationOnMock invocation) {
+                return Arrays.asList(columns).iterator();
+            }
+        };
+    }
+
     private ArrayNode getColumnsArrayNode() {
         JsonNode jsonNode = message.get("columns");
         assertThat(jsonNode.isArray(), is(true));
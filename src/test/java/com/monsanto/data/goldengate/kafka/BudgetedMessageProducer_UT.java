@@ -0,0 +1,134 @@
+package com.monsanto.data.goldengate.kafka;
+
+import com.codahale.metrics.MetricRegistry;
+import com.monsanto.data.goldengate.MessageProducer;
+import com.monsanto.data.goldengate.SendCallback;
+import com.monsanto.data.goldengate.SendFailureCallback;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class BudgetedMessageProducer_UT {
+    private static final String TOPIC_NAME = "foobar";
+
+    private MessageProducer producer;
+    private List<SendCallback> callbacks;
+
+    @Before
+    public void setUp() {
+        producer = mock(MessageProducer.class);
+        callbacks = new ArrayList<>();
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                synchronized (callbacks) {
+                    callbacks.add((SendCallback) invocation.getArguments()[3]);
+                }
+                return null;
+            }
+        }).when(producer).produce(anyString(), any(byte[].class), any(byte[].class), any(SendCallback.class));
+    }
+
+    @Test
+    public void countsBytesUntilTheyAreAcknowledged() {
+        BudgetedMessageProducer budgetedProducer = new BudgetedMessageProducer(producer, 100L, 1000L);
+        SendCallback callback = mock(SendCallback.class);
+
+        budgetedProducer.produce(TOPIC_NAME, new byte[10], new byte[30], callback);
+        budgetedProducer.produce(TOPIC_NAME, null, new byte[20]);
+        assertThat(budgetedProducer.getUsedBytes(), equalTo(60L));
+
+        callbacks.get(0).onAcknowledged();
+        callbacks.get(0).onAcknowledged();
+
+        assertThat(budgetedProducer.getUsedBytes(), equalTo(20L));
+        verify(callback, times(2)).onAcknowledged();
+    }
+
+    @Test
+    public void blocksSendsOverBudgetUntilAnAcknowledgementFreesRoom() throws InterruptedException {
+        final BudgetedMessageProducer budgetedProducer = new BudgetedMessageProducer(producer, 100L, 10000L);
+        budgetedProducer.produce(TOPIC_NAME, null, new byte[80]);
+
+        final CountDownLatch sent = new CountDownLatch(1);
+        Thread sender = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                budgetedProducer.produce(TOPIC_NAME, null, new byte[40]);
+                sent.countDown();
+            }
+        });
+        sender.start();
+
+        assertThat(sent.await(200, TimeUnit.MILLISECONDS), equalTo(false));
+        callbacks.get(0).onAcknowledged();
+
+        assertThat(sent.await(5, TimeUnit.SECONDS), equalTo(true));
+        assertThat(budgetedProducer.getUsedBytes(), equalTo(40L));
+    }
+
+    @Test
+    public void wakesSendsOverBudgetAsSoonAsASendFails() throws InterruptedException {
+        final BudgetedMessageProducer budgetedProducer = new BudgetedMessageProducer(producer, 100L, 10000L);
+        budgetedProducer.produce(TOPIC_NAME, null, new byte[80]);
+
+        final CountDownLatch sent = new CountDownLatch(1);
+        Thread sender = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                budgetedProducer.produce(TOPIC_NAME, null, new byte[40]);
+                sent.countDown();
+            }
+        });
+        sender.start();
+
+        assertThat(sent.await(200, TimeUnit.MILLISECONDS), equalTo(false));
+        ((SendFailureCallback) callbacks.get(0)).onFailed(new IllegalStateException("broker unavailable"));
+
+        assertThat(sent.await(5, TimeUnit.SECONDS), equalTo(true));
+        assertThat(budgetedProducer.getUsedBytes(), equalTo(40L));
+        verify(producer, never()).flush();
+    }
+
+    @Test
+    public void flushesTheProducerWhenNoAcknowledgementArrivesInTime() {
+        BudgetedMessageProducer budgetedProducer = new BudgetedMessageProducer(producer, 100L, 50L);
+        MetricRegistry metrics = new MetricRegistry();
+        budgetedProducer.registerMetrics(metrics);
+
+        budgetedProducer.produce(TOPIC_NAME, null, new byte[80]);
+        budgetedProducer.produce(TOPIC_NAME, null, new byte[40]);
+
+        verify(producer).flush();
+        assertThat(budgetedProducer.getUsedBytes(), equalTo(40L));
+        assertThat(metrics.timer("budget.blocked").getCount(), equalTo(1L));
+        assertThat(metrics.getGauges().get("budget.foobar.usedBytes").getValue(), equalTo((Object) 40L));
+    }
+
+    @Test
+    public void sendsARecordLargerThanTheBudgetWhenNothingIsOutstanding() {
+        BudgetedMessageProducer budgetedProducer = new BudgetedMessageProducer(producer, 100L, 1000L);
+
+        budgetedProducer.produce(TOPIC_NAME, null, new byte[500]);
+
+        assertThat(budgetedProducer.getUsedBytes(), equalTo(500L));
+        budgetedProducer.flush();
+        assertThat(budgetedProducer.getUsedBytes(), equalTo(0L));
+    }
+}
@@ -0,0 +1,45 @@
+package com.monsanto.data.goldengate.kafka;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMap;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class KafkaClientMetrics_UT {
+
+    @Test
+    public void namesMetricsByClientIdGroupAndTags() {
+        MetricName metricName = new MetricName("record-send-rate", "producer-topic-metrics", "",
+                ImmutableMap.of("client-id", "goldengate-0", "topic", "orders"));
+
+        assertThat(KafkaClientMetrics.nameOf(metricName), equalTo("kafka.goldengate-0.producer-topic-metrics.orders.record-send-rate"));
+    }
+
+    @Test
+    public void registersGaugesReadingTheClientMetric() {
+        MetricRegistry registry = new MetricRegistry();
+        Map<MetricName, Metric> clientMetrics = ImmutableMap.of(
+                new MetricName("batch-size-avg", "producer-metrics", "", ImmutableMap.of("client-id", "gg")), metric(512.0));
+
+        KafkaClientMetrics.register(registry, clientMetrics);
+        KafkaClientMetrics.register(registry, clientMetrics);
+
+        assertThat(registry.getGauges().keySet(), contains("kafka.gg.producer-metrics.batch-size-avg"));
+        assertThat((Double) registry.getGauges().get("kafka.gg.producer-metrics.batch-size-avg").getValue(), equalTo(512.0));
+    }
+
+    private Metric metric(double value) {
+        Metric metric = mock(Metric.class);
+        when(metric.value()).thenReturn(value);
+        return metric;
+    }
+}
@@ -1,27 +1,39 @@
 package com.monsanto.data.goldengate.kafka;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+import com.monsanto.data.goldengate.SendFailureCallback;
 import com.monsanto.data.goldengate.config.KafkaConfiguration;
+import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatcher;
 import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -40,12 +52,13 @@ public class KafkaMessageProducer_UT {
     public void setUp() {
         kafkaMessageProducer = new KafkaMessageProducer(kafkaProducer, TOPIC_NAME);
         Mockito.when(kafkaProducer.send(Matchers.<ProducerRecord<byte[], byte[]>>any())).thenReturn(futureRecordMetadata);
+        Mockito.when(kafkaProducer.send(Matchers.<ProducerRecord<byte[], byte[]>>any(), Matchers.any(Callback.class))).thenReturn(futureRecordMetadata);
     }
 
     @Test
     public void sendsByteArrayToTopic() {
         final byte[] bytes = new byte[2];
-        kafkaMessageProducer.produce(bytes);
+        kafkaMessageProducer.produce(TOPIC_NAME, null, bytes);
         class MatchesOnBytes extends ArgumentMatcher<ProducerRecord<byte[], byte[]>> {
             public boolean matches(Object record) {
                 return ((ProducerRecord) record).value() == bytes;
@@ -55,6 +68,31 @@ public class KafkaMessageProducer_UT {
         verify(kafkaProducer).send(Matchers.argThat(new MatchesOnBytes()));
     }
 
+    @Test
+    public void sendsKeyWithRecord() {
+        final byte[] key = new byte[]{1};
+        kafkaMessageProducer.produce(TOPIC_NAME, key, new byte[2]);
+        class MatchesOnKey extends ArgumentMatcher<ProducerRecord<byte[], byte[]>> {
+            public boolean matches(Object record) {
+                return ((ProducerRecord) record).key() == key;
+            }
+        }
+
+        verify(kafkaProducer).send(Matchers.argThat(new MatchesOnKey()));
+    }
+
+    @Test
+    public void sendsRecordToGivenTopic() {
+        kafkaMessageProducer.produce("other", null, new byte[2]);
+        class MatchesOnTopic extends ArgumentMatcher<ProducerRecord<byte[], byte[]>> {
+            public boolean matches(Object record) {
+                return "other".equals(((ProducerRecord) record).topic());
+            }
+        }
+
+        verify(kafkaProducer).send(Matchers.argThat(new MatchesOnTopic()));
+    }
+
     @Test
     public void canBeCreatedFromProcessConfiguration() {
         String brokerUri = "localhost:9092,localhost:9093";
@@ -79,12 +117,117 @@ public class KafkaMessageProducer_UT {
         assertThat(configuredProducer.getCompressionFormat(), equalTo(gzip));
     }
 
+    @Test
+    public void usesConfiguredClientId() {
+        KafkaConfiguration configuration = KafkaConfiguration.builder("localhost:9092", "topic1")
+                .maxInFlight(1)
+                .clientId(Optional.of("goldengate"))
+                .build();
+
+        KafkaMessageProducer configuredProducer = new KafkaMessageProducer(configuration);
+
+        assertThat(configuredProducer.getClientId(), equalTo("goldengate"));
+    }
+
     @Test(expected = UnableToSendMessageException.class)
     public void throwsExceptionWhenKafkaProducerThrowsOne() throws Exception {
         ExecutionException e = new ExecutionException("blah",new IllegalArgumentException("blah"));
         doThrow(e).when(futureRecordMetadata).get(anyLong(), Matchers.<TimeUnit>any());
 
-        kafkaMessageProducer.produce(new byte[2]);
+        kafkaMessageProducer.produce(TOPIC_NAME, null, new byte[2]);
+    }
+
+    @Test
+    public void async_doesNotWaitForAcknowledgementOnProduce() throws Exception {
+        KafkaMessageProducer asyncProducer = createAsyncProducer(10);
+
+        asyncProducer.produce(TOPIC_NAME, null, new byte[2]);
+        asyncProducer.produce(TOPIC_NAME, null, new byte[2]);
+
+        verify(futureRecordMetadata, never()).get(anyLong(), Matchers.<TimeUnit>any());
+        assertThat(asyncProducer.getInFlightCount(), equalTo(2));
+    }
+
+    @Test
+    public void async_waitsForOldestSendWhenWindowIsFull() throws Exception {
+        KafkaMessageProducer asyncProducer = createAsyncProducer(1);
+
+        asyncProducer.produce(TOPIC_NAME, null, new byte[2]);
+        asyncProducer.produce(TOPIC_NAME, null, new byte[2]);
+
+        verify(futureRecordMetadata, times(1)).get(anyLong(), Matchers.<TimeUnit>any());
+        assertThat(asyncProducer.getInFlightCount(), equalTo(1));
+    }
+
+    @Test
+    public void async_flushWaitsForAllInFlightSends() throws Exception {
+        KafkaMessageProducer asyncProducer = createAsyncProducer(10);
+
+        asyncProducer.produce(TOPIC_NAME, null, new byte[2]);
+        asyncProducer.produce(TOPIC_NAME, null, new byte[2]);
+        asyncProducer.flush();
+
+        verify(futureRecordMetadata, times(2)).get(anyLong(), Matchers.<TimeUnit>any());
+        assertThat(asyncProducer.getInFlightCount(), equalTo(0));
+    }
+
+    @Test(expected = UnableToSendMessageException.class)
+    public void async_flushThrowsExceptionWhenAnInFlightSendFailed() throws Exception {
+        ExecutionException e = new ExecutionException("blah",new IllegalArgumentException("blah"));
+        doThrow(e).when(futureRecordMetadata).get(anyLong(), Matchers.<TimeUnit>any());
+        KafkaMessageProducer asyncProducer = createAsyncProducer(10);
+
+        asyncProducer.produce(TOPIC_NAME, null, new byte[2]);
+        asyncProducer.flush();
+    }
+
+    @Test
+    public void async_notifiesFailureCallbacksOfAFailedSend() {
+        KafkaMessageProducer asyncProducer = createAsyncProducer(10);
+        SendFailureCallback callback = Mockito.mock(SendFailureCallback.class);
+        IllegalStateException failure = new IllegalStateException("broker unavailable");
+
+        asyncProducer.produce(TOPIC_NAME, null, new byte[2], callback);
+        ArgumentCaptor<Callback> kafkaCallback = ArgumentCaptor.forClass(Callback.class);
+        verify(kafkaProducer).send(Matchers.<ProducerRecord<byte[], byte[]>>any(), kafkaCallback.capture());
+        kafkaCallback.getValue().onCompletion(null, failure);
+
+        verify(callback).onFailed(failure);
+        verify(callback, never()).onAcknowledged();
+    }
+
+    @Test
+    public void registersClientMetricsCreatedAfterTheFirstRegistration() {
+        Map<MetricName, Metric> clientMetrics = new HashMap<>();
+        clientMetrics.put(metricName("producer-metrics", "record-send-rate"), metric(1.0));
+        Mockito.<Map<MetricName, ? extends Metric>>when(kafkaProducer.metrics()).thenReturn(clientMetrics);
+        MetricRegistry metrics = new MetricRegistry();
+        kafkaMessageProducer.registerMetrics(metrics);
+
+        kafkaMessageProducer.produce(TOPIC_NAME, null, new byte[2]);
+        clientMetrics.put(metricName("producer-topic-metrics", "record-send-rate"), metric(2.0));
+        kafkaMessageProducer.flush();
+
+        assertThat(metrics.getGauges().keySet(), containsInAnyOrder(
+                "kafka.gg.producer-metrics.record-send-rate", "kafka.gg.producer-topic-metrics.record-send-rate"));
+    }
+
+    private KafkaMessageProducer createAsyncProducer(int maxInFlight) {
+        KafkaConfiguration configuration = KafkaConfiguration.builder("localhost:9092", TOPIC_NAME)
+                .async(true)
+                .maxInFlight(maxInFlight)
+                .build();
+        return new KafkaMessageProducer(kafkaProducer, configuration);
+    }
+
+    private MetricName metricName(String group, String name) {
+        return new MetricName(name, group, "", ImmutableMap.of("client-id", "gg"));
+    }
+
+    private Metric metric(double value) {
+        Metric metric = Mockito.mock(Metric.class);
+        Mockito.when(metric.value()).thenReturn(value);
+        return metric;
     }
 
 }
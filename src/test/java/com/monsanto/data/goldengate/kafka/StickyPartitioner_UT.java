@@ -0,0 +1,95 @@
+package com.monsanto.data.goldengate.kafka;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class StickyPartitioner_UT {
+    private static final String TOPIC_NAME = "foobar";
+    private static final int BATCH_SIZE = 1000;
+
+    private MockProducer producer;
+
+    @Before
+    public void setUp() {
+        producer = producerFor(new boolean[]{true, true, true});
+    }
+
+    @Test
+    public void sticksToOnePartitionUntilTheBatchIsFull() {
+        StickyPartitioner partitioner = new StickyPartitioner(Collections.singleton(TOPIC_NAME), BATCH_SIZE, Long.MAX_VALUE);
+
+        List<Integer> partitions = new ArrayList<>();
+        for (int i = 0; i < 9; i++) {
+            partitions.add(partitioner.partition(TOPIC_NAME, 300, producer));
+        }
+
+        assertThat(partitions, equalTo(Arrays.asList(0, 0, 0, 1, 1, 1, 2, 2, 2)));
+    }
+
+    @Test
+    public void movesOnOnceTheLingerTimeHasPassed() {
+        StickyPartitioner partitioner = new StickyPartitioner(Collections.singleton(TOPIC_NAME), BATCH_SIZE, 0L);
+
+        assertThat(partitioner.partition(TOPIC_NAME, 10, producer), equalTo(0));
+        assertThat(partitioner.partition(TOPIC_NAME, 10, producer), equalTo(1));
+        assertThat(partitioner.partition(TOPIC_NAME, 10, producer), equalTo(2));
+        assertThat(partitioner.partition(TOPIC_NAME, 10, producer), equalTo(0));
+    }
+
+    @Test
+    public void skipsPartitionsWithoutALeader() {
+        producer = producerFor(new boolean[]{true, false, true});
+        StickyPartitioner partitioner = new StickyPartitioner(Collections.singleton(TOPIC_NAME), BATCH_SIZE, 0L);
+
+        assertThat(partitioner.partition(TOPIC_NAME, 10, producer), equalTo(0));
+        assertThat(partitioner.partition(TOPIC_NAME, 10, producer), equalTo(2));
+        assertThat(partitioner.partition(TOPIC_NAME, 10, producer), equalTo(0));
+    }
+
+    @Test
+    public void leavesOtherTopicsToTheProducer() {
+        StickyPartitioner partitioner = new StickyPartitioner(Collections.singleton(TOPIC_NAME), BATCH_SIZE, Long.MAX_VALUE);
+
+        assertThat(partitioner.partition("other", 10, producer), nullValue());
+    }
+
+    @Test
+    public void recordsTheFillOfEveryBatchItLeaves() {
+        StickyPartitioner partitioner = new StickyPartitioner(Collections.singleton(TOPIC_NAME), BATCH_SIZE, Long.MAX_VALUE);
+        MetricRegistry metrics = new MetricRegistry();
+        partitioner.registerMetrics(metrics);
+
+        for (int i = 0; i < 4; i++) {
+            partitioner.partition(TOPIC_NAME, 300, producer);
+        }
+
+        Histogram batchFill = metrics.histogram("partitioner.foobar.batchFill");
+        assertThat(batchFill.getCount(), equalTo(1L));
+        assertThat(batchFill.getSnapshot().getMax(), equalTo(97L));
+        assertThat(metrics.meter("partitioner.foobar.rotations").getCount(), equalTo(2L));
+    }
+
+    private static MockProducer producerFor(boolean[] leaders) {
+        Node node = new Node(0, "localhost", 9092);
+        List<PartitionInfo> partitions = new ArrayList<>();
+        for (int i = 0; i < leaders.length; i++) {
+            partitions.add(new PartitionInfo(TOPIC_NAME, i, leaders[i] ? node : null, new Node[]{node}, new Node[]{node}));
+        }
+        return new MockProducer(new Cluster(Collections.singletonList(node), partitions), true);
+    }
+}
@@ -0,0 +1,146 @@
+package com.monsanto.data.goldengate.kafka;
+
+import com.google.common.base.Optional;
+import com.monsanto.data.goldengate.config.KafkaConfiguration;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.utils.Utils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class StripedMessageProducer_UT {
+    private static final String TOPIC_NAME = "foobar";
+    private static final int PARTITIONS = 4;
+
+    private MockProducer firstProducer;
+    private MockProducer secondProducer;
+    private StripedMessageProducer stripedProducer;
+
+    @Before
+    public void setUp() {
+        Node node = new Node(0, "localhost", 9092);
+        List<PartitionInfo> partitions = new ArrayList<>();
+        for (int i = 0; i < PARTITIONS; i++) {
+            partitions.add(new PartitionInfo(TOPIC_NAME, i, node, new Node[]{node}, new Node[]{node}));
+        }
+        Cluster cluster = new Cluster(Collections.singletonList(node), partitions);
+
+        firstProducer = new MockProducer(cluster, true);
+        secondProducer = new MockProducer(cluster, true);
+        stripedProducer = new StripedMessageProducer(Arrays.asList(
+                new KafkaMessageProducer(firstProducer, TOPIC_NAME),
+                new KafkaMessageProducer(secondProducer, TOPIC_NAME)));
+    }
+
+    @Test
+    public void sendsKeyedRecordsToTheirPartitionThroughItsProducer() {
+        for (int i = 0; i < 20; i++) {
+            stripedProducer.produce(TOPIC_NAME, new byte[]{(byte) i}, new byte[1]);
+        }
+
+        assertThat(firstProducer.history().size() + secondProducer.history().size(), equalTo(20));
+        for (ProducerRecord<byte[], byte[]> record : firstProducer.history()) {
+            assertThat(record.partition(), equalTo(expectedPartition(record.key())));
+            assertThat(record.partition() % 2, equalTo(0));
+        }
+        for (ProducerRecord<byte[], byte[]> record : secondProducer.history()) {
+            assertThat(record.partition(), equalTo(expectedPartition(record.key())));
+            assertThat(record.partition() % 2, equalTo(1));
+        }
+    }
+
+    @Test
+    public void sendsUnkeyedRecordsToEveryPartitionThroughItsProducer() {
+        for (int i = 0; i < 8; i++) {
+            stripedProducer.produce(TOPIC_NAME, null, new byte[1]);
+        }
+
+        assertThat(firstProducer.history(), hasSize(4));
+        assertThat(secondProducer.history(), hasSize(4));
+        Set<Integer> partitions = new HashSet<>();
+        for (ProducerRecord<byte[], byte[]> record : firstProducer.history()) {
+            assertThat(record.partition() % 2, equalTo(0));
+            partitions.add(record.partition());
+        }
+        for (ProducerRecord<byte[], byte[]> record : secondProducer.history()) {
+            assertThat(record.partition() % 2, equalTo(1));
+            partitions.add(record.partition());
+        }
+        assertThat(partitions, hasSize(PARTITIONS));
+    }
+
+    @Test
+    public void sendsStickyRecordsThroughTheProducerOfTheirPartition() {
+        StickyPartitioner partitioner = new StickyPartitioner(Collections.singletonList(TOPIC_NAME), 1000, 60000L);
+        StripedMessageProducer producer = new StripedMessageProducer(Arrays.asList(
+                new KafkaMessageProducer(firstProducer, kafkaConfiguration(), Optional.of(partitioner)),
+                new KafkaMessageProducer(secondProducer, kafkaConfiguration(), Optional.of(partitioner))));
+
+        for (int i = 0; i < 10; i++) {
+            producer.produce(TOPIC_NAME, null, new byte[1]);
+        }
+
+        List<ProducerRecord<byte[], byte[]>> sent = firstProducer.history().isEmpty() ? secondProducer.history() : firstProducer.history();
+        assertThat(sent, hasSize(10));
+        for (ProducerRecord<byte[], byte[]> record : sent) {
+            assertThat(record.partition(), equalTo(sent.get(0).partition()));
+        }
+    }
+
+    @Test
+    public void looksUpTheTopicPartitionsOnce() {
+        MockProducer countingProducer = spy(firstProducer);
+        StripedMessageProducer producer = new StripedMessageProducer(Collections.singletonList(
+                new KafkaMessageProducer(countingProducer, TOPIC_NAME)));
+
+        for (int i = 0; i < 10; i++) {
+            producer.produce(TOPIC_NAME, new byte[]{(byte) i}, new byte[1]);
+            producer.produce(TOPIC_NAME, null, new byte[1]);
+        }
+
+        verify(countingProducer, times(1)).partitionsFor(TOPIC_NAME);
+    }
+
+    @Test
+    public void flushesEveryProducerBeforeRethrowingAFailure() {
+        KafkaMessageProducer failing = mock(KafkaMessageProducer.class);
+        KafkaMessageProducer healthy = mock(KafkaMessageProducer.class);
+        doThrow(new UnableToSendMessageException("failed", null)).when(failing).flush();
+        StripedMessageProducer producer = new StripedMessageProducer(Arrays.asList(failing, healthy));
+
+        try {
+            producer.flush();
+            fail("Expected flush to fail");
+        } catch (UnableToSendMessageException expected) {
+            verify(healthy).flush();
+        }
+    }
+
+    private KafkaConfiguration kafkaConfiguration() {
+        return new KafkaConfiguration("localhost:9092", TOPIC_NAME, Optional.<String>absent());
+    }
+
+    private Integer expectedPartition(byte[] key) {
+        return Utils.abs(Utils.murmur2(key)) % PARTITIONS;
+    }
+}
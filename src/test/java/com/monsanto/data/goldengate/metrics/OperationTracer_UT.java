@@ -0,0 +1,91 @@
+package com.monsanto.data.goldengate.metrics;
+
+import com.goldengate.atg.datasource.DsOperation;
+import com.goldengate.atg.datasource.adapt.Op;
+import com.goldengate.atg.datasource.meta.TableName;
+import com.monsanto.data.goldengate.SendCallback;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.slf4j.Logger;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({Op.class})
+public class OperationTracer_UT {
+    private Logger traceLog;
+    private Op op;
+
+    @Before
+    public void setUp() {
+        traceLog = mock(Logger.class);
+        when(traceLog.isInfoEnabled()).thenReturn(true);
+
+        TableName tableName = mock(TableName.class);
+        when(tableName.getSchemaName()).thenReturn("SALES");
+        when(tableName.getShortName()).thenReturn("ORDERS");
+        op = mock(Op.class);
+        when(op.getTableName()).thenReturn(tableName);
+        when(op.getOperationType()).thenReturn(DsOperation.OpType.DO_INSERT);
+        when(op.getPosition()).thenReturn("00000000030000004567");
+    }
+
+    @Test
+    public void tracesEveryStageOfASlowOperation() {
+        OperationTracer tracer = new OperationTracer(traceLog, 0L);
+        SendCallback lagCallback = mock(SendCallback.class);
+
+        OperationTrace trace = tracer.start();
+        trace.encoded(op, new byte[42]);
+        SendCallback callback = trace.callback(lagCallback);
+        trace.sent();
+        callback.onAcknowledged();
+
+        ArgumentCaptor<String> line = ArgumentCaptor.forClass(String.class);
+        verify(traceLog).info(line.capture());
+        assertThat(line.getValue(), containsString("table=SALES.ORDERS type=DO_INSERT position=00000000030000004567 bytes=42 received="));
+        assertThat(line.getValue(), containsString(" waitMicros="));
+        assertThat(line.getValue(), containsString(" encodeMicros="));
+        assertThat(line.getValue(), containsString(" sendMicros="));
+        assertThat(line.getValue(), containsString(" ackMicros="));
+        assertThat(line.getValue(), containsString(" totalMicros="));
+        verify(lagCallback).onAcknowledged();
+    }
+
+    @Test
+    public void doesNotTraceOperationsFasterThanTheThreshold() {
+        OperationTracer tracer = new OperationTracer(traceLog, 60000L);
+
+        OperationTrace trace = tracer.start();
+        trace.encoded(op, new byte[42]);
+        trace.callback(null).onAcknowledged();
+
+        verify(traceLog, never()).info(anyString());
+    }
+
+    @Test
+    public void countsAnAcknowledgementBeforeTheSendReturnedAsPartOfTheSend() {
+        OperationTracer tracer = new OperationTracer(traceLog, 0L);
+
+        OperationTrace trace = tracer.start(System.nanoTime());
+        trace.encoded(op, new byte[42]);
+        assertThat(trace.callback(null), sameInstance((SendCallback) trace));
+        trace.onAcknowledged();
+        trace.sent();
+
+        ArgumentCaptor<String> line = ArgumentCaptor.forClass(String.class);
+        verify(traceLog).info(line.capture());
+        assertThat(line.getValue(), containsString(" ackMicros=0 "));
+    }
+}
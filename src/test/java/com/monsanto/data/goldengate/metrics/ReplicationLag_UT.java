@@ -0,0 +1,119 @@
+package com.monsanto.data.goldengate.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import com.goldengate.atg.datasource.adapt.Op;
+import com.goldengate.atg.datasource.meta.TableName;
+import com.monsanto.data.goldengate.SendCallback;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({Op.class})
+public class ReplicationLag_UT {
+    private static final long ONE_MINUTE = 60000L;
+
+    private MetricRegistry metrics;
+    private ReplicationLag replicationLag;
+    private TableName tableName;
+
+    @Before
+    public void setUp() {
+        metrics = new MetricRegistry();
+        replicationLag = new ReplicationLag(metrics);
+        tableName = mock(TableName.class);
+        when(tableName.getSchemaName()).thenReturn("SALES");
+        when(tableName.getShortName()).thenReturn("ORDERS");
+    }
+
+    @Test
+    public void recordsLagPerTableWhenAcknowledged() {
+        SendCallback callback = replicationLag.callbackFor(createOp(System.currentTimeMillis() - ONE_MINUTE));
+
+        callback.onAcknowledged();
+
+        long lag = metrics.histogram("replicationLag.SALES.ORDERS").getSnapshot().getMax();
+        assertThat(metrics.histogram("replicationLag.SALES.ORDERS").getCount(), equalTo(1L));
+        assertThat(lag, greaterThanOrEqualTo(ONE_MINUTE));
+        assertThat(lag, lessThan(2 * ONE_MINUTE));
+    }
+
+    @Test
+    public void reportsHighestLatestLagOfAllTables() {
+        TableName otherTable = mock(TableName.class);
+        when(otherTable.getSchemaName()).thenReturn("SALES");
+        when(otherTable.getShortName()).thenReturn("ORDER_LINES");
+        Op otherOp = createOp(System.currentTimeMillis() - 10 * ONE_MINUTE);
+        when(otherOp.getTableName()).thenReturn(otherTable);
+
+        replicationLag.callbackFor(createOp(System.currentTimeMillis() - ONE_MINUTE)).onAcknowledged();
+        replicationLag.callbackFor(otherOp).onAcknowledged();
+
+        Long maxLag = (Long) metrics.getGauges().get("replicationLag.max").getValue();
+        assertThat(maxLag, greaterThanOrEqualTo(10 * ONE_MINUTE));
+        assertThat(maxLag, lessThan(11 * ONE_MINUTE));
+    }
+
+    @Test
+    public void leavesTablesWithoutRecentAcknowledgementsOutOfTheMaximum() throws InterruptedException {
+        replicationLag.setMaxAgeMillis(50L);
+        replicationLag.callbackFor(createOp(System.currentTimeMillis() - 10 * ONE_MINUTE)).onAcknowledged();
+
+        Thread.sleep(100L);
+
+        assertThat((Long) metrics.getGauges().get("replicationLag.max").getValue(), equalTo(0L));
+    }
+
+    @Test
+    public void skipsOperationsWithoutUsableTimestamp() {
+        Op op = mock(Op.class);
+        when(op.getTableName()).thenReturn(tableName);
+        when(op.getTimestamp()).thenReturn("not a timestamp");
+
+        assertThat(replicationLag.callbackFor(op), nullValue());
+    }
+
+    @Test
+    public void recordsLagOfOperationsBeforeTheEpoch() {
+        SendCallback callback = replicationLag.callbackFor(createOp(-ONE_MINUTE));
+
+        assertThat(callback, notNullValue());
+        callback.onAcknowledged();
+        assertThat(metrics.histogram("replicationLag.SALES.ORDERS").getCount(), equalTo(1L));
+    }
+
+    @Test
+    public void parsesTimestampsInLocalTime() {
+        TrailTimestamps timestamps = new TrailTimestamps();
+        long now = System.currentTimeMillis();
+
+        assertThat(timestamps.toMillis(format(now)), equalTo(now));
+        assertThat(timestamps.toMillis(format(now + 1234)), equalTo(now + 1234));
+        assertThat(timestamps.toMillis(format(now + 3 * 3600000L)), equalTo(now + 3 * 3600000L));
+    }
+
+    private Op createOp(long timestampMillis) {
+        Op op = mock(Op.class);
+        when(op.getTableName()).thenReturn(tableName);
+        when(op.getTimestamp()).thenReturn(format(timestampMillis));
+        return op;
+    }
+
+    private String format(long timestampMillis) {
+        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS'000'").format(new Date(timestampMillis));
+    }
+}
@@ -0,0 +1,63 @@
+package com.monsanto.data.goldengate.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import com.goldengate.atg.datasource.DsOperation;
+import com.goldengate.atg.datasource.adapt.Op;
+import com.goldengate.atg.datasource.meta.TableName;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({Op.class})
+public class TableMetrics_UT {
+    private MetricRegistry metrics;
+    private TableMetrics tableMetrics;
+    private TableName tableName;
+
+    @Before
+    public void setUp() {
+        metrics = new MetricRegistry();
+        tableMetrics = new TableMetrics(metrics);
+        tableName = mock(TableName.class);
+        when(tableName.getSchemaName()).thenReturn("SALES");
+        when(tableName.getShortName()).thenReturn("ORDERS");
+    }
+
+    @Test
+    public void countsOperationsByType() {
+        tableMetrics.recordMessage(createOp(DsOperation.OpType.DO_INSERT), new byte[1]);
+        tableMetrics.recordMessage(createOp(DsOperation.OpType.DO_UPDATE_FIELDCOMP), new byte[1]);
+        tableMetrics.recordOperation(createOp(DsOperation.OpType.DO_UNIFIED_UPDATE_VAL));
+        tableMetrics.recordOperation(createOp(DsOperation.OpType.DO_DELETE));
+
+        assertThat(metrics.meter("table.SALES.ORDERS.inserts").getCount(), equalTo(1L));
+        assertThat(metrics.meter("table.SALES.ORDERS.updates").getCount(), equalTo(2L));
+        assertThat(metrics.meter("table.SALES.ORDERS.deletes").getCount(), equalTo(1L));
+    }
+
+    @Test
+    public void recordsEncodedBytesAndMessageSizes() {
+        tableMetrics.recordMessage(createOp(DsOperation.OpType.DO_INSERT), new byte[100]);
+        tableMetrics.recordMessage(createOp(DsOperation.OpType.DO_INSERT), new byte[300]);
+        tableMetrics.recordOperation(createOp(DsOperation.OpType.DO_INSERT));
+
+        assertThat(metrics.meter("table.SALES.ORDERS.bytes").getCount(), equalTo(400L));
+        assertThat(metrics.histogram("table.SALES.ORDERS.messageSize").getCount(), equalTo(2L));
+        assertThat(metrics.histogram("table.SALES.ORDERS.messageSize").getSnapshot().getMax(), equalTo(300L));
+    }
+
+    private Op createOp(DsOperation.OpType opType) {
+        Op op = mock(Op.class);
+        when(op.getTableName()).thenReturn(tableName);
+        when(op.getOperationType()).thenReturn(opType);
+        return op;
+    }
+}
@@ -0,0 +1,78 @@
+package com.monsanto.data.goldengate.metrics;
+
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class TrailTimestamps_UT {
+    private final TrailTimestamps timestamps = new TrailTimestamps();
+
+    @Test
+    public void parsesTimestampsOfManyDifferentHours() {
+        long start = System.currentTimeMillis();
+
+        for (int i = 0; i < 1000; i++) {
+            long millis = start - i * 7919000L;
+            assertThat(timestamps.toMillis(format(millis)), equalTo(millis));
+            assertThat(timestamps.toMillis(format(start)), equalTo(start));
+        }
+    }
+
+    @Test
+    public void parsesHistoricalTimestamps() throws ParseException {
+        assertThat(timestamps.toMillis("1900-01-01 00:00:00.000000"), equalTo(parse("1900-01-01 00:00:00.000")));
+        assertThat(timestamps.toMillis("1969-12-31 23:59:59.999000"), equalTo(parse("1969-12-31 23:59:59.999")));
+        assertThat(timestamps.toMillis("1582-10-15 12:00:00"), equalTo(parse("1582-10-15 12:00:00.000")));
+    }
+
+    @Test
+    public void parsesColumnDatesAndFractionsOfAnyLength() throws ParseException {
+        assertThat(timestamps.toMillis("2015-05-01:23:59:01"), equalTo(parse("2015-05-01 23:59:01.000")));
+        assertThat(timestamps.toMillis("2015-05-01 23:59:01.5"), equalTo(parse("2015-05-01 23:59:01.500")));
+        assertThat(timestamps.toMillis("2015-05-01 23:59:01.123456789"), equalTo(parse("2015-05-01 23:59:01.123")));
+        assertThat(timestamps.toMillis("2016-02-29 00:00:00"), equalTo(parse("2016-02-29 00:00:00.000")));
+    }
+
+    @Test
+    public void rejectsMalformedTimestamps() {
+        assertInvalid(null);
+        assertInvalid("");
+        assertInvalid("2015-05-01");
+        assertInvalid("2015/05/01 23:59:01.000000");
+        assertInvalid("2015-05-01T23:59:01.000000");
+        assertInvalid("2015-05-01 23.59.01.000000");
+        assertInvalid("2015-05-01 23:59:01,000000");
+        assertInvalid("2015-05-01 23:59:01.");
+        assertInvalid("2015-05-01 23:59:01.12a");
+        assertInvalid("2015-05-01 23:59:01.000000 +01:00");
+        assertInvalid("2015-5-01 23:59:01.000000");
+    }
+
+    @Test
+    public void rejectsFieldsOutOfRange() {
+        assertInvalid("2015-13-01 00:00:00");
+        assertInvalid("2015-00-01 00:00:00");
+        assertInvalid("2015-04-31 00:00:00");
+        assertInvalid("2015-02-29 00:00:00");
+        assertInvalid("2015-05-01 24:00:00");
+        assertInvalid("2015-05-01 23:60:00");
+        assertInvalid("2015-05-01 23:59:60");
+    }
+
+    private void assertInvalid(String timestamp) {
+        assertThat(timestamp, timestamps.toMillis(timestamp), equalTo(TrailTimestamps.INVALID));
+    }
+
+    private long parse(String timestamp) throws ParseException {
+        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").parse(timestamp).getTime();
+    }
+
+    private String format(long timestampMillis) {
+        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS'000'").format(new Date(timestampMillis));
+    }
+}
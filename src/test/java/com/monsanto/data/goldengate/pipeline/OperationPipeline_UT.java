@@ -0,0 +1,252 @@
+package com.monsanto.data.goldengate.pipeline;
+
+import com.codahale.metrics.MetricRegistry;
+import com.goldengate.atg.datasource.DsConfiguration;
+import com.goldengate.atg.datasource.DsOperation;
+import com.goldengate.atg.datasource.DsTransaction;
+import com.goldengate.atg.datasource.adapt.Op;
+import com.goldengate.atg.datasource.adapt.Tx;
+import com.goldengate.atg.datasource.meta.DsMetaData;
+import com.goldengate.atg.datasource.meta.TableName;
+import com.monsanto.data.goldengate.MessageEncoder;
+import com.monsanto.data.goldengate.MessageProducer;
+import com.monsanto.data.goldengate.SendCallback;
+import com.monsanto.data.goldengate.TxFactory;
+import com.monsanto.data.goldengate.config.PipelineConfiguration;
+import com.monsanto.data.goldengate.metrics.ReplicationLag;
+import com.monsanto.data.goldengate.metrics.TableMetrics;
+import com.monsanto.data.goldengate.table.TableDescriptor;
+import com.monsanto.data.goldengate.table.TableDescriptorCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({Op.class, DsTransaction.class, DsOperation.class})
+public class OperationPipeline_UT {
+    private static final String TOPIC_NAME = "foobar";
+    private static final int ENCODER_THREADS = 3;
+
+    @Mock
+    private MessageProducer messageProducer;
+    @Mock
+    private TableDescriptorCache tableDescriptors;
+    @Mock
+    private TableDescriptor tableDescriptor;
+    @Mock
+    private TxFactory txFactory;
+    @Mock
+    private Tx tx;
+    @Mock
+    private TableName tableName;
+
+    private final List<Integer> producedMessages = Collections.synchronizedList(new ArrayList<Integer>());
+    private OperationPipeline pipeline;
+
+    @Before
+    public void setUp() {
+        when(tableDescriptors.descriptorFor(Matchers.any(TableName.class))).thenReturn(tableDescriptor);
+        when(tableDescriptor.getTopic()).thenReturn(TOPIC_NAME);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                byte[] message = (byte[]) invocation.getArguments()[2];
+                producedMessages.add((int) message[0]);
+                return null;
+            }
+        }).when(messageProducer).produce(Matchers.eq(TOPIC_NAME), Matchers.<byte[]>any(), Matchers.<byte[]>any(),
+                Matchers.any(SendCallback.class));
+    }
+
+    @After
+    public void tearDown() {
+        if (pipeline != null) {
+            pipeline.close();
+        }
+    }
+
+    @Test
+    public void sendsMessagesInPublishOrderWhenEncodersFinishOutOfOrder() {
+        startPipeline(8, new SlowEncoder(-1));
+        List<Integer> expected = new ArrayList<>();
+
+        for (int i = 0; i < 100; i++) {
+            pipeline.publish(tx, createOp(i));
+            expected.add(i);
+        }
+        pipeline.awaitDrained();
+
+        assertThat(producedMessages, equalTo(expected));
+    }
+
+    @Test
+    public void buildsAdaptersOfCapturedOperationsWithTheTxFactory() {
+        DsTransaction transaction = mock(DsTransaction.class);
+        DsOperation operation = mock(DsOperation.class);
+        DsMetaData metaData = mock(DsMetaData.class);
+        DsConfiguration config = mock(DsConfiguration.class);
+        Op op = createOp(7);
+        when(operation.getTableName()).thenReturn(tableName);
+        when(txFactory.createAdapterTx(transaction, metaData, config)).thenReturn(tx);
+        when(txFactory.createAdapterOp(operation, null, config)).thenReturn(op);
+        startPipeline(8, new SlowEncoder(-1));
+
+        pipeline.publish(transaction, operation, metaData, config);
+        pipeline.awaitDrained();
+
+        assertThat(producedMessages, equalTo(Collections.singletonList(7)));
+    }
+
+    @Test
+    public void stopsSendingAndRethrowsAfterEncodingFailure() {
+        CountDownLatch published = new CountDownLatch(1);
+        startPipeline(16, new SlowEncoder(3, published));
+
+        for (int i = 0; i < 10; i++) {
+            pipeline.publish(tx, createOp(i));
+        }
+        published.countDown();
+
+        try {
+            pipeline.awaitDrained();
+            fail("expected encoding failure to be rethrown");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), equalTo("cannot encode 3"));
+        }
+        assertThat(producedMessages, equalTo(Arrays.asList(0, 1, 2)));
+    }
+
+    @Test
+    public void rethrowsErrorsOfTheSequencerInsteadOfWaitingForIt() {
+        startPipeline(8, new SlowEncoder(-1));
+        doThrow(new OutOfMemoryError("Java heap space")).when(messageProducer).produce(Matchers.eq(TOPIC_NAME),
+                Matchers.<byte[]>any(), Matchers.<byte[]>any(), Matchers.any(SendCallback.class));
+
+        pipeline.publish(tx, createOp(0));
+
+        try {
+            pipeline.awaitDrained();
+            fail("expected the error to be rethrown");
+        } catch (IllegalStateException e) {
+            assertThat(e.getCause(), instanceOf(OutOfMemoryError.class));
+        }
+    }
+
+    @Test
+    public void parksIdleThreadsUntilOperationsArePublished() throws InterruptedException {
+        startPipeline(8, new SlowEncoder(-1));
+        pipeline.publish(tx, createOp(0));
+        pipeline.awaitDrained();
+        Thread.sleep(50);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Map<Long, Long> cpuTimes = new HashMap<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("gg-kafka-")) {
+                cpuTimes.put(thread.getId(), threads.getThreadCpuTime(thread.getId()));
+            }
+        }
+        Thread.sleep(300);
+
+        for (Map.Entry<Long, Long> cpuTime : cpuTimes.entrySet()) {
+            long idleCpuNanos = threads.getThreadCpuTime(cpuTime.getKey()) - cpuTime.getValue();
+            assertThat(idleCpuNanos, lessThan(TimeUnit.MILLISECONDS.toNanos(3)));
+        }
+
+        pipeline.publish(tx, createOp(1));
+        pipeline.awaitDrained();
+        assertThat(producedMessages, equalTo(Arrays.asList(0, 1)));
+    }
+
+    private void startPipeline(int ringSize, MessageEncoder encoder) {
+        MetricRegistry metrics = new MetricRegistry();
+        List<MessageEncoder> encoders = new ArrayList<>();
+        for (int i = 0; i < ENCODER_THREADS; i++) {
+            encoders.add(encoder);
+        }
+
+        pipeline = new OperationPipeline(new PipelineConfiguration(true, ringSize, ENCODER_THREADS), encoders,
+                messageProducer, tableDescriptors, txFactory, metrics, new ReplicationLag(metrics),
+                new TableMetrics(metrics));
+        pipeline.start();
+    }
+
+    private Op createOp(int id) {
+        Op op = mock(Op.class);
+        when(op.getSeqno()).thenReturn((long) id);
+        when(op.getTableName()).thenReturn(tableName);
+        return op;
+    }
+
+    private static class SlowEncoder implements MessageEncoder {
+        private final int failingId;
+        private final CountDownLatch started;
+
+        private SlowEncoder(int failingId) {
+            this(failingId, new CountDownLatch(0));
+        }
+
+        private SlowEncoder(int failingId, CountDownLatch started) {
+            this.failingId = failingId;
+            this.started = started;
+        }
+
+        @Override
+        public byte[] encode(Tx tx, Op op) {
+            try {
+                started.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            int id = (int) op.getSeqno();
+            if (id == failingId) {
+                throw new IllegalStateException("cannot encode " + id);
+            }
+            if (id % 3 == 0) {
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return new byte[]{(byte) id};
+        }
+
+        @Override
+        public byte[] encodeKey(Op op) {
+            return null;
+        }
+
+        @Override
+        public void metaDataChanged(DsMetaData metaData) {
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.monsanto.data.goldengate.spill;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class SpillLog_UT {
+    private static final int SEGMENT_SIZE = 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private SpillLog spillLog;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.newFolder("spill");
+        spillLog = new SpillLog(directory, SEGMENT_SIZE);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        spillLog.close();
+    }
+
+    @Test
+    public void readsMessagesBackInAppendOrder() throws IOException {
+        spillLog.append("first", "key".getBytes(), "one".getBytes());
+        spillLog.append("second", null, "two".getBytes());
+
+        SpilledMessage first = spillLog.next();
+        assertThat(first.topic, equalTo("first"));
+        assertThat(new String(first.key), equalTo("key"));
+        assertThat(new String(first.value), equalTo("one"));
+
+        SpilledMessage second = spillLog.next();
+        assertThat(second.topic, equalTo("second"));
+        assertThat(second.key, nullValue());
+        assertThat(new String(second.value), equalTo("two"));
+
+        assertThat(spillLog.next(), nullValue());
+    }
+
+    @Test
+    public void rewindReadsUncommittedMessagesAgain() throws IOException {
+        spillLog.append("topic", null, "one".getBytes());
+        spillLog.append("topic", null, "two".getBytes());
+
+        spillLog.next();
+        spillLog.commit();
+        spillLog.next();
+        spillLog.rewind();
+
+        assertThat(new String(spillLog.next().value), equalTo("two"));
+        assertThat(spillLog.isEmpty(), equalTo(false));
+
+        spillLog.commit();
+        assertThat(spillLog.isEmpty(), equalTo(true));
+        assertThat(spillLog.pendingBytes(), equalTo(0L));
+    }
+
+    @Test
+    public void resumesFromTheCommittedPositionWhenReopened() throws IOException {
+        spillLog.append("topic", null, "one".getBytes());
+        spillLog.append("topic", null, "two".getBytes());
+        spillLog.append("topic", null, "three".getBytes());
+        spillLog.next();
+        spillLog.commit();
+        spillLog.next();
+        spillLog.close();
+
+        spillLog = new SpillLog(directory, SEGMENT_SIZE);
+
+        assertThat(new String(spillLog.next().value), equalTo("two"));
+        assertThat(new String(spillLog.next().value), equalTo("three"));
+        assertThat(spillLog.next(), nullValue());
+    }
+
+    @Test
+    public void deletesSegmentsOnceTheyAreCommitted() throws IOException {
+        byte[] value = new byte[300];
+        for (int i = 0; i < 9; i++) {
+            spillLog.append("topic", null, value);
+        }
+        assertThat(directory.listFiles(), arrayWithSize(3));
+
+        while (spillLog.next() != null) {
+            spillLog.commit();
+        }
+
+        assertThat(directory.listFiles(), arrayWithSize(1));
+        assertThat(spillLog.isEmpty(), equalTo(true));
+    }
+}
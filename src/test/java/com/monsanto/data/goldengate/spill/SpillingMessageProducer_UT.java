@@ -0,0 +1,188 @@
+package com.monsanto.data.goldengate.spill;
+
+import com.monsanto.data.goldengate.MessageProducer;
+import com.monsanto.data.goldengate.SendCallback;
+import com.monsanto.data.goldengate.kafka.UnableToSendMessageException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class SpillingMessageProducer_UT {
+    private static final String TOPIC_NAME = "foobar";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MessageProducer producer;
+    private File directory;
+    private SpillLog spillLog;
+    private SpillingMessageProducer spillingProducer;
+
+    @Before
+    public void setUp() throws IOException {
+        producer = mock(MessageProducer.class);
+        directory = folder.newFolder("spill");
+        spillLog = new SpillLog(directory, 1024);
+        spillingProducer = new SpillingMessageProducer(producer, spillLog, 10L, true, 8L);
+    }
+
+    @After
+    public void tearDown() {
+        spillingProducer.terminate();
+    }
+
+    @Test
+    public void sendsDirectlyWhileKafkaIsAvailable() {
+        spillingProducer.produce(TOPIC_NAME, null, bytes("one"));
+        spillingProducer.flush();
+
+        verify(producer).produce(eq(TOPIC_NAME), isNull(byte[].class), eq(bytes("one")), any(SendCallback.class));
+        verify(producer).flush();
+        assertThat(spillingProducer.isSpilling(), equalTo(false));
+        assertThat(spillLog.isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void spillsUnacknowledgedAndLaterMessagesWhenAFlushFails() {
+        doThrow(new UnableToSendMessageException("down", null)).doNothing().when(producer).flush();
+
+        spillingProducer.produce(TOPIC_NAME, null, bytes("one"));
+        spillingProducer.flush();
+        spillingProducer.produce(TOPIC_NAME, null, bytes("two"));
+
+        assertThat(spillingProducer.isSpilling(), equalTo(true));
+        verify(producer, times(1)).produce(anyString(), any(byte[].class), any(byte[].class), any(SendCallback.class));
+        assertThat(new String(spillLog.next().value), equalTo("one"));
+        assertThat(new String(spillLog.next().value), equalTo("two"));
+        spillLog.rewind();
+    }
+
+    @Test
+    public void drainsSpilledMessagesInOrderThenSendsDirectlyAgain() {
+        doThrow(new UnableToSendMessageException("down", null))
+                .doThrow(new UnableToSendMessageException("still down", null))
+                .doNothing().when(producer).flush();
+
+        spillingProducer.produce(TOPIC_NAME, null, bytes("one"));
+        spillingProducer.flush();
+        spillingProducer.produce(TOPIC_NAME, null, bytes("two"));
+
+        try {
+            spillingProducer.drainBatch();
+        } catch (UnableToSendMessageException expected) {
+            // retried by the drainer after the backoff
+        }
+        assertThat(spillingProducer.isSpilling(), equalTo(true));
+
+        assertThat(spillingProducer.drainBatch(), equalTo(true));
+        assertThat(spillingProducer.drainBatch(), equalTo(false));
+        assertThat(spillingProducer.isSpilling(), equalTo(false));
+
+        spillingProducer.produce(TOPIC_NAME, null, bytes("three"));
+
+        ArgumentCaptor<byte[]> values = ArgumentCaptor.forClass(byte[].class);
+        verify(producer, times(6)).produce(eq(TOPIC_NAME), isNull(byte[].class), values.capture(), any(SendCallback.class));
+        List<String> sent = new ArrayList<>();
+        for (byte[] value : values.getAllValues()) {
+            sent.add(new String(value));
+        }
+        assertThat(sent, contains("one", "one", "two", "one", "two", "three"));
+    }
+
+    @Test
+    public void releasesRetainedMessagesOnceAcknowledged() {
+        SendCallback callback = mock(SendCallback.class);
+
+        spillingProducer.produce(TOPIC_NAME, null, bytes("one"), callback);
+        assertThat(spillingProducer.getRetainedBytes(), equalTo(3L));
+
+        ArgumentCaptor<SendCallback> sent = ArgumentCaptor.forClass(SendCallback.class);
+        verify(producer).produce(eq(TOPIC_NAME), isNull(byte[].class), eq(bytes("one")), sent.capture());
+        sent.getValue().onAcknowledged();
+
+        assertThat(spillingProducer.getRetainedBytes(), equalTo(0L));
+        verify(callback).onAcknowledged();
+    }
+
+    @Test
+    public void spillsOnceRetainedMessagesTakeTheMaximumBytes() {
+        spillingProducer.produce(TOPIC_NAME, null, bytes("one"));
+        spillingProducer.produce(TOPIC_NAME, null, bytes("two"));
+        spillingProducer.produce(TOPIC_NAME, null, bytes("three"));
+
+        assertThat(spillingProducer.isSpilling(), equalTo(true));
+        assertThat(spillingProducer.getRetainedBytes(), equalTo(0L));
+        verify(producer, times(2)).produce(anyString(), any(byte[].class), any(byte[].class), any(SendCallback.class));
+        assertThat(new String(spillLog.next().value), equalTo("one"));
+        assertThat(new String(spillLog.next().value), equalTo("two"));
+        assertThat(new String(spillLog.next().value), equalTo("three"));
+        spillLog.rewind();
+    }
+
+    @Test
+    public void keepsOrderWhenRetainedMessagesFailAfterTheMaximumBytesWereReached() {
+        doThrow(new UnableToSendMessageException("one failed", null)).doNothing().when(producer).flush();
+
+        spillingProducer.produce(TOPIC_NAME, null, bytes("one"));
+        spillingProducer.produce(TOPIC_NAME, null, bytes("two"));
+        spillingProducer.produce(TOPIC_NAME, null, bytes("three"));
+
+        try {
+            spillingProducer.drainBatch();
+        } catch (UnableToSendMessageException expected) {
+            // retried by the drainer after the backoff
+        }
+        assertThat(spillingProducer.drainBatch(), equalTo(true));
+        assertThat(spillingProducer.drainBatch(), equalTo(false));
+
+        ArgumentCaptor<byte[]> values = ArgumentCaptor.forClass(byte[].class);
+        verify(producer, times(8)).produce(eq(TOPIC_NAME), isNull(byte[].class), values.capture(), any(SendCallback.class));
+        List<String> sent = new ArrayList<>();
+        for (byte[] value : values.getAllValues()) {
+            sent.add(new String(value));
+        }
+        assertThat(sent, contains("one", "two", "one", "two", "three", "one", "two", "three"));
+    }
+
+    @Test
+    public void deletesSpillSegmentsFromDiskAsTheyAreDrained() {
+        doThrow(new UnableToSendMessageException("down", null)).doNothing().when(producer).flush();
+        spillingProducer.flush();
+        for (int i = 0; i < 9; i++) {
+            spillingProducer.produce(TOPIC_NAME, null, new byte[300]);
+        }
+        assertThat(directory.listFiles(), arrayWithSize(3));
+
+        while (spillingProducer.drainBatch()) {
+            // drains everything in one batch
+        }
+
+        assertThat(directory.listFiles(), arrayWithSize(1));
+        assertThat(spillingProducer.isSpilling(), equalTo(false));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes();
+    }
+}
@@ -0,0 +1,260 @@
+package com.monsanto.data.goldengate.table;
+
+import com.goldengate.atg.datasource.DsToken;
+import com.goldengate.atg.datasource.meta.ColumnMetaData;
+import com.goldengate.atg.datasource.meta.DsMetaData;
+import com.goldengate.atg.datasource.meta.TableMetaData;
+import com.goldengate.atg.datasource.meta.TableName;
+import com.google.common.base.Optional;
+import com.monsanto.data.goldengate.config.Conf;
+import com.monsanto.data.goldengate.config.FilterConfiguration;
+import com.monsanto.data.goldengate.config.KafkaConfiguration;
+import com.monsanto.data.goldengate.config.TableConfiguration;
+import com.monsanto.data.goldengate.encoder.EncoderType;
+import com.monsanto.data.goldengate.encoder.exception.UnableToEncodeMessageException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TableDescriptorCache_UT {
+    private static final String DEFAULT_TOPIC = "firehose";
+
+    private Conf configuration;
+    private TableDescriptorCache tableDescriptors;
+
+    @Before
+    public void setUp() {
+        KafkaConfiguration kafkaConfiguration = new KafkaConfiguration("localhost:9092", DEFAULT_TOPIC, Optional.<String>absent());
+        configuration = new Conf(EncoderType.JSON, kafkaConfiguration, null);
+        tableDescriptors = new TableDescriptorCache(configuration);
+    }
+
+    @Test
+    public void routesUnconfiguredTablesToDefaultTopic() {
+        assertThat(topicFor(tableName("SALES", "ORDERS")), equalTo(DEFAULT_TOPIC));
+    }
+
+    @Test
+    public void routesConfiguredTableToItsTopic() {
+        configure(tableConfiguration("sales", "orders", "orders-topic"));
+
+        assertThat(topicFor(tableName("SALES", "ORDERS")), equalTo("orders-topic"));
+    }
+
+    @Test
+    public void routesTablesMatchingSchemaWildcardToItsTopic() {
+        configure(tableConfiguration("sales", "*", "sales-topic"));
+
+        assertThat(topicFor(tableName("SALES", "ORDERS")), equalTo("sales-topic"));
+        assertThat(topicFor(tableName("HR", "EMPLOYEES")), equalTo(DEFAULT_TOPIC));
+    }
+
+    @Test
+    public void prefersExactTableConfigurationOverWildcard() {
+        configure(tableConfiguration("sales", "*", "sales-topic"), tableConfiguration("sales", "orders", "orders-topic"));
+
+        assertThat(topicFor(tableName("SALES", "ORDERS")), equalTo("orders-topic"));
+        assertThat(topicFor(tableName("SALES", "ORDER_LINES")), equalTo("sales-topic"));
+    }
+
+    @Test
+    public void matchesWildcardsWithinNames() {
+        configure(tableConfiguration("sales", "order_*", "order-detail-topic"));
+
+        assertThat(topicFor(tableName("SALES", "ORDER_LINES")), equalTo("order-detail-topic"));
+        assertThat(topicFor(tableName("SALES", "ORDERS")), equalTo(DEFAULT_TOPIC));
+    }
+
+    @Test
+    public void reusesDescriptorUntilMetaDataChanges() {
+        TableName tableName = tableName("SALES", "ORDERS");
+        TableDescriptor descriptor = tableDescriptors.descriptorFor(tableName);
+
+        assertThat(tableDescriptors.descriptorFor(tableName), sameInstance(descriptor));
+
+        tableDescriptors.metaDataChanged(metaData(tableName, "ID", "NAME"));
+
+        TableDescriptor rebuilt = tableDescriptors.descriptorFor(tableName);
+        assertThat(rebuilt, not(sameInstance(descriptor)));
+        assertThat(rebuilt.getColumnNames(), equalTo(Arrays.asList("ID", "NAME")));
+    }
+
+    @Test
+    public void preEncodesColumnNamesByPosition() {
+        TableName tableName = tableName("SALES", "ORDERS");
+        tableDescriptors.metaDataChanged(metaData(tableName, "ID", "NAME"));
+
+        TableDescriptor descriptor = tableDescriptors.descriptorFor(tableName);
+
+        assertThat(descriptor.getSerializedColumnName(1).getValue(), equalTo("NAME"));
+        assertThat(descriptor.getSerializedColumnName(2), nullValue());
+    }
+
+    @Test
+    public void resolvesConfiguredKeyColumnsInTableOrder() {
+        TableName tableName = tableName("SALES", "ORDERS");
+        configure(TableConfiguration.builder("sales", "orders").keyColumns(Arrays.asList("name", "id")).build());
+        tableDescriptors.metaDataChanged(metaData(tableName, "ID", "CODE", "NAME"));
+
+        assertThat(tableDescriptors.descriptorFor(tableName).getKeyColumns(), equalTo(new int[]{0, 2}));
+    }
+
+    @Test(expected = UnableToEncodeMessageException.class)
+    public void failsOnlyWhenMissingKeyColumnIsUsed() {
+        TableName tableName = tableName("SALES", "ORDERS");
+        configure(TableConfiguration.builder("sales", "orders").keyColumns(Collections.singletonList("missing")).build());
+        tableDescriptors.metaDataChanged(metaData(tableName, "ID"));
+
+        TableDescriptor descriptor = tableDescriptors.descriptorFor(tableName);
+
+        descriptor.getKeyColumns();
+    }
+
+    @Test
+    public void writesEveryColumnWithoutProjection() {
+        TableName tableName = tableName("SALES", "ORDERS");
+        tableDescriptors.metaDataChanged(metaData(tableName, "ID", "NAME"));
+
+        TableDescriptor descriptor = tableDescriptors.descriptorFor(tableName);
+
+        assertThat(descriptor.isProjected(), equalTo(false));
+        assertThat(descriptor.isWrittenColumn(1), equalTo(true));
+    }
+
+    @Test
+    public void resolvesIncludedAndExcludedColumnsIgnoringUnknownNames() {
+        TableName tableName = tableName("SALES", "ORDERS");
+        configure(TableConfiguration.builder("sales", "orders")
+                .includeColumns(Arrays.asList("id", "name", "audit", "missing"))
+                .excludeColumns(Collections.singletonList("audit"))
+                .build());
+        tableDescriptors.metaDataChanged(metaData(tableName, "ID", "NAME", "AUDIT", "PAYLOAD"));
+
+        TableDescriptor descriptor = tableDescriptors.descriptorFor(tableName);
+
+        assertThat(descriptor.isProjected(), equalTo(true));
+        assertThat(descriptor.isWrittenColumn(0), equalTo(true));
+        assertThat(descriptor.isWrittenColumn(1), equalTo(true));
+        assertThat(descriptor.isWrittenColumn(2), equalTo(false));
+        assertThat(descriptor.isWrittenColumn(3), equalTo(false));
+    }
+
+    @Test
+    public void excludesColumnsFromEveryColumnWhenNoneAreIncluded() {
+        TableName tableName = tableName("SALES", "ORDERS");
+        configure(TableConfiguration.builder("sales", "orders").excludeColumns(Collections.singletonList("payload")).build());
+        tableDescriptors.metaDataChanged(metaData(tableName, "ID", "PAYLOAD", "NAME"));
+
+        TableDescriptor descriptor = tableDescriptors.descriptorFor(tableName);
+
+        assertThat(descriptor.isWrittenColumn(0), equalTo(true));
+        assertThat(descriptor.isWrittenColumn(1), equalTo(false));
+        assertThat(descriptor.isWrittenColumn(2), equalTo(true));
+    }
+
+    @Test
+    public void marksTablesOutsideTheFilterAsNotReplicated() {
+        KafkaConfiguration kafkaConfiguration = new KafkaConfiguration("localhost:9092", DEFAULT_TOPIC, Optional.<String>absent());
+        configuration = Conf.builder(EncoderType.JSON, kafkaConfiguration)
+                .filter(new FilterConfiguration(Collections.singletonList("sales.*"), Collections.singletonList("sales.audit_*")))
+                .build();
+        tableDescriptors = new TableDescriptorCache(configuration);
+
+        assertThat(tableDescriptors.descriptorFor(tableName("SALES", "ORDERS")).isReplicated(), equalTo(true));
+        assertThat(tableDescriptors.descriptorFor(tableName("SALES", "AUDIT_ORDERS")).isReplicated(), equalTo(false));
+        assertThat(tableDescriptors.descriptorFor(tableName("HR", "EMPLOYEES")).isReplicated(), equalTo(false));
+    }
+
+    @Test
+    public void readsTokensIgnoringCase() {
+        TableName tableName = tableName("SALES", "ORDERS");
+        configure(new TableConfiguration("sales", "orders", Arrays.asList("tkn-csn", "TKN-MISSING")));
+        DsToken token = mock(DsToken.class);
+        when(token.isSet()).thenReturn(true);
+        when(token.toString()).thenReturn("1234");
+        Map<String, DsToken> tokens = new HashMap<>();
+        tokens.put("Tkn-Csn", token);
+
+        TableDescriptor descriptor = tableDescriptors.descriptorFor(tableName);
+
+        assertThat(descriptor.getTokenNames(), equalTo(Arrays.asList("TKN-CSN", "TKN-MISSING")));
+        assertThat(descriptor.readToken(tokens, 0), equalTo("1234"));
+        assertThat(descriptor.readToken(tokens, 0), equalTo("1234"));
+        assertThat(descriptor.readToken(tokens, 1), nullValue());
+    }
+
+    @Test
+    public void rebuildsOnlyReconfiguredTablesOnReload() {
+        configure(tableConfiguration("sales", "orders", "orders-topic"), tableConfiguration("sales", "customers", "customers-topic"));
+        TableName orders = tableName("SALES", "ORDERS");
+        TableName customers = tableName("SALES", "CUSTOMERS");
+        TableDescriptor ordersDescriptor = tableDescriptors.descriptorFor(orders);
+        TableDescriptor customersDescriptor = tableDescriptors.descriptorFor(customers);
+
+        Conf reloaded = Conf.builder(EncoderType.JSON, configuration.kafka())
+                .addTableConfiguration(tableConfiguration("sales", "orders", "orders-topic"))
+                .addTableConfiguration(tableConfiguration("sales", "customers", "customers-v2"))
+                .build();
+
+        assertThat(tableDescriptors.reconfigure(configuration.reloadedWith(reloaded)), equalTo(1));
+        assertThat(tableDescriptors.descriptorFor(orders), sameInstance(ordersDescriptor));
+        assertThat(tableDescriptors.descriptorFor(customers), not(sameInstance(customersDescriptor)));
+        assertThat(topicFor(customers), equalTo("customers-v2"));
+    }
+
+    /**
+     * Replaces the configuration with one holding the given tables, and the cache with one built for it.
+     */
+    private void configure(TableConfiguration... tableConfigurations) {
+        Conf.Builder builder = configuration.toBuilder();
+        for (TableConfiguration tableConfiguration : tableConfigurations) {
+            builder.addTableConfiguration(tableConfiguration);
+        }
+        configuration = builder.build();
+        tableDescriptors = new TableDescriptorCache(configuration);
+    }
+
+    private String topicFor(TableName tableName) {
+        return tableDescriptors.descriptorFor(tableName).getTopic();
+    }
+
+    private TableConfiguration tableConfiguration(String schema, String name, String topic) {
+        return TableConfiguration.builder(schema, name).topic(topic).build();
+    }
+
+    private DsMetaData metaData(TableName tableName, String... columnNames) {
+        TableMetaData tableMetaData = mock(TableMetaData.class);
+        when(tableMetaData.getNumColumns()).thenReturn(columnNames.length);
+        for (int i = 0; i < columnNames.length; i++) {
+            ColumnMetaData columnMetaData = mock(ColumnMetaData.class);
+            when(columnMetaData.getColumnName()).thenReturn(columnNames[i]);
+            when(tableMetaData.getColumnMetaData(i)).thenReturn(columnMetaData);
+        }
+
+        DsMetaData metaData = mock(DsMetaData.class);
+        when(metaData.getTableMetaData(tableName)).thenReturn(tableMetaData);
+        return metaData;
+    }
+
+    private TableName tableName(String schema, String name) {
+        TableName tableName = mock(TableName.class);
+        when(tableName.getSchemaName()).thenReturn(schema);
+        when(tableName.getShortName()).thenReturn(name);
+        return tableName;
+    }
+}